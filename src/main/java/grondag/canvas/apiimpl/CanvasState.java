@@ -41,8 +41,12 @@ import grondag.canvas.shader.GlShaderManager;
 import grondag.canvas.shader.MaterialProgram;
 import grondag.canvas.shader.PreReleaseShaderCompat;
 import grondag.canvas.shader.data.ShaderDataManager;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionResultCache;
+import grondag.canvas.terrain.region.RegionMeshCache;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
+import grondag.canvas.terrain.util.BlockStateTable;
 import grondag.canvas.terrain.util.ChunkColorCache;
+import grondag.canvas.terrain.util.StaticQuadCache;
 
 public class CanvasState {
 	public static void recompileIfNeeded(boolean forceRecompile) {
@@ -69,12 +73,16 @@ public class CanvasState {
 
 	public static void reload() {
 		CanvasMod.LOG.info(I18n.get("info.canvas.reloading"));
+		BlockStateTable.reload();
+		StaticQuadCache.reload();
 		PackedInputRegion.reload();
 		CanvasBlockRenderContext.reload();
 		CanvasEntityBlockRenderContext.reload();
 		CanvasItemRenderContext.reload();
 		ChunkRebuildCounters.reset();
-		ChunkColorCache.invalidate();
+		ChunkColorCache.reload();
+		OcclusionResultCache.invalidate();
+		RegionMeshCache.reload();
 		AoFace.clampExteriorVertices(Configurator.clampExteriorVertices);
 
 		recompileIfNeeded(true);
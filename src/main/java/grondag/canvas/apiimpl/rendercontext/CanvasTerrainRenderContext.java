@@ -31,6 +31,7 @@ import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.BlockPos.MutableBlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.util.RandomSource;
 import net.minecraft.world.level.BlockAndTintGetter;
 import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.block.Block;
@@ -47,8 +48,11 @@ import io.vram.frex.base.renderer.context.input.BaseBlockInputContext;
 import io.vram.frex.base.renderer.context.render.BlockRenderContext;
 
 import grondag.canvas.apiimpl.rendercontext.encoder.TerrainQuadEncoder;
+import grondag.canvas.buffer.input.QuadSorter;
 import grondag.canvas.config.Configurator;
 import grondag.canvas.light.LightSmoother;
+import grondag.canvas.terrain.region.RegionMeshCache;
+import grondag.canvas.terrain.region.RetainedRegionMesh;
 import grondag.canvas.terrain.region.input.InputRegion;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
 import grondag.canvas.terrain.util.RenderRegionStateIndexer;
@@ -58,9 +62,14 @@ public class CanvasTerrainRenderContext extends BlockRenderContext<BlockAndTintG
 	public final ObjectOpenHashSet<BlockEntity> nonCullBlockEntities = new ObjectOpenHashSet<>();
 	public final ObjectOpenHashSet<BlockEntity> addedBlockEntities = new ObjectOpenHashSet<>();
 	public final ObjectOpenHashSet<BlockEntity> removedBlockEntities = new ObjectOpenHashSet<>();
+	public final RegionMeshCache.ContentHash meshHash = new RegionMeshCache.ContentHash();
+	public final RetainedRegionMesh.Recorder meshRecorder = new RetainedRegionMesh.Recorder();
+	public final QuadSorter quadSorter = new QuadSorter();
 
 	public final InputRegion region;
 	public final MatrixStack matrixStack = MatrixStack.create();
+	/** For choosing weighted model variants. */
+	public final RandomSource modelRandom = RandomSource.create();
 	protected final RenderRegionContext<BlockAndTintGetter> bakedListenerContext;
 
 	public final TerrainQuadEncoder encoder;
@@ -146,8 +155,10 @@ public class CanvasTerrainRenderContext extends BlockRenderContext<BlockAndTintG
 		removedBlockEntities.clear();
 		region.prepare(protoRegion);
 		encoder.animationBits.clear();
+		final boolean isSmoothed = Configurator.lightSmoothing;
+		region.captureLighting(isSmoothed);
 
-		if (Configurator.lightSmoothing) {
+		if (isSmoothed) {
 			LightSmoother.computeSmoothedBrightness(region);
 		}
 
@@ -20,19 +20,28 @@
 
 package grondag.canvas.apiimpl.rendercontext.encoder;
 
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.world.level.block.state.BlockState;
+
 import io.vram.frex.api.model.InputContext;
 import io.vram.frex.base.renderer.mesh.BaseQuadEmitter;
 
 import grondag.canvas.buffer.format.TerrainEncoder;
+import grondag.canvas.buffer.input.VertexCollector;
 import grondag.canvas.buffer.input.VertexCollectorList;
 import grondag.canvas.material.state.CanvasRenderMaterial;
 import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 import grondag.canvas.terrain.region.RegionPosition;
+import grondag.canvas.terrain.util.StaticQuadCache;
 
 public class TerrainQuadEncoder extends BaseQuadEncoder {
 	/** Used by some terrain render configs to pass a region ID into vertex encoding. */
 	private int sectorId;
 	private int sectorRelativeRegionOrigin;
+	/** Count of quads encoded since creation. Changes when something was emitted. */
+	private int quadCount;
+	private final StaticQuadCache.BlockEncoder staticBlock = new StaticQuadCache.BlockEncoder();
+	private final TerrainEncoder.QuadInput quadInput = new TerrainEncoder.QuadInput();
 
 	public TerrainQuadEncoder(BaseQuadEmitter emitter, InputContext inputContext) {
 		super(emitter, inputContext);
@@ -47,14 +56,36 @@ public class TerrainQuadEncoder extends BaseQuadEncoder {
 		return sectorRelativeRegionOrigin;
 	}
 
+	public final int quadCount() {
+		return quadCount;
+	}
+
 	public void updateSector(RegionRenderSector renderSector, RegionPosition origin) {
 		sectorId = renderSector.sectorId();
 		sectorRelativeRegionOrigin = renderSector.sectorRelativeRegionOrigin(origin);
 	}
 
+	/**
+	 * Encodes quads of the next block to render from templates. Call {@link #endStaticBlock()} after.
+	 * See {@link StaticQuadCache.BlockEncoder#begin(StaticQuadCache, BlockState, BakedModel)}.
+	 */
+	public void beginStaticBlock(StaticQuadCache cache, BlockState blockState, BakedModel variant) {
+		staticBlock.begin(cache, blockState, variant);
+	}
+
+	public void endStaticBlock() {
+		staticBlock.end();
+	}
+
 	public void encode() {
 		trackAnimation(emitter);
-		TerrainEncoder.encodeQuad(this, collectors.get((CanvasRenderMaterial) emitter.material()));
+		++quadCount;
+		final CanvasRenderMaterial mat = (CanvasRenderMaterial) emitter.material();
+		final VertexCollector buff = collectors.get(mat);
+
+		if (!staticBlock.encode(this, mat, buff)) {
+			TerrainEncoder.encodeQuad(this, buff);
+		}
 	}
 
 	public BaseQuadEmitter emitter() {
@@ -64,4 +95,8 @@ public class TerrainQuadEncoder extends BaseQuadEncoder {
 	public InputContext inputContext() {
 		return inputContext;
 	}
+
+	public TerrainEncoder.QuadInput quadInput() {
+		return quadInput;
+	}
 }
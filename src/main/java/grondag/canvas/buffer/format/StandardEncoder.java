@@ -73,14 +73,15 @@ public class StandardEncoder {
 
 		final int material = mat.materialIndexer().index(quad.spriteId()) << 16;
 
-		final int[] target = buff.target();
+		final int baseTargetIndex = buff.reserveQuad(quad.effectiveCullFaceId(), mat.castShadows());
+		final int[] target = buff.reservedData();
 		final int baseSourceIndex = quad.vertexStart();
 		final int[] source = quad.data();
 
 		for (int i = 0; i < 4; i++) {
 			final int vertexMask = 1 << i;
 			final int fromIndex = baseSourceIndex + i * MESH_VERTEX_STRIDE;
-			final int toIndex = i * CanvasVertexFormats.STANDARD_VERTEX_STRIDE;
+			final int toIndex = baseTargetIndex + i * CanvasVertexFormats.STANDARD_VERTEX_STRIDE;
 
 			final int p = ((quadNormalFlags & vertexMask) == 0) ? faceNormal : source[fromIndex + VERTEX_NORMAL];
 
@@ -126,7 +127,5 @@ public class StandardEncoder {
 
 			target[toIndex + 6] = transformedNormal | transformedTangent;
 		}
-
-		buff.commit(quad.effectiveCullFaceId(), mat.castShadows());
 	}
 }
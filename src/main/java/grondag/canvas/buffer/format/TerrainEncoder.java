@@ -37,6 +37,8 @@ import static io.vram.frex.base.renderer.mesh.MeshEncodingHelper.VERTEX_X;
 import static io.vram.frex.base.renderer.mesh.MeshEncodingHelper.VERTEX_Y;
 import static io.vram.frex.base.renderer.mesh.MeshEncodingHelper.VERTEX_Z;
 
+import org.jetbrains.annotations.Nullable;
+
 import com.mojang.blaze3d.vertex.VertexFormatElement;
 
 import net.minecraft.client.Minecraft;
@@ -71,57 +73,246 @@ public class TerrainEncoder {
 
 	private static final int TERRAIN_VERTEX_STRIDE = TERRAIN_MATERIAL.vertexStrideInts;
 
-	public static void encodeQuad(TerrainQuadEncoder encoder, VertexCollector buff) {
+	/** Sprite and texture coordinates of two opposite vertices, checked before a template is used. */
+	private static final int TEMPLATE_HEADER_INTS = 5;
+
+	/** Ints of a quad template. See {@link #toTemplate(TerrainQuadEncoder, int[], int, int[], int)}. */
+	public static final int TEMPLATE_STRIDE = TEMPLATE_HEADER_INTS + TERRAIN_MATERIAL.quadStrideInts;
+
+	/** Bits of fraction in fixed-point positions. Must be small enough that a sum with translation is exact in float. */
+	private static final int FIXED_BITS = 12;
+	/** Resolution of fixed-point positions. Model coordinates are nearly always multiples of this. */
+	private static final float FIXED_UNIT = 1f / (1 << FIXED_BITS);
+	private static final float FIXED_SCALE = 1 << FIXED_BITS;
+	private static final int FIXED_MASK = (1 << FIXED_BITS) - 1;
+	/** Bounds of fixed-point coordinates and translation, so that sums stay below 2^24 and are exact in float. */
+	private static final int FIXED_COORDINATE_LIMIT = 1 << 20;
+	private static final int FIXED_TRANSLATION_LIMIT = 256;
+
+	/** Encoded fraction of each fixed-point fraction, computed the same way as {@link #split(float)}. */
+	private static final int[] FIXED_FRACTIONS = new int[1 << FIXED_BITS];
+
+	static {
+		for (int i = 0; i < FIXED_FRACTIONS.length; ++i) {
+			FIXED_FRACTIONS[i] = Math.round((i * FIXED_UNIT) * 0xFFFF);
+		}
+	}
+
+	/** Low bits of the first vertex element. Higher bits are normal and tangent signs and x fraction. */
+	private static final int SECTOR_ID_MASK = 0x1FFF;
+
+	/**
+	 * Changes the sector ID of encoded vertices. Positions are relative to the sector
+	 * origin, which depends only on region position, so vertex data encoded earlier for
+	 * the same region is valid in any sector instance after this.
+	 */
+	public static void setSectorId(int[] data, int index, int length, int sectorId) {
+		final int end = index + length;
+
+		for (int i = index; i < end; i += TERRAIN_VERTEX_STRIDE) {
+			data[i] = (data[i] & ~SECTOR_ID_MASK) | sectorId;
+		}
+	}
+
+	/**
+	 * Selects the encoder variant for the current transform. In terrain bake the model matrix
+	 * is nearly always an integer translation to the block position, which needs neither matrix
+	 * multiplication nor normal transformation. All variants give the same output as {@link #encodeTransformed}.
+	 *
+	 * @return Index of the encoded quad in {@link VertexCollector#reservedData()}.
+	 */
+	public static int encodeQuad(TerrainQuadEncoder encoder, VertexCollector buff) {
 		final var quad = encoder.emitter();
-		final var inputContext = encoder.inputContext();
+		final CanvasRenderMaterial mat = (CanvasRenderMaterial) quad.material();
 
-		final var matrixStack = inputContext.matrixStack();
+		assert mat.preset() != MaterialConstants.PRESET_DEFAULT;
+
+		final QuadInput input = encoder.quadInput();
+		input.load(encoder, mat);
+
+		final int baseTargetIndex = buff.reserveQuad(quad.effectiveCullFaceId(), mat.castShadows());
+		final int[] target = buff.reservedData();
+
+		final var matrixStack = encoder.inputContext().matrixStack();
 		final FastMatrix4f matrix = matrixStack.modelMatrix();
 		final FastMatrix3f normalMatrix = matrixStack.normalMatrix();
 
-		final boolean isNormalMatrixUseful = !normalMatrix.f_isIdentity();
+		if (!normalMatrix.f_isIdentity() || !isTranslation(matrix)) {
+			input.loadMatrix(matrix);
+			input.normalMatrix = normalMatrix.f_isIdentity() ? null : normalMatrix;
+			encodeTransformed(input, target, baseTargetIndex);
+		} else if (isIntegerTranslation(matrix)) {
+			encodeTranslated(input, target, baseTargetIndex, (int) matrix.f_m30(), (int) matrix.f_m31(), (int) matrix.f_m32());
+		} else {
+			encodeOffset(input, target, baseTargetIndex, matrix.f_m30(), matrix.f_m31(), matrix.f_m32());
+		}
 
-		final boolean aoDisabled = !Minecraft.useAmbientOcclusion();
-		final int[] aoData = quad.ao;
-		final CanvasRenderMaterial mat = (CanvasRenderMaterial) quad.material();
+		return baseTargetIndex;
+	}
 
-		assert mat.preset() != MaterialConstants.PRESET_DEFAULT;
+	/**
+	 * Inputs of the encoder variants for one quad, read from the emitter once per quad.
+	 * Variants only see this and the transform, so they can be driven and compared
+	 * without an emitter or a game instance. Each terrain quad encoder has one.
+	 */
+	public static final class QuadInput {
+		int[] source;
+		int sourceIndex;
+		int[] ao;
+		boolean aoDisabled;
+		int normalFlags;
+		/** Zero if every vertex has a normal. */
+		int faceNormal;
+		int tangentFlags;
+		/** Zero if every vertex has a tangent. */
+		int faceTangent;
+		/** Material index, already shifted to the high half of the light word. */
+		int material;
+		boolean unlit;
+		int sectorId;
+		int sectorRelativeRegionOrigin;
+
+		// Upper 4x3 of the model matrix. Only loaded for the full transform.
+		float m00, m01, m02, m10, m11, m12, m20, m21, m22, m30, m31, m32;
+		/** Null if identity. Only loaded for the full transform. */
+		@Nullable FastMatrix3f normalMatrix;
+
+		private void load(TerrainQuadEncoder encoder, CanvasRenderMaterial mat) {
+			final var quad = encoder.emitter();
+			source = quad.data();
+			sourceIndex = quad.vertexStart();
+			ao = quad.ao;
+			aoDisabled = !Minecraft.useAmbientOcclusion();
+
+			normalFlags = quad.normalFlags();
+			// don't retrieve if won't be used
+			faceNormal = normalFlags == 0b1111 ? 0 : quad.packedFaceNormal();
+			tangentFlags = quad.tangentFlags();
+			faceTangent = tangentFlags == 0b1111 ? 0 : quad.packedFaceTanget();
+
+			material = mat.materialIndexer().index(quad.spriteId()) << 16;
+			unlit = mat.unlit();
+
+			sectorId = encoder.sectorId();
+			assert sectorId >= 0;
+			sectorRelativeRegionOrigin = encoder.sectorRelativeRegionOrigin();
+		}
+
+		private void loadMatrix(FastMatrix4f matrix) {
+			m00 = matrix.f_m00();
+			m01 = matrix.f_m01();
+			m02 = matrix.f_m02();
+			m10 = matrix.f_m10();
+			m11 = matrix.f_m11();
+			m12 = matrix.f_m12();
+			m20 = matrix.f_m20();
+			m21 = matrix.f_m21();
+			m22 = matrix.f_m22();
+			m30 = matrix.f_m30();
+			m31 = matrix.f_m31();
+			m32 = matrix.f_m32();
+		}
+	}
+
+	/** True if the upper 3x3 of the matrix is identity, so that transforming a position only adds the translation. */
+	private static boolean isTranslation(FastMatrix4f matrix) {
+		return matrix.f_m00() == 1f && matrix.f_m11() == 1f && matrix.f_m22() == 1f
+				&& matrix.f_m01() == 0f && matrix.f_m02() == 0f
+				&& matrix.f_m10() == 0f && matrix.f_m12() == 0f
+				&& matrix.f_m20() == 0f && matrix.f_m21() == 0f;
+	}
+
+	/** True if the translation of a translation-only matrix has small integer components. */
+	private static boolean isIntegerTranslation(FastMatrix4f matrix) {
+		return isFixedTranslation(matrix.f_m30()) && isFixedTranslation(matrix.f_m31()) && isFixedTranslation(matrix.f_m32());
+	}
+
+	private static boolean isFixedTranslation(float t) {
+		final int i = (int) t;
+		return i == t && i >= -FIXED_TRANSLATION_LIMIT && i <= FIXED_TRANSLATION_LIMIT;
+	}
+
+	/**
+	 * Integer translation and identity normal matrix. Positions are translated in fixed-point
+	 * integer math when they are multiples of {@link #FIXED_UNIT}, which covers nearly all model
+	 * coordinates, and with a float add otherwise.
+	 */
+	static void encodeTranslated(QuadInput input, int[] target, int baseTargetIndex, int tx, int ty, int tz) {
+		final int[] source = input.source;
+		final int baseSourceIndex = input.sourceIndex;
+
+		for (int i = 0; i < 4; i++) {
+			final int vertexMask = 1 << i;
+			final int fromIndex = baseSourceIndex + i * MESH_VERTEX_STRIDE;
+			final int toIndex = baseTargetIndex + i * TERRAIN_VERTEX_STRIDE;
+
+			final int normal = ((input.normalFlags & vertexMask) == 0) ? input.faceNormal : source[fromIndex + VERTEX_NORMAL];
+			final int tangent = ((input.tangentFlags & vertexMask) == 0) ? input.faceTangent : source[baseSourceIndex + i + HEADER_FIRST_VERTEX_TANGENT];
+
+			final long x = translate(Float.intBitsToFloat(source[fromIndex + VERTEX_X]), tx);
+			final long y = translate(Float.intBitsToFloat(source[fromIndex + VERTEX_Y]), ty);
+			final long z = translate(Float.intBitsToFloat(source[fromIndex + VERTEX_Z]), tz);
+
+			final int ao = input.aoDisabled ? 0xFF000000 : (input.ao[i] << 24);
+			encodePosition(target, toIndex, input.sectorId | signBits(normal, tangent), x, y, z, input.sectorRelativeRegionOrigin, ao);
+			encodeAttributes(target, toIndex, source, fromIndex, input.unlit, input.material);
+			target[toIndex + 6] = (normal & 0xFFFF) | (tangent << 16);
+		}
+	}
+
+	/** Translation that isn't integer, usually from block offsets, and identity normal matrix. */
+	static void encodeOffset(QuadInput input, int[] target, int baseTargetIndex, float tx, float ty, float tz) {
+		final int[] source = input.source;
+		final int baseSourceIndex = input.sourceIndex;
+
+		for (int i = 0; i < 4; i++) {
+			final int vertexMask = 1 << i;
+			final int fromIndex = baseSourceIndex + i * MESH_VERTEX_STRIDE;
+			final int toIndex = baseTargetIndex + i * TERRAIN_VERTEX_STRIDE;
+
+			final int normal = ((input.normalFlags & vertexMask) == 0) ? input.faceNormal : source[fromIndex + VERTEX_NORMAL];
+			final int tangent = ((input.tangentFlags & vertexMask) == 0) ? input.faceTangent : source[baseSourceIndex + i + HEADER_FIRST_VERTEX_TANGENT];
+
+			final long x = split(Float.intBitsToFloat(source[fromIndex + VERTEX_X]) + tx);
+			final long y = split(Float.intBitsToFloat(source[fromIndex + VERTEX_Y]) + ty);
+			final long z = split(Float.intBitsToFloat(source[fromIndex + VERTEX_Z]) + tz);
+
+			final int ao = input.aoDisabled ? 0xFF000000 : (input.ao[i] << 24);
+			encodePosition(target, toIndex, input.sectorId | signBits(normal, tangent), x, y, z, input.sectorRelativeRegionOrigin, ao);
+			encodeAttributes(target, toIndex, source, fromIndex, input.unlit, input.material);
+			target[toIndex + 6] = (normal & 0xFFFF) | (tangent << 16);
+		}
+	}
+
+	/** Any transform. Reference for the other variants. Matrix and normal matrix must be loaded. */
+	static void encodeTransformed(QuadInput input, int[] target, int baseTargetIndex) {
+		final FastMatrix3f normalMatrix = input.normalMatrix;
+		final boolean isNormalMatrixUseful = normalMatrix != null;
 
-		final int quadNormalFlags = quad.normalFlags();
-		// don't retrieve if won't be used
-		final int faceNormal = quadNormalFlags == 0b1111 ? 0 : quad.packedFaceNormal();
 		// bit 16 is set if normal Z component is negative
 		int normalSignBit = 0;
 		int packedNormal = 0;
 		int transformedNormal = 0;
 
-		final int quadTangetFlags = quad.tangentFlags();
-		final int faceTangent = quadTangetFlags == 0b1111 ? 0 : quad.packedFaceTanget();
 		// bit 15 is set if tangent Z component is negative
 		// bit 16 is set if tangent handedness is inverted
 		int tangentInverseSignBits = 0;
 		int packedTangent = 0;
 		int transformedTangent = 0;
 
-		final int material = mat.materialIndexer().index(quad.spriteId()) << 16;
-		final boolean unlit = mat.unlit();
-
-		final int[] target = buff.target();
-		final int baseSourceIndex = quad.vertexStart();
-		final int[] source = quad.data();
+		final int baseSourceIndex = input.sourceIndex;
+		final int[] source = input.source;
 
 		// This and pos vertex encoding are the only differences from standard format
-		final int sectorId = encoder.sectorId();
-		assert sectorId >= 0;
-		final int sectorRelativeRegionOrigin = encoder.sectorRelativeRegionOrigin();
+		final int sectorId = input.sectorId;
 
 		for (int i = 0; i < 4; i++) {
 			final int vertexMask = 1 << i;
 			final int fromIndex = baseSourceIndex + i * MESH_VERTEX_STRIDE;
-			final int toIndex = i * TERRAIN_VERTEX_STRIDE;
+			final int toIndex = baseTargetIndex + i * TERRAIN_VERTEX_STRIDE;
 
 			// We do this here because we need to pack the normal Z sign bit with sector ID
-			final int p = ((quadNormalFlags & vertexMask) == 0) ? faceNormal : source[fromIndex + VERTEX_NORMAL];
+			final int p = ((input.normalFlags & vertexMask) == 0) ? input.faceNormal : source[fromIndex + VERTEX_NORMAL];
 
 			if (p != packedNormal) {
 				packedNormal = p;
@@ -131,7 +322,7 @@ public class TerrainEncoder {
 			}
 
 			// We do this here because we need to pack the tangent Z sign bit with sector ID
-			final int t = ((quadTangetFlags & vertexMask) == 0) ? faceTangent : source[baseSourceIndex + i + HEADER_FIRST_VERTEX_TANGENT];
+			final int t = ((input.tangentFlags & vertexMask) == 0) ? input.faceTangent : source[baseSourceIndex + i + HEADER_FIRST_VERTEX_TANGENT];
 
 			if (t != packedTangent) {
 				packedTangent = t;
@@ -140,48 +331,178 @@ public class TerrainEncoder {
 				transformedTangent = transformedTangent << 16;
 			}
 
-			// PERF: Consider fixed precision integer math
-			final float x = Float.intBitsToFloat(source[fromIndex + VERTEX_X]);
-			final float y = Float.intBitsToFloat(source[fromIndex + VERTEX_Y]);
-			final float z = Float.intBitsToFloat(source[fromIndex + VERTEX_Z]);
+			final int ao = input.aoDisabled ? 0xFF000000 : (input.ao[i] << 24);
+			transformPosition(target, toIndex, input, source, fromIndex, sectorId | normalSignBit | tangentInverseSignBits, input.sectorRelativeRegionOrigin, ao);
+			encodeAttributes(target, toIndex, source, fromIndex, input.unlit, input.material);
+			target[toIndex + 6] = transformedNormal | transformedTangent;
+		}
+	}
 
-			final float xOut = matrix.f_m00() * x + matrix.f_m10() * y + matrix.f_m20() * z + matrix.f_m30();
-			final float yOut = matrix.f_m01() * x + matrix.f_m11() * y + matrix.f_m21() * z + matrix.f_m31();
-			final float zOut = matrix.f_m02() * x + matrix.f_m12() * y + matrix.f_m22() * z + matrix.f_m32();
+	/** Normal Z sign and tangent Z and handedness sign bits for untransformed packed vectors. */
+	private static int signBits(int normal, int tangent) {
+		return ((normal >>> 10) & 0x2000) | ((tangent >>> 9) & 0xC000);
+	}
 
-			int xInt = Mth.floor(xOut);
-			int yInt = Mth.floor(yOut);
-			int zInt = Mth.floor(zOut);
+	/** Color, texture coordinates, light and material. */
+	private static void encodeAttributes(int[] target, int toIndex, int[] source, int fromIndex, boolean unlit, int material) {
+		target[toIndex + 3] = source[fromIndex + VERTEX_COLOR];
 
-			final int xFract = Math.round((xOut - xInt) * 0xFFFF);
-			final int yFract = Math.round((yOut - yInt) * 0xFFFF);
-			final int zFract = Math.round((zOut - zInt) * 0xFFFF);
+		target[toIndex + 4] = (source[fromIndex + VERTEX_U] + UV_ROUNDING_BIT) >> UV_EXTRA_PRECISION
+				| ((source[fromIndex + VERTEX_V] + UV_ROUNDING_BIT) >> UV_EXTRA_PRECISION << 16);
 
-			// because our integer component could be negative, we have to unpack and re-pack the sector components
-			xInt += (sectorRelativeRegionOrigin & 0xFF);
-			yInt += ((sectorRelativeRegionOrigin >> 8) & 0xFF);
-			zInt += ((sectorRelativeRegionOrigin >> 16) & 0xFF);
+		target[toIndex + 5] = encodeLight(unlit, source[fromIndex + VERTEX_LIGHTMAP]) | material;
+	}
 
-			target[toIndex] = sectorId | normalSignBit | tangentInverseSignBits | (xFract << 16);
-			target[toIndex + 1] = yFract | (zFract << 16);
+	/**
+	 * Encodes the quad in the encoder's emitter from a template made by {@link #toTemplate(TerrainQuadEncoder, int[], int, int[], int)}
+	 * for a quad with the same material and source data except position, AO and light. Only position,
+	 * AO and light are encoded, everything else is copied from the template. The caller checks material.
+	 *
+	 * @return False without encoding if sprite or texture coordinates don't match the template.
+	 */
+	public static boolean encodeFromTemplate(TerrainQuadEncoder encoder, VertexCollector buff, int[] template, int templateIndex) {
+		final var quad = encoder.emitter();
+		final int baseSourceIndex = quad.vertexStart();
+		final int[] source = quad.data();
+		final int uvIndex = baseSourceIndex + 2 * MESH_VERTEX_STRIDE;
+
+		if (template[templateIndex] != quad.spriteId()
+				|| template[templateIndex + 1] != source[baseSourceIndex + VERTEX_U] || template[templateIndex + 2] != source[baseSourceIndex + VERTEX_V]
+				|| template[templateIndex + 3] != source[uvIndex + VERTEX_U] || template[templateIndex + 4] != source[uvIndex + VERTEX_V]) {
+			return false;
+		}
+
+		final FastMatrix4f matrix = encoder.inputContext().matrixStack().modelMatrix();
+		final boolean isFixed = isTranslation(matrix) && isIntegerTranslation(matrix);
+		final int tx = (int) matrix.f_m30();
+		final int ty = (int) matrix.f_m31();
+		final int tz = (int) matrix.f_m32();
+		final boolean aoDisabled = !Minecraft.useAmbientOcclusion();
+		final int[] aoData = quad.ao;
+		final CanvasRenderMaterial mat = (CanvasRenderMaterial) quad.material();
+		final boolean unlit = mat.unlit();
+		final int baseTargetIndex = buff.reserveQuad(quad.effectiveCullFaceId(), mat.castShadows());
+		final int[] target = buff.reservedData();
+		final int sectorId = encoder.sectorId();
+		final int sectorRelativeRegionOrigin = encoder.sectorRelativeRegionOrigin();
+		final QuadInput input = encoder.quadInput();
+		int fromTemplate = templateIndex + TEMPLATE_HEADER_INTS;
+
+		if (!isFixed) {
+			input.loadMatrix(matrix);
+		}
+
+		for (int i = 0; i < 4; i++) {
+			final int fromIndex = baseSourceIndex + i * MESH_VERTEX_STRIDE;
+			final int toIndex = baseTargetIndex + i * TERRAIN_VERTEX_STRIDE;
 
 			final int ao = aoDisabled ? 0xFF000000 : (aoData[i] << 24);
-			target[toIndex + 2] = xInt | (yInt << 8) | (zInt << 16) | ao;
+			final int firstBits = sectorId | template[fromTemplate];
+
+			if (isFixed) {
+				final long x = translate(Float.intBitsToFloat(source[fromIndex + VERTEX_X]), tx);
+				final long y = translate(Float.intBitsToFloat(source[fromIndex + VERTEX_Y]), ty);
+				final long z = translate(Float.intBitsToFloat(source[fromIndex + VERTEX_Z]), tz);
+				encodePosition(target, toIndex, firstBits, x, y, z, sectorRelativeRegionOrigin, ao);
+			} else {
+				transformPosition(target, toIndex, input, source, fromIndex, firstBits, sectorRelativeRegionOrigin, ao);
+			}
 
-			target[toIndex + 3] = source[fromIndex + VERTEX_COLOR];
+			target[toIndex + 3] = template[fromTemplate + 3];
+			target[toIndex + 4] = template[fromTemplate + 4];
+			target[toIndex + 5] = encodeLight(unlit, source[fromIndex + VERTEX_LIGHTMAP]) | template[fromTemplate + 5];
+			target[toIndex + 6] = template[fromTemplate + 6];
+			fromTemplate += TERRAIN_VERTEX_STRIDE;
+		}
 
-			target[toIndex + 4] = (source[fromIndex + VERTEX_U] + UV_ROUNDING_BIT) >> UV_EXTRA_PRECISION
-					| ((source[fromIndex + VERTEX_V] + UV_ROUNDING_BIT) >> UV_EXTRA_PRECISION << 16);
+		return true;
+	}
 
-			// TODO: should probably pass unlit as a flag vs forcing lightmap
-			final int packedLight = unlit ? MeshEncodingHelper.FULL_BRIGHTNESS : source[fromIndex + VERTEX_LIGHTMAP];
-			final int blockLight = packedLight & 0xFF;
-			final int skyLight = (packedLight >> 16) & 0xFF;
-			target[toIndex + 5] = blockLight | (skyLight << 8) | material;
+	/**
+	 * Saves the quad in the encoder's emitter, just encoded to the given data and index, as a template for
+	 * {@link #encodeFromTemplate(TerrainQuadEncoder, VertexCollector, int[], int)}.
+	 * Writes {@link #TEMPLATE_STRIDE} ints.
+	 */
+	public static void toTemplate(TerrainQuadEncoder encoder, int[] data, int dataIndex, int[] template, int templateIndex) {
+		final var quad = encoder.emitter();
+		final int baseSourceIndex = quad.vertexStart();
+		final int[] source = quad.data();
+		final int uvIndex = baseSourceIndex + 2 * MESH_VERTEX_STRIDE;
 
-			target[toIndex + 6] = transformedNormal | transformedTangent;
+		template[templateIndex] = quad.spriteId();
+		template[templateIndex + 1] = source[baseSourceIndex + VERTEX_U];
+		template[templateIndex + 2] = source[baseSourceIndex + VERTEX_V];
+		template[templateIndex + 3] = source[uvIndex + VERTEX_U];
+		template[templateIndex + 4] = source[uvIndex + VERTEX_V];
+
+		int toTemplate = templateIndex + TEMPLATE_HEADER_INTS;
+
+		for (int i = 0; i < 4; i++) {
+			final int fromIndex = dataIndex + i * TERRAIN_VERTEX_STRIDE;
+			// normal and tangent sign bits only
+			template[toTemplate] = data[fromIndex] & 0xE000;
+			template[toTemplate + 1] = 0;
+			template[toTemplate + 2] = 0;
+			template[toTemplate + 3] = data[fromIndex + 3];
+			template[toTemplate + 4] = data[fromIndex + 4];
+			template[toTemplate + 5] = data[fromIndex + 5] & 0xFFFF0000;
+			template[toTemplate + 6] = data[fromIndex + 6];
+			toTemplate += TERRAIN_VERTEX_STRIDE;
+		}
+	}
+
+	private static void transformPosition(int[] target, int toIndex, QuadInput matrix, int[] source, int fromIndex, int firstBits, int sectorRelativeRegionOrigin, int ao) {
+		final float x = Float.intBitsToFloat(source[fromIndex + VERTEX_X]);
+		final float y = Float.intBitsToFloat(source[fromIndex + VERTEX_Y]);
+		final float z = Float.intBitsToFloat(source[fromIndex + VERTEX_Z]);
+
+		final float xOut = matrix.m00 * x + matrix.m10 * y + matrix.m20 * z + matrix.m30;
+		final float yOut = matrix.m01 * x + matrix.m11 * y + matrix.m21 * z + matrix.m31;
+		final float zOut = matrix.m02 * x + matrix.m12 * y + matrix.m22 * z + matrix.m32;
+
+		encodePosition(target, toIndex, firstBits, split(xOut), split(yOut), split(zOut), sectorRelativeRegionOrigin, ao);
+	}
+
+	/**
+	 * Coordinate translated by an integer, split as by {@link #split(float)}. Same result as a float add
+	 * followed by split. When the coordinate is a multiple of {@link #FIXED_UNIT} the sum is exact in float,
+	 * so it is computed as an integer and the fraction encoding is a table lookup.
+	 */
+	static long translate(float coordinate, int translation) {
+		final float scaled = coordinate * FIXED_SCALE;
+		final int fixed = (int) scaled;
+
+		if (fixed == scaled && fixed > -FIXED_COORDINATE_LIMIT && fixed < FIXED_COORDINATE_LIMIT) {
+			final int sum = fixed + (translation << FIXED_BITS);
+			return ((long) FIXED_FRACTIONS[sum & FIXED_MASK] << 32) | ((sum >> FIXED_BITS) & 0xFFFFFFFFL);
 		}
 
-		buff.commit(quad.effectiveCullFaceId(), mat.castShadows());
+		return split(coordinate + translation);
+	}
+
+	/** Integer part (floor) of the coordinate in the low 32 bits and fraction in 1/65535 units in the high 32 bits. */
+	static long split(float coordinate) {
+		final int i = Mth.floor(coordinate);
+		final int fract = Math.round((coordinate - i) * 0xFFFF);
+		return ((long) fract << 32) | (i & 0xFFFFFFFFL);
+	}
+
+	private static void encodePosition(int[] target, int toIndex, int firstBits, long x, long y, long z, int sectorRelativeRegionOrigin, int ao) {
+		// because our integer component could be negative, we have to unpack and re-pack the sector components
+		final int xInt = (int) x + (sectorRelativeRegionOrigin & 0xFF);
+		final int yInt = (int) y + ((sectorRelativeRegionOrigin >> 8) & 0xFF);
+		final int zInt = (int) z + ((sectorRelativeRegionOrigin >> 16) & 0xFF);
+
+		target[toIndex] = firstBits | ((int) (x >>> 32) << 16);
+		target[toIndex + 1] = (int) (y >>> 32) | ((int) (z >>> 32) << 16);
+		target[toIndex + 2] = xInt | (yInt << 8) | (zInt << 16) | ao;
+	}
+
+	private static int encodeLight(boolean unlit, int lightmap) {
+		// TODO: should probably pass unlit as a flag vs forcing lightmap
+		final int packedLight = unlit ? MeshEncodingHelper.FULL_BRIGHTNESS : lightmap;
+		final int blockLight = packedLight & 0xFF;
+		final int skyLight = (packedLight >> 16) & 0xFF;
+		return blockLight | (skyLight << 8);
 	}
 }
@@ -21,7 +21,6 @@
 package grondag.canvas.buffer.input;
 
 import java.nio.IntBuffer;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import net.minecraft.util.Mth;
 import net.minecraft.world.phys.Vec3;
@@ -36,8 +35,6 @@ public abstract class ArrayVertexCollector extends BaseVertexCollector {
 
 	public ArrayVertexCollector(RenderState renderState, int[] target) {
 		super(renderState, target);
-		arrayCount.incrementAndGet();
-		arryBytes.addAndGet(capacity);
 	}
 
 	protected final void grow(int newSize) {
@@ -47,7 +44,6 @@ public abstract class ArrayVertexCollector extends BaseVertexCollector {
 			final int newCapacity = Mth.smallestEncompassingPowerOfTwo(newSize);
 			final int[] newData = new int[newCapacity];
 			System.arraycopy(vertexData, 0, newData, 0, oldCapacity);
-			arryBytes.addAndGet(newCapacity - oldCapacity);
 			capacity = newCapacity;
 			vertexData = newData;
 		}
@@ -62,6 +58,20 @@ public abstract class ArrayVertexCollector extends BaseVertexCollector {
 		integerSize = newSize;
 	}
 
+	@Override
+	public final int reserveQuad(int effectiveFaceIndex, boolean castShadow) {
+		final int targetIndex = integerSize;
+		final int newSize = targetIndex + quadStrideInts;
+		grow(newSize);
+		integerSize = newSize;
+		return targetIndex;
+	}
+
+	@Override
+	public final int[] reservedData() {
+		return vertexData;
+	}
+
 	@Override
 	public final void toBuffer(IntBuffer intBuffer) {
 		intBuffer.put(vertexData, 0, integerSize);
@@ -90,6 +100,19 @@ public abstract class ArrayVertexCollector extends BaseVertexCollector {
 		return null;
 	}
 
+	@Override
+	public FaceBucket faceBucket(int index) {
+		final int vertexCount = vertexCount();
+		return new FaceBucket(index, vertexCount, index, vertexCount);
+	}
+
+	@Override
+	public final void forEachRun(int effectiveFaceIndex, RunConsumer consumer) {
+		if (integerSize > 0) {
+			consumer.accept(effectiveFaceIndex, true, this);
+		}
+	}
+
 	@Override
 	public final int[] saveState(int[] priorState) {
 		final int integerSize = this.integerSize;
@@ -122,11 +145,4 @@ public abstract class ArrayVertexCollector extends BaseVertexCollector {
 			integerSize = size;
 		}
 	}
-
-	private static AtomicInteger arrayCount = new AtomicInteger();
-	private static AtomicInteger arryBytes = new AtomicInteger();
-
-	public static String debugReport() {
-		return String.format("Vertex collectors: %d %4.1fMb", arrayCount.get(), arryBytes.get() / 1048576f);
-	}
 }
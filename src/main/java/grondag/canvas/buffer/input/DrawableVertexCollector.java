@@ -62,7 +62,25 @@ public interface DrawableVertexCollector extends VertexCollector {
 
 	void loadState(int[] state);
 
+	/** Sort state that holds only centroids, for resorting by index permutation. Null if empty. */
+	@Nullable
+	TranslucentSortState saveSortState();
+
 	FaceBucket[] faceBuckets();
 
 	FaceBucket faceBucket(int index);
+
+	/**
+	 * Reports content as runs of whole quads that were committed with the same face index
+	 * and shadow flag, so that it can be restored later by committing each quad again.
+	 *
+	 * @param effectiveFaceIndex Reported for all quads by collectors that don't segregate faces.
+	 */
+	void forEachRun(int effectiveFaceIndex, RunConsumer consumer);
+
+	@FunctionalInterface
+	interface RunConsumer {
+		/** Quads are the content of a collector that doesn't segregate faces or shadows. Don't retain a reference. */
+		void accept(int effectiveFaceIndex, boolean castShadow, DrawableVertexCollector quads);
+	}
 }
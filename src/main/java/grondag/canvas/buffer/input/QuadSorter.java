@@ -0,0 +1,198 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.util.Arrays;
+
+/**
+ * Stable sort of quads by a 32-bit key, used for translucency.
+ * Keys are packed with the current quad index in the low bits, so sorting
+ * packed values orders equal keys by their current position.
+ *
+ * <p>Most sorts follow a small camera move and find quads already in order or
+ * nearly so. Those are detected in one pass and handled with an insertion sort.
+ * Everything else uses a least-significant-digit radix sort on the key bits.
+ */
+public final class QuadSorter {
+	/** Input with more descents than count divided by this isn't considered nearly sorted. */
+	private static final int NEARLY_SORTED_DIVISOR = 32;
+	/** Insertion sort gives up after this many moves per element. */
+	private static final int INSERTION_MOVE_LIMIT = 8;
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX_SIZE - 1;
+	private static final int RADIX_PASSES = 32 / RADIX_BITS;
+
+	private long[] keys = new long[512];
+	private long[] scratch = new long[512];
+	private final int[] counts = new int[RADIX_SIZE * RADIX_PASSES];
+
+	/**
+	 * Packs a key for the quad at the given index into {@link #keys(int)}.
+	 * Unsigned keys are sorted in ascending order.
+	 */
+	static long pack(int key, int quadIndex) {
+		return ((long) (key ^ Integer.MIN_VALUE) << 32) | quadIndex;
+	}
+
+	/** Key for squared distances that sorts farthest first. Distances must not be negative. */
+	static int farthestFirst(float distanceSq) {
+		return ~Float.floatToRawIntBits(distanceSq);
+	}
+
+	/** Squared distance from the given position to a quad centroid packed three floats per quad. */
+	static float distanceSq(float[] centroids, int quadIndex, float x, float y, float z) {
+		final int c = quadIndex * 3;
+		final float dx = centroids[c] - x;
+		final float dy = centroids[c + 1] - y;
+		final float dz = centroids[c + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/** Current quad index of a packed key, after sorting its new position. */
+	static int quadIndex(long packed) {
+		return (int) packed;
+	}
+
+	/**
+	 * Array to hold packed keys for the given number of quads, in quad index order.
+	 * After {@link #sort(int)} holds them in sorted order. Contents are lost if
+	 * called again with a larger count.
+	 */
+	long[] keys(int count) {
+		if (keys.length < count) {
+			final int newSize = Math.max(count, keys.length * 2);
+			keys = new long[newSize];
+			scratch = new long[newSize];
+		}
+
+		return keys;
+	}
+
+	/**
+	 * Sorts packed keys from {@link #keys(int)}, which must be called again
+	 * afterwards to retrieve the result.
+	 *
+	 * @return True if any quad changed position.
+	 */
+	boolean sort(int count) {
+		final long[] keys = this.keys;
+		int descents = 0;
+
+		for (int i = 1; i < count; ++i) {
+			if (keys[i - 1] > keys[i]) {
+				++descents;
+			}
+		}
+
+		if (descents == 0) {
+			return false;
+		}
+
+		if (descents > count / NEARLY_SORTED_DIVISOR || !insertionSort(keys, count)) {
+			radixSort(count);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Sorts in place. Stops early and returns false if input is too far from sorted.
+	 * The array remains a permutation of the input with equal keys in index order,
+	 * so radix sort can continue from it.
+	 */
+	private static boolean insertionSort(long[] keys, int count) {
+		int budget = count * INSERTION_MOVE_LIMIT;
+
+		for (int i = 1; i < count; ++i) {
+			final long k = keys[i];
+			int j = i - 1;
+
+			if (keys[j] <= k) {
+				continue;
+			}
+
+			do {
+				keys[j + 1] = keys[j];
+				--j;
+			} while (j >= 0 && keys[j] > k);
+
+			keys[j + 1] = k;
+			budget -= i - j;
+
+			if (budget < 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/** Digits in unsigned order are in the same order as signed packed values. */
+	private static int digit(long packed, int shift) {
+		return (int) (((packed ^ Long.MIN_VALUE) >>> shift) & RADIX_MASK);
+	}
+
+	private void radixSort(int count) {
+		final int[] counts = this.counts;
+		Arrays.fill(counts, 0);
+		long[] from = keys;
+		long[] to = scratch;
+
+		for (int i = 0; i < count; ++i) {
+			final long k = from[i];
+
+			for (int pass = 0; pass < RADIX_PASSES; ++pass) {
+				++counts[pass * RADIX_SIZE + digit(k, 32 + pass * RADIX_BITS)];
+			}
+		}
+
+		for (int pass = 0; pass < RADIX_PASSES; ++pass) {
+			final int base = pass * RADIX_SIZE;
+			final int shift = 32 + pass * RADIX_BITS;
+
+			// skip digits that are the same for all keys, common for exponent bits
+			if (counts[base + digit(from[0], shift)] == count) {
+				continue;
+			}
+
+			int offset = 0;
+
+			for (int d = 0; d < RADIX_SIZE; ++d) {
+				final int c = counts[base + d];
+				counts[base + d] = offset;
+				offset += c;
+			}
+
+			for (int i = 0; i < count; ++i) {
+				final long k = from[i];
+				to[counts[base + digit(k, shift)]++] = k;
+			}
+
+			final long[] swap = from;
+			from = to;
+			to = swap;
+		}
+
+		keys = from;
+		scratch = to;
+	}
+}
@@ -33,6 +33,7 @@ import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 public class ShadowVertexCollector extends BaseVertexCollector {
 	protected final SimpleVertexCollector common;
 	protected final SimpleVertexCollector colorOnly;
+	private SimpleVertexCollector reserved;
 
 	public ShadowVertexCollector(RenderState renderState, int[] target) {
 		super(renderState, target);
@@ -46,6 +47,19 @@ public class ShadowVertexCollector extends BaseVertexCollector {
 		integerSize += quadStrideInts;
 	}
 
+	@Override
+	public int reserveQuad(int effectiveFaceIndex, boolean castShadow) {
+		final SimpleVertexCollector collector = castShadow ? common : colorOnly;
+		reserved = collector;
+		integerSize += quadStrideInts;
+		return collector.reserveQuad(effectiveFaceIndex, castShadow);
+	}
+
+	@Override
+	public int[] reservedData() {
+		return reserved.reservedData();
+	}
+
 	@Override
 	public final void clear() {
 		integerSize = 0;
@@ -117,6 +131,22 @@ public class ShadowVertexCollector extends BaseVertexCollector {
 		throw new UnsupportedOperationException("ShadowVertexCollector vertex collector does not support loadState");
 	}
 
+	@Override
+	public TranslucentSortState saveSortState() {
+		throw new UnsupportedOperationException("ShadowVertexCollector vertex collector does not support saveSortState");
+	}
+
+	@Override
+	public void forEachRun(int effectiveFaceIndex, RunConsumer consumer) {
+		if (!common.isEmpty()) {
+			consumer.accept(effectiveFaceIndex, true, common);
+		}
+
+		if (!colorOnly.isEmpty()) {
+			consumer.accept(effectiveFaceIndex, false, colorOnly);
+		}
+	}
+
 	@Override
 	public FaceBucket[] faceBuckets() {
 		throw new UnsupportedOperationException("ShadowVertexCollector vertex collector does not support vertexBuckets");
@@ -20,11 +20,150 @@
 
 package grondag.canvas.buffer.input;
 
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.world.phys.Vec3;
+
+import grondag.canvas.buffer.render.TransferBuffer;
 import grondag.canvas.material.state.RenderState;
+import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
+
+/**
+ * Unsorted collector that stores content in pages claimed from a {@link VertexPagePool}.
+ * Pages hold whole quads and are released when the collector is cleared.
+ * Partial quads committed with {@link #commit(int)} can span pages, but
+ * must not be mixed with quads reserved with {@link #reserveQuad(int, boolean)}.
+ */
+public class SimpleVertexCollector extends BaseVertexCollector {
+	private final VertexPagePool pool;
+	private final int pageInts;
+	private int[][] pages = new int[4][];
+	private int pageCount = 0;
+	/** Last claimed page, or null if none. */
+	private int[] page = null;
+	/** Ints used in the last claimed page. Full if no page is claimed. */
+	private int pageSize;
 
-public class SimpleVertexCollector extends ArrayVertexCollector implements DrawableVertexCollector {
 	public SimpleVertexCollector(RenderState renderState, int[] target) {
 		super(renderState, target);
+		pool = VertexPagePool.forQuadStride(quadStrideInts);
+		pageInts = pool.pageInts();
+		pageSize = pageInts;
+	}
+
+	private void addPage() {
+		if (pageCount == pages.length) {
+			pages = Arrays.copyOf(pages, pageCount * 2);
+		}
+
+		page = pool.claim();
+		pages[pageCount++] = page;
+		pageSize = 0;
+	}
+
+	private int pageLength(int pageIndex) {
+		return pageIndex == pageCount - 1 ? pageSize : pageInts;
+	}
+
+	private void append(int[] source, int sourceStart, int size) {
+		final int end = sourceStart + size;
+
+		while (sourceStart < end) {
+			if (pageSize == pageInts) {
+				addPage();
+			}
+
+			final int length = Math.min(end - sourceStart, pageInts - pageSize);
+			System.arraycopy(source, sourceStart, page, pageSize, length);
+			pageSize += length;
+			sourceStart += length;
+		}
+
+		integerSize += size;
+	}
+
+	@Override
+	public final void commit(int size) {
+		append(target, 0, size);
+	}
+
+	@Override
+	public final int reserveQuad(int effectiveFaceIndex, boolean castShadow) {
+		assert pageSize % quadStrideInts == 0 : "Reserved quad after partial commit";
+
+		if (pageSize == pageInts) {
+			addPage();
+		}
+
+		final int result = pageSize;
+		pageSize = result + quadStrideInts;
+		integerSize += quadStrideInts;
+		return result;
+	}
+
+	@Override
+	public final int[] reservedData() {
+		return page;
+	}
+
+	@Override
+	public final void clear() {
+		final int[][] pages = this.pages;
+
+		for (int i = 0; i < pageCount; ++i) {
+			pool.release(pages[i]);
+			pages[i] = null;
+		}
+
+		pageCount = 0;
+		page = null;
+		pageSize = pageInts;
+		integerSize = 0;
+	}
+
+	private void copyTo(int[] data, int dataIndex) {
+		for (int i = 0; i < pageCount; ++i) {
+			final int length = pageLength(i);
+			System.arraycopy(pages[i], 0, data, dataIndex, length);
+			dataIndex += length;
+		}
+	}
+
+	@Override
+	public final void toBuffer(IntBuffer intBuffer) {
+		for (int i = 0; i < pageCount; ++i) {
+			intBuffer.put(pages[i], 0, pageLength(i));
+		}
+	}
+
+	@Override
+	public final void toBuffer(TransferBuffer targetBuffer, int bufferTargetIndex) {
+		for (int i = 0; i < pageCount; ++i) {
+			final int length = pageLength(i);
+			targetBuffer.put(pages[i], 0, bufferTargetIndex, length);
+			bufferTargetIndex += length;
+		}
+	}
+
+	@Override
+	public void sortIfNeeded() { }
+
+	@Override
+	public boolean sorted() {
+		return false;
+	}
+
+	@Override
+	public boolean sortTerrainQuads(Vec3 sortPos, RegionRenderSector sector) {
+		return false;
+	}
+
+	@Override
+	public FaceBucket[] faceBuckets() {
+		return null;
 	}
 
 	@Override
@@ -32,4 +171,43 @@ public class SimpleVertexCollector extends ArrayVertexCollector implements Drawa
 		final int vertexCount = vertexCount();
 		return new FaceBucket(index, vertexCount, index, vertexCount);
 	}
+
+	@Override
+	public final void forEachRun(int effectiveFaceIndex, RunConsumer consumer) {
+		if (integerSize > 0) {
+			consumer.accept(effectiveFaceIndex, true, this);
+		}
+	}
+
+	@Override
+	public final @Nullable int[] saveState(@Nullable int[] priorState) {
+		final int integerSize = this.integerSize;
+
+		if (integerSize == 0) {
+			return null;
+		}
+
+		int[] result = priorState;
+
+		if (result == null || result.length != integerSize) {
+			result = new int[integerSize];
+		}
+
+		copyTo(result, 0);
+		return result;
+	}
+
+	@Override
+	public final void loadState(int[] stateData) {
+		clear();
+
+		if (stateData != null) {
+			append(stateData, 0, stateData.length);
+		}
+	}
+
+	@Override
+	public TranslucentSortState saveSortState() {
+		throw new UnsupportedOperationException("Unsorted vertex collector does not support saveSortState");
+	}
 }
@@ -20,25 +20,22 @@
 
 package grondag.canvas.buffer.input;
 
-import it.unimi.dsi.fastutil.Swapper;
-import it.unimi.dsi.fastutil.ints.IntComparator;
-
 import net.minecraft.util.Mth;
 import net.minecraft.world.phys.Vec3;
 
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 
-public class SortingVertexCollector extends SimpleVertexCollector {
-	private float[] perQuadDistance = new float[512];
-	private final int[] swapData;
-	private boolean didSwap = false;
-	final QuadDistanceFunc distanceFunc;
+public class SortingVertexCollector extends ArrayVertexCollector {
+	private final QuadSorter sorter = new QuadSorter();
+	/** Receives quads in sorted order, then swapped with vertex data. */
+	private int[] sortedData = new int[0];
+	private float[] centroids = new float[512 * 3];
+	final QuadCentroidFunc centroidFunc;
 
 	public SortingVertexCollector(RenderState renderState, boolean isTerrain, int[] target) {
 		super(renderState, target);
-		swapData = new int[quadStrideInts * 2];
-		distanceFunc = isTerrain ? this::getDistanceSqTerrain : this::getDistanceSq;
+		centroidFunc = isTerrain ? this::computeCentroidTerrain : this::computeCentroid;
 	}
 
 	@Override
@@ -52,57 +49,65 @@ public class SortingVertexCollector extends SimpleVertexCollector {
 
 	private boolean sortQuads(float x, float y, float z) {
 		final int quadCount = quadCount();
-		final QuadDistanceFunc distanceFunc = this.distanceFunc;
+		final float[] centroids = computeCentroids();
+		final QuadSorter sorter = this.sorter;
+		long[] keys = sorter.keys(quadCount);
 
-		if (perQuadDistance.length < quadCount) {
-			perQuadDistance = new float[Mth.smallestEncompassingPowerOfTwo(quadCount)];
+		for (int j = 0; j < quadCount; ++j) {
+			keys[j] = QuadSorter.pack(QuadSorter.farthestFirst(QuadSorter.distanceSq(centroids, j, x, y, z)), j);
 		}
 
-		for (int j = 0; j < quadCount; ++j) {
-			perQuadDistance[j] = distanceFunc.compute(x, y, z, j);
+		// stable sort is important here - unstable order causes problems
+		if (!sorter.sort(quadCount)) {
+			return false;
 		}
 
-		didSwap = false;
+		keys = sorter.keys(quadCount);
+		final int quadStrideInts = this.quadStrideInts;
+		final int[] vertexData = this.vertexData;
+		int[] sortedData = this.sortedData;
+
+		if (sortedData.length != capacity) {
+			sortedData = new int[capacity];
+		}
 
-		// sort the indexes by distance - farthest first
-		// mergesort is important here - quicksort causes problems
-		// PERF: consider sorting primitive packed long array with distance in high bits
-		// and then use result to reorder the array. Will need to copy vertex data.
-		it.unimi.dsi.fastutil.Arrays.mergeSort(0, quadCount, comparator, swapper);
+		for (int j = 0; j < quadCount; ++j) {
+			System.arraycopy(vertexData, QuadSorter.quadIndex(keys[j]) * quadStrideInts, sortedData, j * quadStrideInts, quadStrideInts);
+		}
 
-		return didSwap;
+		this.sortedData = vertexData;
+		this.vertexData = sortedData;
+		return true;
 	}
 
-	private interface QuadDistanceFunc {
-		float compute(float x, float y, float z, int quadIndex);
+	private interface QuadCentroidFunc {
+		void compute(int quadIndex, float[] centroids);
 	}
 
-	private final IntComparator comparator = new IntComparator() {
-		@Override
-		public int compare(int a, int b) {
-			return Float.compare(perQuadDistance[b], perQuadDistance[a]);
+	/** Centroids of all quads in their current order, three floats per quad. */
+	private float[] computeCentroids() {
+		final int quadCount = quadCount();
+		final QuadCentroidFunc centroidFunc = this.centroidFunc;
+		float[] centroids = this.centroids;
+
+		if (centroids.length < quadCount * 3) {
+			centroids = new float[Mth.smallestEncompassingPowerOfTwo(quadCount) * 3];
+			this.centroids = centroids;
 		}
-	};
-
-	private final Swapper swapper = new Swapper() {
-		@Override
-		public void swap(int a, int b) {
-			didSwap = true;
-			final float distSwap = perQuadDistance[a];
-			perQuadDistance[a] = perQuadDistance[b];
-			perQuadDistance[b] = distSwap;
-
-			final int aIndex = a * quadStrideInts;
-			final int bIndex = b * quadStrideInts;
-
-			System.arraycopy(vertexData, aIndex, swapData, 0, quadStrideInts);
-			System.arraycopy(vertexData, bIndex, swapData, quadStrideInts, quadStrideInts);
-			System.arraycopy(swapData, 0, vertexData, bIndex, quadStrideInts);
-			System.arraycopy(swapData, quadStrideInts, vertexData, aIndex, quadStrideInts);
+
+		for (int j = 0; j < quadCount; ++j) {
+			centroidFunc.compute(j, centroids);
 		}
-	};
 
-	private float getDistanceSq(float x, float y, float z, int quadIndex) {
+		return centroids;
+	}
+
+	@Override
+	public TranslucentSortState saveSortState() {
+		return integerSize == 0 ? null : new TranslucentSortState(computeCentroids(), quadCount());
+	}
+
+	private void computeCentroid(int quadIndex, float[] centroids) {
 		final int integerStride = quadStrideInts / 4;
 
 		// unpack vertex coordinates
@@ -126,17 +131,15 @@ public class SortingVertexCollector extends SimpleVertexCollector {
 		final float y3 = Float.intBitsToFloat(vertexData[i + 1]);
 		final float z3 = Float.intBitsToFloat(vertexData[i + 2]);
 
-		// compute average distance by component
-		final float dx = (x0 + x1 + x2 + x3) * 0.25f - x;
-		final float dy = (y0 + y1 + y2 + y3) * 0.25f - y;
-		final float dz = (z0 + z1 + z2 + z3) * 0.25f - z;
-
-		return dx * dx + dy * dy + dz * dz;
+		final int c = quadIndex * 3;
+		centroids[c] = (x0 + x1 + x2 + x3) * 0.25f;
+		centroids[c + 1] = (y0 + y1 + y2 + y3) * 0.25f;
+		centroids[c + 2] = (z0 + z1 + z2 + z3) * 0.25f;
 	}
 
 	private static final float POS_CONVERSION = 1f / 0xFFFF;
 
-	private float getDistanceSqTerrain(float x, float y, float z, int quadIndex) {
+	private void computeCentroidTerrain(int quadIndex, float[] centroids) {
 		final int integerStride = quadStrideInts / 4;
 
 		// unpack vertex coordinates
@@ -164,12 +167,10 @@ public class SortingVertexCollector extends SimpleVertexCollector {
 		final float y3 = ((pos3 >> 8) & 0xFF) + (vertexData[i + 1] & 0xFFFF) * POS_CONVERSION;
 		final float z3 = ((pos3 >> 16) & 0xFF) + (vertexData[i + 1] >>> 16) * POS_CONVERSION;
 
-		// compute average distance by component
-		final float dx = (x0 + x1 + x2 + x3) * 0.25f - x;
-		final float dy = (y0 + y1 + y2 + y3) * 0.25f - y;
-		final float dz = (z0 + z1 + z2 + z3) * 0.25f - z;
-
-		return dx * dx + dy * dy + dz * dz;
+		final int c = quadIndex * 3;
+		centroids[c] = (x0 + x1 + x2 + x3) * 0.25f;
+		centroids[c + 1] = (y0 + y1 + y2 + y3) * 0.25f;
+		centroids[c + 2] = (z0 + z1 + z2 + z3) * 0.25f;
 	}
 
 	@Override
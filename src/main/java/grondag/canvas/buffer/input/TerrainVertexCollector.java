@@ -34,6 +34,7 @@ import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 
 public class TerrainVertexCollector extends BaseVertexCollector {
 	protected final DrawableVertexCollector[] collectors;
+	private DrawableVertexCollector reserved;
 
 	public TerrainVertexCollector(RenderState renderState, int[] target) {
 		super(renderState, target);
@@ -55,6 +56,19 @@ public class TerrainVertexCollector extends BaseVertexCollector {
 		integerSize += quadStrideInts;
 	}
 
+	@Override
+	public int reserveQuad(int effectiveFaceIndex, boolean castShadow) {
+		final DrawableVertexCollector collector = collectors[effectiveFaceIndex];
+		reserved = collector;
+		integerSize += quadStrideInts;
+		return collector.reserveQuad(effectiveFaceIndex, castShadow);
+	}
+
+	@Override
+	public int[] reservedData() {
+		return reserved.reservedData();
+	}
+
 	@Override
 	public final void clear() {
 		integerSize = 0;
@@ -129,6 +143,18 @@ public class TerrainVertexCollector extends BaseVertexCollector {
 		throw new UnsupportedOperationException("Compound vertex collector does not support loadState");
 	}
 
+	@Override
+	public TranslucentSortState saveSortState() {
+		throw new UnsupportedOperationException("Compound vertex collector does not support saveSortState");
+	}
+
+	@Override
+	public void forEachRun(int effectiveFaceIndex, RunConsumer consumer) {
+		for (int i = 0; i < FaceUtil.FACE_INDEX_COUNT; ++i) {
+			collectors[i].forEachRun(i, consumer);
+		}
+	}
+
 	@Override
 	public FaceBucket faceBucket(int index) {
 		throw new UnsupportedOperationException("Compound vertex collector does not support faceBucket");
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.util.Arrays;
+
+import net.minecraft.world.phys.Vec3;
+
+import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
+
+/**
+ * Translucency sort state that holds only quad centroids and the order quads are drawn in,
+ * instead of a copy of translucent vertex data. Quads are resorted by producing a new order
+ * over vertices that stay in GPU storage as they were uploaded.
+ *
+ * <p>Not thread-safe. Only one thread may sort at a time.
+ */
+public final class TranslucentSortState {
+	/** Three floats per quad, in the order quads were uploaded. */
+	private final float[] centroids;
+	/** Quad indexes in draw order. */
+	private final int[] order;
+	private final int quadCount;
+
+	TranslucentSortState(float[] centroids, int quadCount) {
+		this.centroids = Arrays.copyOf(centroids, quadCount * 3);
+		this.quadCount = quadCount;
+		order = new int[quadCount];
+
+		for (int i = 0; i < quadCount; ++i) {
+			order[i] = i;
+		}
+	}
+
+	public int quadCount() {
+		return quadCount;
+	}
+
+	/** Quad indexes in draw order. Don't modify. */
+	public int[] order() {
+		return order;
+	}
+
+	/**
+	 * Sorts quads farthest first from the given position, keeping the current order of quads
+	 * at equal distances, as {@link DrawableVertexCollector#sortTerrainQuads(Vec3, RegionRenderSector)} does.
+	 *
+	 * @return True if draw order changed.
+	 */
+	public boolean sortTerrainQuads(Vec3 sortPos, RegionRenderSector sector, QuadSorter sorter) {
+		final float x = (float) (sortPos.x - sector.paddedBlockOriginX);
+		final float y = (float) (sortPos.y - sector.paddedBlockOriginY);
+		final float z = (float) (sortPos.z - sector.paddedBlockOriginZ);
+		final int quadCount = this.quadCount;
+		final float[] centroids = this.centroids;
+		final int[] order = this.order;
+		long[] keys = sorter.keys(quadCount);
+
+		for (int j = 0; j < quadCount; ++j) {
+			keys[j] = QuadSorter.pack(QuadSorter.farthestFirst(QuadSorter.distanceSq(centroids, order[j], x, y, z)), j);
+		}
+
+		if (!sorter.sort(quadCount)) {
+			return false;
+		}
+
+		keys = sorter.keys(quadCount);
+		final int[] priorOrder = Arrays.copyOf(order, quadCount);
+
+		for (int j = 0; j < quadCount; ++j) {
+			order[j] = priorOrder[QuadSorter.quadIndex(keys[j])];
+		}
+
+		return true;
+	}
+}
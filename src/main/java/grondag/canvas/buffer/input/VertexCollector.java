@@ -34,6 +34,17 @@ public interface VertexCollector {
 
 	int[] target();
 
+	/**
+	 * Makes room for one quad in the storage that {@link #commit(int, boolean)}
+	 * would copy it to and returns the index of its first integer in {@link #reservedData()}.
+	 * Lets encoders write quads in place instead of staging them in {@link #target()}.
+	 * The quad must be fully written before the next reservation or commit.
+	 */
+	int reserveQuad(int effectiveFaceIndex, boolean castShadow);
+
+	/** Array that holds the quad most recently reserved with {@link #reserveQuad(int, boolean)}. */
+	int[] reservedData();
+
 	void clear();
 
 	int quadCount();
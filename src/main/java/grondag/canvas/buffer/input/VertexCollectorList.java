@@ -23,6 +23,7 @@ package grondag.canvas.buffer.input;
 import java.util.Comparator;
 import java.util.function.Predicate;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import io.vram.frex.api.buffer.VertexEmitter;
@@ -36,6 +37,8 @@ import grondag.canvas.buffer.format.StandardEncoder;
 import grondag.canvas.buffer.format.TerrainEncoder;
 import grondag.canvas.config.Configurator;
 import grondag.canvas.material.state.CanvasRenderMaterial;
+import grondag.canvas.material.state.CollectorIndexMap;
+import grondag.canvas.material.state.MaterialStateEncoder;
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.pipeline.Pipeline;
 import grondag.canvas.render.terrain.base.UploadableRegion;
@@ -49,6 +52,8 @@ import grondag.canvas.terrain.region.RegionPosition;
  */
 public class VertexCollectorList {
 	private final ObjectArrayList<DrawableVertexCollector> active = new ObjectArrayList<>();
+	/** Collector index of each active collector, in the same order. */
+	private final IntArrayList activeIndexes = new IntArrayList();
 	private final DrawableVertexCollector[] collectors = new DrawableVertexCollector[RenderState.MAX_COUNT];
 	private final ObjectArrayList<DrawableVertexCollector> drawList = new ObjectArrayList<>();
 	/** If true, will segregate quads by face. */
@@ -117,7 +122,18 @@ public class VertexCollectorList {
 			return null;
 		}
 
-		final int index = materialState.collectorIndex();
+		return get(materialState.collectorIndex(), materialState.sorted());
+	}
+
+	/**
+	 * Collector for a key obtained from {@link #collectorKey(int)}, possibly
+	 * in a different list. Used to restore saved collector content.
+	 */
+	public final DrawableVertexCollector getForCollectorKey(long collectorKey) {
+		return get(CollectorIndexMap.indexFromKey(collectorKey), MaterialStateEncoder.R_SORTED.getValue(collectorKey));
+	}
+
+	private DrawableVertexCollector get(int index, boolean sorted) {
 		final DrawableVertexCollector[] collectors = this.collectors;
 
 		DrawableVertexCollector result = null;
@@ -127,25 +143,38 @@ public class VertexCollectorList {
 		}
 
 		if (result == null) {
-			if (materialState.sorted()) {
-				result = new SortingVertexCollector(materialState.renderState(), isTerrain, target);
+			final RenderState renderState = CollectorIndexMap.renderStateForIndex(index);
+
+			if (sorted) {
+				result = new SortingVertexCollector(renderState, isTerrain, target);
 			} else if (Pipeline.shadowsEnabled()) {
 				result = trackFaces
-						? new TerrainShadowVertexCollector(materialState.renderState(), target)
-						: new ShadowVertexCollector(materialState.renderState(), target);
+						? new TerrainShadowVertexCollector(renderState, target)
+						: new ShadowVertexCollector(renderState, target);
 			} else {
 				result = trackFaces
-						? new TerrainVertexCollector(materialState.renderState(), target)
-						: new SimpleVertexCollector(materialState.renderState(), target);
+						? new TerrainVertexCollector(renderState, target)
+						: new SimpleVertexCollector(renderState, target);
 			}
 
 			collectors[index] = result;
 			active.add(result);
+			activeIndexes.add(index);
 		}
 
 		return result;
 	}
 
+	/** Count of collectors that can be retrieved with {@link #get(int)}. Some may be empty. */
+	public int activeCount() {
+		return active.size();
+	}
+
+	/** Collector key of an active collector. Unlike the index, keys identify the same render state in any list. */
+	public long collectorKey(int index) {
+		return CollectorIndexMap.keyFromIndex(activeIndexes.getInt(index));
+	}
+
 	public DrawableVertexCollector get(int index) {
 		return active.get(index);
 	}
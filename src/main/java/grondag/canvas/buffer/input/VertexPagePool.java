@@ -0,0 +1,141 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Fixed-size pages of vertex data shared by collectors on all threads.
+ * Collectors claim pages as they fill and release all of them when cleared,
+ * so growth never copies and storage doesn't stay with collectors that
+ * happen to have been large once.
+ *
+ * <p>Each thread keeps a few released pages to itself so that the common case
+ * doesn't contend. Idle pages beyond recent peak demand are dropped on release.
+ * Counts are updated without locking and are approximate under contention.
+ */
+public final class VertexPagePool {
+	/** Quads per page, so quads never span pages. */
+	static final int PAGE_QUADS = 256;
+	/** Released pages each thread keeps before returning them to the shared pool. */
+	private static final int THREAD_CACHE_LIMIT = 16;
+	/** How often peak demand is allowed to decay. */
+	private static final long DECAY_INTERVAL_MILLISECONDS = 1000;
+
+	private static final Int2ObjectOpenHashMap<VertexPagePool> POOLS = new Int2ObjectOpenHashMap<>();
+
+	private final int pageInts;
+	private final ArrayDeque<int[]> shared = new ArrayDeque<>();
+	private final ThreadLocal<ArrayDeque<int[]>> threadPages = ThreadLocal.withInitial(ArrayDeque::new);
+	private final AtomicInteger inUse = new AtomicInteger();
+	private final AtomicInteger allocated = new AtomicInteger();
+	private volatile int peakInUse;
+	private volatile long nextDecayTimeMilliseconds;
+
+	private VertexPagePool(int pageInts) {
+		this.pageInts = pageInts;
+	}
+
+	/** Pool with pages that hold {@link #PAGE_QUADS} quads of the given size. */
+	static synchronized VertexPagePool forQuadStride(int quadStrideInts) {
+		return POOLS.computeIfAbsent(quadStrideInts, s -> new VertexPagePool(s * PAGE_QUADS));
+	}
+
+	int pageInts() {
+		return pageInts;
+	}
+
+	int[] claim() {
+		final int used = inUse.incrementAndGet();
+
+		if (used > peakInUse) {
+			peakInUse = used;
+		}
+
+		int[] page = threadPages.get().pollLast();
+
+		if (page == null) {
+			synchronized (shared) {
+				page = shared.pollLast();
+			}
+
+			if (page == null) {
+				allocated.incrementAndGet();
+				page = new int[pageInts];
+			}
+		}
+
+		return page;
+	}
+
+	void release(int[] page) {
+		final int used = inUse.decrementAndGet();
+		final long time = System.currentTimeMillis();
+
+		if (time > nextDecayTimeMilliseconds) {
+			nextDecayTimeMilliseconds = time + DECAY_INTERVAL_MILLISECONDS;
+			peakInUse = Math.max(used, peakInUse - (peakInUse >> 2));
+		}
+
+		if (allocated.get() > peakInUse) {
+			// demand has dropped - drop this page and, if still above peak, one idle page
+			if (allocated.decrementAndGet() > peakInUse) {
+				synchronized (shared) {
+					if (shared.pollLast() != null) {
+						allocated.decrementAndGet();
+					}
+				}
+			}
+
+			return;
+		}
+
+		final ArrayDeque<int[]> threadPages = this.threadPages.get();
+
+		if (threadPages.size() < THREAD_CACHE_LIMIT) {
+			threadPages.addLast(page);
+		} else {
+			synchronized (shared) {
+				shared.addLast(page);
+			}
+		}
+	}
+
+	public static String debugReport() {
+		int inUse = 0;
+		int allocated = 0;
+		long bytes = 0;
+
+		synchronized (VertexPagePool.class) {
+			for (final VertexPagePool pool : POOLS.values()) {
+				final int poolAllocated = pool.allocated.get();
+				inUse += pool.inUse.get();
+				allocated += poolAllocated;
+				bytes += (long) poolAllocated * pool.pageInts * 4;
+			}
+		}
+
+		return String.format("Vertex pages: %d of %d in use %4.1fMb", inUse, allocated, bytes / 1048576f);
+	}
+}
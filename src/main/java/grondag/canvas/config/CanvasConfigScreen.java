@@ -164,6 +164,72 @@ public class CanvasConfigScreen extends BaseScreen {
 				DEFAULTS.terrainSetupOffThread,
 				"config.canvas.help.terrain_setup_off_thread").listItem());
 
+		list.addItem(optionSession.booleanOption("config.canvas.value.word_parallel_occlusion_fill",
+				() -> editing.wordParallelOcclusionFill,
+				b -> editing.wordParallelOcclusionFill = b,
+				DEFAULTS.wordParallelOcclusionFill,
+				"config.canvas.help.word_parallel_occlusion_fill").listItem());
+
+		list.addItem(optionSession.booleanOption("config.canvas.value.cache_occlusion_results",
+				() -> editing.cacheOcclusionResults,
+				b -> editing.cacheOcclusionResults = b,
+				DEFAULTS.cacheOcclusionResults,
+				"config.canvas.help.cache_occlusion_results").listItem());
+
+		list.addItem(optionSession.booleanOption("config.canvas.value.greedy_occlusion_boxes",
+				() -> editing.greedyOcclusionBoxes,
+				b -> {
+					reload |= Configurator.greedyOcclusionBoxes != b;
+					editing.greedyOcclusionBoxes = b;
+				},
+				DEFAULTS.greedyOcclusionBoxes,
+				"config.canvas.help.greedy_occlusion_boxes").listItem());
+
+		list.addItem(optionSession.intOption("config.canvas.value.greedy_occlusion_box_limit",
+				4,
+				128,
+				1,
+				() -> editing.greedyOcclusionBoxLimit,
+				i -> {
+					reload |= Configurator.greedyOcclusionBoxLimit != i;
+					editing.greedyOcclusionBoxLimit = i;
+				},
+				DEFAULTS.greedyOcclusionBoxLimit,
+				"config.canvas.help.greedy_occlusion_box_limit").listItem());
+
+		list.addItem(optionSession.booleanOption("config.canvas.value.persistent_mesh_cache",
+				() -> editing.persistentMeshCache,
+				b -> {
+					reload |= Configurator.persistentMeshCache != b;
+					editing.persistentMeshCache = b;
+				},
+				DEFAULTS.persistentMeshCache,
+				"config.canvas.help.persistent_mesh_cache").listItem());
+
+		list.addItem(optionSession.intOption("config.canvas.value.persistent_mesh_cache_mb",
+				64,
+				8192,
+				64,
+				() -> editing.persistentMeshCacheMb,
+				i -> editing.persistentMeshCacheMb = i,
+				DEFAULTS.persistentMeshCacheMb,
+				"config.canvas.help.persistent_mesh_cache_mb").listItem());
+
+		list.addItem(optionSession.booleanOption("config.canvas.value.incremental_rebuild",
+				() -> editing.incrementalRebuild,
+				b -> editing.incrementalRebuild = b,
+				DEFAULTS.incrementalRebuild,
+				"config.canvas.help.incremental_rebuild").listItem());
+
+		list.addItem(optionSession.booleanOption("config.canvas.value.translucent_index_sort",
+				() -> editing.translucentIndexSort,
+				b -> {
+					reload |= Configurator.translucentIndexSort != b;
+					editing.translucentIndexSort = b;
+				},
+				DEFAULTS.translucentIndexSort,
+				"config.canvas.help.translucent_index_sort").listItem());
+
 		list.addItem(optionSession.booleanOption("config.canvas.value.safe_native_allocation",
 				() -> editing.safeNativeMemoryAllocation,
 				b -> {
@@ -242,6 +308,25 @@ public class CanvasConfigScreen extends BaseScreen {
 				DEFAULTS.useCombinedThreadPool,
 				"config.canvas.help.use_combined_thread_pool").listItem());
 
+		list.addItem(optionSession.booleanOption("config.canvas.value.use_work_stealing_thread_pool",
+				() -> editing.useWorkStealingThreadPool,
+				b -> {
+					requiresRestart |= Configurator.useWorkStealingThreadPool.get() != b;
+					editing.useWorkStealingThreadPool = b;
+				},
+				Configurator.useWorkStealingThreadPool,
+				DEFAULTS.useWorkStealingThreadPool,
+				"config.canvas.help.use_work_stealing_thread_pool").listItem());
+
+		list.addItem(optionSession.intOption("config.canvas.value.rebuild_target_fps",
+				30,
+				240,
+				1,
+				() -> editing.rebuildTargetFps,
+				i -> editing.rebuildTargetFps = i,
+				DEFAULTS.rebuildTargetFps,
+				"config.canvas.help.rebuild_target_fps").listItem());
+
 		list.addItem(optionSession.enumOption("config.canvas.value.transfer_buffer_mode",
 				() -> editing.transferBufferMode,
 				e -> {
@@ -393,6 +478,12 @@ public class CanvasConfigScreen extends BaseScreen {
 				DEFAULTS.traceOcclusionEdgeCases,
 				"config.canvas.help.trace_occlusion_edge_cases").listItem());
 
+		list.addItem(optionSession.booleanOption("config.canvas.value.capture_occlusion_corpus",
+				() -> editing.captureOcclusionCorpus,
+				b -> editing.captureOcclusionCorpus = b,
+				DEFAULTS.captureOcclusionCorpus,
+				"config.canvas.help.capture_occlusion_corpus").listItem());
+
 		list.addItem(optionSession.booleanOption("config.canvas.value.buffer_debug",
 				() -> editing.enableBufferDebug,
 				b -> editing.enableBufferDebug = b,
@@ -67,6 +67,22 @@ class ConfigData {
 	boolean advancedTerrainCulling = true;
 	@Comment("Terrain setup done off the main render thread. Increases FPS when moving. May see occasional flashes of blank chunks")
 	boolean terrainSetupOffThread = true;
+	@Comment("Finds visible region interiors by filling whole words of the occlusion bitmap at a time. Faster in caves. Same result either way.")
+	boolean wordParallelOcclusionFill = true;
+	@Comment("Remembers occlusion results so regions with identical occlusion inputs skip the calculation. Same result either way.")
+	boolean cacheOcclusionResults = true;
+	@Comment("Finds terrain occlusion boxes with a faster greedy search. Boxes may be smaller and less effective at culling.")
+	boolean greedyOcclusionBoxes = false;
+	@Comment("Maximum occlusion boxes per region kept by greedy box search. Larger boxes are kept first. Values 4 to 128.")
+	int greedyOcclusionBoxLimit = 64;
+	@Comment("Saves baked region meshes in a disk cache so unchanged regions load without rebuilding after teleport or rejoin in the same session.")
+	boolean persistentMeshCache = false;
+	@Comment("Maximum size of the region mesh disk cache in megabytes. Least recently used regions are removed first. Values 64 to 8192.")
+	int persistentMeshCacheMb = 1024;
+	@Comment("Rebuilds near regions after small changes by re-baking only blocks near the change. Uses more memory for regions near the camera.")
+	boolean incrementalRebuild = true;
+	@Comment("Resorts translucent terrain by rewriting only the order in which quads are drawn. Uses less memory and upload bandwidth for regions with many translucent quads.")
+	boolean translucentIndexSort = false;
 	@Comment("Use more efficient entity culling. Improves framerate in most scenes.")
 	boolean cullEntityRender = true;
 	@Comment("When true, render thread does not yield to other threads every frame. Vanilla behavior is false (yields).")
@@ -83,6 +99,10 @@ class ConfigData {
 	boolean cullParticles = true;
 	@Comment("Use Canvas thread pool for rendering and local server tasks. May reduce lag spikes caused by thread contention.")
 	boolean useCombinedThreadPool = false;
+	@Comment("Each terrain thread has its own task queue and steals nearby work from others when idle. May reduce contention on CPUs with many threads. Requires restart.")
+	boolean useWorkStealingThreadPool = false;
+	@Comment("Frame rate used to budget terrain rebuild work done on the render thread. Lower values load terrain faster but allow longer frames. 30-240")
+	int rebuildTargetFps = 60;
 	@Comment("Strategy used to prime shadow regions. Tiered has fewer gaps but is more expensive, while Padded is slightly cleverer than Naive.")
 	TerrainIterator.ShadowPriming shadowPrimingStrategy = TerrainIterator.ShadowPriming.PADDED;
 	@Comment("Maximum shadow render distance to be compared against render distance. TEMPORARY, meant to become a pipeline configuration.")
@@ -131,6 +151,8 @@ class ConfigData {
 	boolean renderWhiteGlassAsOccluder = false;
 	@Comment("Log clipping or other non-critical failures detected by terrain occluder. May spam the log.")
 	boolean traceOcclusionEdgeCases = false;
+	@Comment("Save closed positions of newly built regions to canvas_occlusion_corpus.bin for comparing occlusion box search engines.")
+	boolean captureOcclusionCorpus = false;
 	@Comment("Log uniforms not found in shaders. Sometimes useful for shader debug. Will spam the log.")
 	boolean logMissingUniforms = false;
 	@Comment("Log render material states and vanilla RenderLayer mapping. Useful for material debug and pack makers. Will spam the log.")
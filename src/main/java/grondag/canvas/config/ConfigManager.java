@@ -148,6 +148,13 @@ public class ConfigManager {
 		}
 	}
 
+	/** Changes when any config value changes. For caches of results that depend on configuration. */
+	public static int configHash() {
+		final ConfigData config = new ConfigData();
+		Configurator.writeToConfig(config);
+		return GSON.toJson(config).hashCode();
+	}
+
 	static void loadConfig() {
 		ConfigData config = new ConfigData();
 
@@ -46,6 +46,14 @@ public class Configurator {
 	public static boolean fixLuminousBlockShading = DEFAULTS.fixLuminousBlockShading;
 	public static boolean advancedTerrainCulling = DEFAULTS.advancedTerrainCulling;
 	public static boolean terrainSetupOffThread = DEFAULTS.terrainSetupOffThread;
+	public static boolean wordParallelOcclusionFill = DEFAULTS.wordParallelOcclusionFill;
+	public static boolean cacheOcclusionResults = DEFAULTS.cacheOcclusionResults;
+	public static boolean greedyOcclusionBoxes = DEFAULTS.greedyOcclusionBoxes;
+	public static int greedyOcclusionBoxLimit = DEFAULTS.greedyOcclusionBoxLimit;
+	public static boolean persistentMeshCache = DEFAULTS.persistentMeshCache;
+	public static int persistentMeshCacheMb = DEFAULTS.persistentMeshCacheMb;
+	public static boolean incrementalRebuild = DEFAULTS.incrementalRebuild;
+	public static boolean translucentIndexSort = DEFAULTS.translucentIndexSort;
 	public static boolean cullEntityRender = DEFAULTS.cullEntityRender;
 	public static boolean greedyRenderThread = DEFAULTS.greedyRenderThread;
 	public static boolean forceJmxModelLoading = DEFAULTS.forceJmxModelLoading;
@@ -54,6 +62,8 @@ public class Configurator {
 	public static int dynamicFrustumPadding = DEFAULTS.dynamicFrustumPadding;
 	public static boolean cullParticles = DEFAULTS.cullParticles;
 	public static StartupFinalBoolean useCombinedThreadPool = new StartupFinalBoolean(DEFAULTS.useCombinedThreadPool);
+	public static StartupFinalBoolean useWorkStealingThreadPool = new StartupFinalBoolean(DEFAULTS.useWorkStealingThreadPool);
+	public static int rebuildTargetFps = DEFAULTS.rebuildTargetFps;
 	public static boolean shaderDebug = DEFAULTS.shaderDebug;
 	public static boolean preprocessShaderSource = DEFAULTS.preprocessShaderSource;
 	// public static boolean lightmapDebug = DEFAULTS.lightmapDebug;
@@ -78,6 +88,7 @@ public class Configurator {
 	public static boolean debugOcclusionBoxes = DEFAULTS.debugOcclusionBoxes;
 	public static boolean renderWhiteGlassAsOccluder = DEFAULTS.renderWhiteGlassAsOccluder;
 	public static boolean traceOcclusionEdgeCases = DEFAULTS.traceOcclusionEdgeCases;
+	public static boolean captureOcclusionCorpus = DEFAULTS.captureOcclusionCorpus;
 	public static boolean enableBufferDebug = DEFAULTS.enableBufferDebug;
 	public static boolean enableLifeCycleDebug = DEFAULTS.enableLifeCycleDebug;
 	public static boolean logMissingUniforms = DEFAULTS.logMissingUniforms;
@@ -143,6 +154,14 @@ public class Configurator {
 		fixLuminousBlockShading = config.fixLuminousBlockShading;
 		advancedTerrainCulling = config.advancedTerrainCulling;
 		terrainSetupOffThread = config.terrainSetupOffThread;
+		wordParallelOcclusionFill = config.wordParallelOcclusionFill;
+		cacheOcclusionResults = config.cacheOcclusionResults;
+		greedyOcclusionBoxes = config.greedyOcclusionBoxes;
+		greedyOcclusionBoxLimit = Mth.clamp(config.greedyOcclusionBoxLimit, 4, 128);
+		persistentMeshCache = config.persistentMeshCache;
+		persistentMeshCacheMb = Mth.clamp(config.persistentMeshCacheMb, 64, 8192);
+		incrementalRebuild = config.incrementalRebuild;
+		translucentIndexSort = config.translucentIndexSort;
 		safeNativeMemoryAllocation.set(config.safeNativeMemoryAllocation, isStartup);
 		cullEntityRender = config.cullEntityRender;
 		greedyRenderThread = config.greedyRenderThread;
@@ -152,6 +171,8 @@ public class Configurator {
 		staticFrustumPadding = Mth.clamp(config.staticFrustumPadding, 0, 20);
 		cullParticles = config.cullParticles;
 		useCombinedThreadPool.set(config.useCombinedThreadPool, isStartup);
+		useWorkStealingThreadPool.set(config.useWorkStealingThreadPool, isStartup);
+		rebuildTargetFps = Mth.clamp(config.rebuildTargetFps, 30, 240);
 		transferBufferMode = config.transferBufferMode;
 		steadyDebugScreen = config.steadyDebugScreen;
 
@@ -170,6 +191,7 @@ public class Configurator {
 		debugOcclusionRaster = config.debugOcclusionRaster;
 		renderWhiteGlassAsOccluder = config.renderWhiteGlassAsOccluder;
 		traceOcclusionEdgeCases = config.traceOcclusionEdgeCases;
+		captureOcclusionCorpus = config.captureOcclusionCorpus;
 		enableBufferDebug = config.enableBufferDebug;
 		enableLifeCycleDebug = config.enableLifeCycleDebug;
 		logMissingUniforms = config.logMissingUniforms;
@@ -208,6 +230,14 @@ public class Configurator {
 		config.advancedTerrainCulling = advancedTerrainCulling;
 		config.fixLuminousBlockShading = fixLuminousBlockShading;
 		config.terrainSetupOffThread = terrainSetupOffThread;
+		config.wordParallelOcclusionFill = wordParallelOcclusionFill;
+		config.cacheOcclusionResults = cacheOcclusionResults;
+		config.greedyOcclusionBoxes = greedyOcclusionBoxes;
+		config.greedyOcclusionBoxLimit = greedyOcclusionBoxLimit;
+		config.persistentMeshCache = persistentMeshCache;
+		config.persistentMeshCacheMb = persistentMeshCacheMb;
+		config.incrementalRebuild = incrementalRebuild;
+		config.translucentIndexSort = translucentIndexSort;
 		config.safeNativeMemoryAllocation = safeNativeMemoryAllocation.current;
 		config.cullEntityRender = cullEntityRender;
 		config.greedyRenderThread = greedyRenderThread;
@@ -217,6 +247,8 @@ public class Configurator {
 		config.dynamicFrustumPadding = dynamicFrustumPadding;
 		config.cullParticles = cullParticles;
 		config.useCombinedThreadPool = useCombinedThreadPool.current;
+		config.useWorkStealingThreadPool = useWorkStealingThreadPool.current;
+		config.rebuildTargetFps = rebuildTargetFps;
 		config.transferBufferMode = transferBufferMode;
 		config.steadyDebugScreen = steadyDebugScreen;
 
@@ -235,6 +267,7 @@ public class Configurator {
 		config.debugOcclusionRaster = debugOcclusionRaster;
 		config.renderWhiteGlassAsOccluder = renderWhiteGlassAsOccluder;
 		config.traceOcclusionEdgeCases = traceOcclusionEdgeCases;
+		config.captureOcclusionCorpus = captureOcclusionCorpus;
 		config.enableBufferDebug = enableBufferDebug;
 		config.enableLifeCycleDebug = enableLifeCycleDebug;
 		config.logMissingUniforms = logMissingUniforms;
@@ -21,215 +21,205 @@
 package grondag.canvas.light;
 
 import net.minecraft.core.BlockPos;
-import net.minecraft.util.Mth;
 import net.minecraft.world.level.block.state.BlockState;
 
 import grondag.canvas.terrain.region.input.InputRegion;
+import grondag.canvas.terrain.util.BlockStateTable;
 
 // TODO: look at VoxelShapes.method_1080 as a way to not propagate thru slabs
 // Also BlockState.hasSidedTransparency seems promising
 
+/**
+ * Blurs block and sky light of the region with two rounds of separable 3-tap passes,
+ * one pass per axis in each round. Opaque positions neither give nor receive light.
+ *
+ * <p>Both light channels are packed in one long, block light in the low 32 bits and
+ * sky light in the high 32 bits, so every pass handles both at once. Channel values are
+ * at most 240 and the tap weights sum to 0xFFFF, so a weighted sum fits in 24 bits
+ * and one channel can't carry into the other.
+ *
+ * <p>Opacity comes from the closed bits the occlusion calculator has already captured for
+ * the region and the first layer of padding. Only the outer margin is tested directly.
+ *
+ * <p>Output is identical to the earlier implementation that smoothed each channel
+ * separately and tested every position, except where the closed bits and solid render
+ * disagree: white stained glass blocks light when it is configured as an occluder, and
+ * solid blocks with an invisible render shape (none in vanilla) don't.
+ */
 public class LightSmoother {
-	public static final int OPAQUE = -1;
-	private static final int BLUR_RADIUS = 2;
-	private static final int MARGIN = BLUR_RADIUS + 2;
-	private static final int POS_DIAMETER = 16 + MARGIN * 2;
-	private static final int POS_COUNT = POS_DIAMETER * POS_DIAMETER * POS_DIAMETER;
-	private static final int Y_INC = POS_DIAMETER;
-	private static final int Z_INC = POS_DIAMETER * POS_DIAMETER;
-	private static final ThreadLocal<Helper> helpers = ThreadLocal.withInitial(Helper::new);
+	/**
+	 * Positions outside the region that affect the result on each side: one position of output
+	 * padding plus one for each of the two passes along every axis.
+	 */
+	private static final int MARGIN = 3;
+	private static final int DIAMETER = 16 + MARGIN * 2;
+	private static final int POS_COUNT = DIAMETER * DIAMETER * DIAMETER;
+	private static final int Y_INC = DIAMETER;
+	private static final int Z_INC = DIAMETER * DIAMETER;
+
+	/** Grid coordinates of the region and the padding for which closed bits exist. Same as the output bounds. */
+	private static final int CLOSED_MIN = MARGIN - 1;
+	private static final int CLOSED_LIMIT = DIAMETER - CLOSED_MIN;
+
 	private static final int INNER_DIST = 28966; // fractional part of 0xFFFF
 	private static final int OUTER_DIST = (0xFFFF - INNER_DIST) / 2;
-	private static final int INNER_PLUS = INNER_DIST + OUTER_DIST;
+	private static final long ROUNDING = 0x7FFFL | (0x7FFFL << 32);
+	private static final long CHANNEL_MASK = 0xFFFFL | (0xFFFFL << 32);
+	private static final int SKY_SHIFT = 32;
+
+	/** Final scaling and quantization of smoothed channel values, same for both channels. */
+	private static final int[] OUTPUT = new int[256];
+
+	static {
+		for (int i = 0; i < 256; ++i) {
+			final int v = Math.min((i * 104 + 51) / 100, 240);
+			OUTPUT[i] = (v + 2) & 0b11111100;
+		}
+	}
+
+	private static final ThreadLocal<Helper> helpers = ThreadLocal.withInitial(Helper::new);
 
 	public static void computeSmoothedBrightness(InputRegion region) {
 		final Helper help = helpers.get();
-		final BlockPos.MutableBlockPos smoothPos = help.smoothPos;
-		final int[] sky = help.a;
-		final int[] block = help.b;
+		final long[] light = help.a;
+		final boolean[] opaque = help.opaque;
+
+		if (capture(region, light, opaque, help.searchPos)) {
+			smooth(light, help.b, opaque);
+		}
 
 		final int minX = region.originX() - MARGIN;
 		final int minY = region.originY() - MARGIN;
 		final int minZ = region.originZ() - MARGIN;
 
-		for (int x = 0; x < POS_DIAMETER; x++) {
-			for (int y = 0; y < POS_DIAMETER; y++) {
-				for (int z = 0; z < POS_DIAMETER; z++) {
-					final int bx = x + minX;
-					final int by = y + minY;
-					final int bz = z + minZ;
-					smoothPos.set(bx, by, bz);
-
-					final BlockState state = region.getBlockState(bx, by, bz);
-					// don't use cache here because we are populating the cache
-					final int packedLight = region.directBrightness(smoothPos);
-
-					final boolean opaque = state.isSolidRender(region, smoothPos);
-
+		for (int z = CLOSED_MIN; z < CLOSED_LIMIT; ++z) {
+			for (int y = CLOSED_MIN; y < CLOSED_LIMIT; ++y) {
+				for (int x = CLOSED_MIN; x < CLOSED_LIMIT; ++x) {
 					final int i = index(x, y, z);
+					final int packed;
 
-					if (opaque) {
-						block[i] = OPAQUE;
-						sky[i] = OPAQUE;
-					} else if (packedLight == 0) {
-						block[i] = 0;
-						sky[i] = 0;
+					if (opaque[i]) {
+						packed = 0;
 					} else {
-						block[i] = (packedLight & 0xFF);
-						sky[i] = ((packedLight >>> 16) & 0xFF);
+						final long v = light[i];
+						packed = OUTPUT[(int) v] | (OUTPUT[(int) (v >>> SKY_SHIFT)] << 16);
 					}
-				}
-			}
-		}
 
-		final int[] work = help.c;
-		smooth(BLUR_RADIUS + 1, block, work);
-		smooth(BLUR_RADIUS, work, block);
-		//        smooth(1, block, work);
-		//        float[] swap = block;
-		//        block = work;
-		//        work = swap;
-
-		smooth(BLUR_RADIUS + 1, sky, work);
-		smooth(BLUR_RADIUS, work, sky);
-		//        smooth(1, sky, work);
-		//        swap = sky;
-		//        sky = work;
-		//        work = swap;
-
-		final int limit = 16 + MARGIN + 1;
-
-		for (int x = MARGIN - 1; x < limit; x++) {
-			for (int y = MARGIN - 1; y < limit; y++) {
-				for (int z = MARGIN - 1; z < limit; z++) {
-					final int i = index(x, y, z);
-					final int b = Mth.clamp(((block[i]) * 104 + 51) / 100, 0, 240);
-					final int k = Mth.clamp(((sky[i]) * 104 + 51) / 100, 0, 240);
-					region.setLightCache(x + minX, y + minY, z + minZ, ((b + 2) & 0b11111100) | (((k + 2) & 0b11111100) << 16));
+					region.setLightCache(x + minX, y + minY, z + minZ, packed);
 				}
 			}
 		}
 	}
 
-	private static int index(int x, int y, int z) {
-		return x + y * Y_INC + z * Z_INC;
-	}
-
-	private static void smooth(int margin, int[] src, int[] dest) {
-		final int xBase = MARGIN - margin;
-		final int xLimit = POS_DIAMETER - MARGIN + margin;
-
-		final int yBase = xBase * Y_INC;
-		final int yLimit = xLimit * Y_INC;
-		final int zBase = xBase * Z_INC;
-		final int zLimit = xLimit * Z_INC;
-
-		// X PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
+	/**
+	 * Fills light and opacity of every position in the grid.
+	 *
+	 * @return False if all transparent positions have the same light. Smoothing can't change
+	 * anything in that case, which covers fully dark and fully lit regions.
+	 */
+	private static boolean capture(InputRegion region, long[] light, boolean[] opaque, BlockPos.MutableBlockPos searchPos) {
+		final BlockStateTable table = BlockStateTable.get();
+		final int minX = region.originX() - MARGIN;
+		final int minY = region.originY() - MARGIN;
+		final int minZ = region.originZ() - MARGIN;
+		boolean isUniform = true;
+		long uniformLight = -1;
 
-					final int c = src[i];
+		for (int z = 0; z < DIAMETER; ++z) {
+			final boolean zClosed = z >= CLOSED_MIN && z < CLOSED_LIMIT;
 
-					if (c == OPAQUE) {
-						dest[i] = OPAQUE;
-						continue;
-					}
+			for (int y = 0; y < DIAMETER; ++y) {
+				final boolean yzClosed = zClosed && y >= CLOSED_MIN && y < CLOSED_LIMIT;
 
-					//                    int a = src[index(x + 1, y, z)];
-					//                    int b = src[index(x - 1, y, z)];
-					final int a = src[i + 1];
-					final int b = src[i - 1];
+				for (int x = 0; x < DIAMETER; ++x) {
+					final int bx = x + minX;
+					final int by = y + minY;
+					final int bz = z + minZ;
+					final int i = index(x, y, z);
+					final BlockState state;
 
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							dest[i] = c;
-						} else {
-							dest[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
+					if (yzClosed && x >= CLOSED_MIN && x < CLOSED_LIMIT) {
+						if (region.isClosed(region.blockIndex(bx, by, bz))) {
+							opaque[i] = true;
+							continue;
 						}
-					} else if (b == OPAQUE) {
-						dest[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						dest[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
-					}
-				}
-			}
-		}
-
-		// Y PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
 
-					// Note arrays are swapped here
-					final int c = dest[i];
+						state = region.getBlockState(bx, by, bz);
+					} else {
+						state = region.getBlockState(bx, by, bz);
 
-					if (c == OPAQUE) {
-						src[i] = OPAQUE;
-						continue;
+						if (BlockStateTable.isSolidRender(table.flags(state), state, region, searchPos.set(bx, by, bz))) {
+							opaque[i] = true;
+							continue;
+						}
 					}
 
-					//                    int a = dest[index(x, y - 1, z)];
-					//                    int b = dest[index(x, y + 1, z)];
-					final int a = dest[i + Y_INC];
-					final int b = dest[i - Y_INC];
+					final int packedLight = region.directBrightness(state, bx, by, bz);
+					final long v = (packedLight & 0xFF) | ((long) ((packedLight >>> 16) & 0xFF) << SKY_SHIFT);
+					opaque[i] = false;
+					light[i] = v;
 
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							src[i] = c;
-						} else {
-							src[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						src[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						src[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
+					if (isUniform && v != uniformLight) {
+						isUniform = uniformLight == -1;
+						uniformLight = v;
 					}
 				}
 			}
 		}
 
-		// Z PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
+		return !isUniform;
+	}
 
-					// Arrays are swapped back to original roles here
-					final int c = src[i];
+	/**
+	 * Each pass only covers the positions that later passes read, so the range
+	 * of an axis shrinks by one position on each side with every pass along it.
+	 * Result is left in the light array.
+	 */
+	private static void smooth(long[] light, long[] work, boolean[] opaque) {
+		pass(light, work, opaque, 1, 1, 0, 0);
+		pass(work, light, opaque, Y_INC, 1, 1, 0);
+		pass(light, work, opaque, Z_INC, 1, 1, 1);
+		pass(work, light, opaque, 1, 2, 1, 1);
+		pass(light, work, opaque, Y_INC, 2, 2, 1);
+		pass(work, light, opaque, Z_INC, 2, 2, 2);
+	}
 
-					if (c == OPAQUE) {
-						dest[i] = OPAQUE;
+	/**
+	 * One 3-tap pass along the axis with the given index increment. An opaque neighbor
+	 * contributes the center value, which gives its weight to the center.
+	 * Opaque positions are not written.
+	 */
+	private static void pass(long[] src, long[] dest, boolean[] opaque, int inc, int xMin, int yMin, int zMin) {
+		final int xLimit = DIAMETER - xMin;
+		final int yLimit = DIAMETER - yMin;
+		final int zLimit = DIAMETER - zMin;
+
+		for (int z = zMin; z < zLimit; ++z) {
+			for (int y = yMin; y < yLimit; ++y) {
+				final int limit = index(xLimit, y, z);
+
+				for (int i = index(xMin, y, z); i < limit; ++i) {
+					if (opaque[i]) {
 						continue;
 					}
 
-					//                    int a = src[index(x, y, z - 1)];
-					//                    int b = src[index(x, y, z + 1)];
-					final int a = src[i + Z_INC];
-					final int b = src[i - Z_INC];
-
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							dest[i] = c;
-						} else {
-							dest[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						dest[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						dest[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
-					}
+					final long c = src[i];
+					final long a = opaque[i + inc] ? c : src[i + inc];
+					final long b = opaque[i - inc] ? c : src[i - inc];
+					dest[i] = (((a + b) * OUTER_DIST + c * INNER_DIST + ROUNDING) >>> 16) & CHANNEL_MASK;
 				}
 			}
 		}
 	}
 
+	private static int index(int x, int y, int z) {
+		return x + y * Y_INC + z * Z_INC;
+	}
+
 	private static class Helper {
-		private final BlockPos.MutableBlockPos smoothPos = new BlockPos.MutableBlockPos();
-		private final int[] a = new int[POS_COUNT];
-		private final int[] b = new int[POS_COUNT];
-		private final int[] c = new int[POS_COUNT];
+		private final BlockPos.MutableBlockPos searchPos = new BlockPos.MutableBlockPos();
+		private final long[] a = new long[POS_COUNT];
+		private final long[] b = new long[POS_COUNT];
+		private final boolean[] opaque = new boolean[POS_COUNT];
 	}
 }
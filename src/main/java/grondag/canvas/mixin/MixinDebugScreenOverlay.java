@@ -47,12 +47,14 @@ import net.minecraft.client.gui.components.DebugScreenOverlay;
 //import net.minecraft.client.renderer.GameRenderer;
 
 import grondag.canvas.CanvasMod;
-import grondag.canvas.buffer.input.ArrayVertexCollector;
+import grondag.canvas.buffer.input.VertexPagePool;
 import grondag.canvas.buffer.render.TransferBuffers;
 import grondag.canvas.buffer.util.DirectBufferAllocator;
 import grondag.canvas.buffer.util.GlBufferAllocator;
 import grondag.canvas.render.terrain.cluster.SlabAllocator;
 import grondag.canvas.render.world.CanvasWorldRenderer;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionResultCache;
+import grondag.canvas.terrain.region.RegionMeshCache;
 import grondag.canvas.terrain.util.TerrainExecutor;
 import grondag.canvas.varia.CanvasGlHelper;
 //import grondag.canvas.config.Configurator;
@@ -209,11 +211,18 @@ public class MixinDebugScreenOverlay extends GuiComponent {
 		result.add(DirectBufferAllocator.debugString());
 		result.add(GlBufferAllocator.debugString());
 		result.add(TransferBuffers.debugString());
-		result.add(ArrayVertexCollector.debugReport());
+		result.add(VertexPagePool.debugReport());
 		TerrainExecutor.INSTANCE.debugReport(result);
 
 		@SuppressWarnings("resource")
 		final var worldRenderState = CanvasWorldRenderer.instance().worldRenderState;
+		result.add(worldRenderState.regionRebuildManager.costModel.debugSummary());
+		result.add(OcclusionResultCache.debugSummary());
+
+		if (RegionMeshCache.isEnabled()) {
+			result.add(RegionMeshCache.debugSummary());
+		}
+
 		result.add("Solid " + worldRenderState.solidClusterRealm.debugSummary());
 		result.add("Translucent " + worldRenderState.translucentClusterRealm.debugSummary());
 		result.add(worldRenderState.drawlistDebugSummary());
@@ -23,8 +23,12 @@ package grondag.canvas.mixin;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.chunk.LevelChunk;
 
@@ -42,7 +46,7 @@ public class MixinLevelChunk implements LevelChunkExt {
 		ChunkColorCache result = colorCache;
 
 		if (result == null || result.isInvalid()) {
-			result = new ChunkColorCache((ClientLevel) level, (LevelChunk) (Object) this);
+			result = new ChunkColorCache((LevelChunk) (Object) this);
 			colorCache = result;
 		}
 
@@ -53,4 +57,13 @@ public class MixinLevelChunk implements LevelChunkExt {
 	public void canvas_clearColorCache() {
 		colorCache = null;
 	}
+
+	// Biomes may have changed, which changes blended colors of this chunk and its neighbors
+	@Inject(method = "replaceWithPacketData", at = @At("RETURN"))
+	private void onReplaceWithPacketData(CallbackInfo ci) {
+		if (level instanceof ClientLevel) {
+			final ChunkPos pos = ((LevelChunk) (Object) this).getPos();
+			ChunkColorCache.invalidateAround((ClientLevel) level, pos.x, pos.z);
+		}
+	}
 }
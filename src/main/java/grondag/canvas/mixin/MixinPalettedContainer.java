@@ -0,0 +1,126 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.mixin;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+import grondag.canvas.mixinterface.PalettedContainerExt;
+
+/**
+ * Makes container data copy-on-write once a snapshot has been taken so that terrain
+ * capture on worker threads can read consistent data without locking. Writes still
+ * happen only on the thread that owns the container.
+ */
+@Mixin(PalettedContainer.class)
+public class MixinPalettedContainer<T> implements PalettedContainerExt<T> {
+	private static final int MAX_SPINS = 1024;
+	private static final int MAX_YIELDS = 65536;
+
+	@Shadow private volatile PalettedContainer.Data<T> data;
+
+	/** Odd while a write is in progress. */
+	private volatile int writeVersion;
+
+	/**
+	 * Data most recently given out as a snapshot. Copied before the next write if still current.
+	 * Otherwise it is never written again, but remains referenced until the next snapshot.
+	 */
+	private volatile PalettedContainer.Data<T> sharedData;
+
+	@Override
+	public PalettedContainer.Data<T> canvas_data() {
+		return data;
+	}
+
+	@Override
+	public PalettedContainer.Data<T> canvas_snapshot() {
+		final PalettedContainer.Data<T> result = data;
+		sharedData = result;
+		final int version = writeVersion;
+
+		// A write that started before the data was marked shared may still be changing it.
+		// Any write after this one will see it is shared, so only need to wait for this one.
+		if ((version & 1) != 0) {
+			for (int i = 0; writeVersion == version; ++i) {
+				if (i < MAX_SPINS) {
+					Thread.onSpinWait();
+				} else if (i < MAX_YIELDS) {
+					Thread.yield();
+				} else {
+					// Only possible if a write failed with an exception and never completed.
+					// The copy may be inconsistent, but no worse than reading live data.
+					return result.copy();
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private void beforeWrite() {
+		writeVersion++;
+
+		if (sharedData == data) {
+			data = data.copy();
+		}
+	}
+
+	private void afterWrite() {
+		writeVersion++;
+	}
+
+	@Inject(method = "getAndSet(ILjava/lang/Object;)Ljava/lang/Object;", at = @At("HEAD"))
+	private void onBeforeGetAndSet(int index, T value, CallbackInfoReturnable<T> ci) {
+		beforeWrite();
+	}
+
+	@Inject(method = "getAndSet(ILjava/lang/Object;)Ljava/lang/Object;", at = @At("RETURN"))
+	private void onAfterGetAndSet(int index, T value, CallbackInfoReturnable<T> ci) {
+		afterWrite();
+	}
+
+	@Inject(method = "set(ILjava/lang/Object;)V", at = @At("HEAD"))
+	private void onBeforeSet(int index, T value, CallbackInfo ci) {
+		beforeWrite();
+	}
+
+	@Inject(method = "set(ILjava/lang/Object;)V", at = @At("RETURN"))
+	private void onAfterSet(int index, T value, CallbackInfo ci) {
+		afterWrite();
+	}
+
+	@Inject(method = "read", at = @At("HEAD"))
+	private void onBeforeRead(CallbackInfo ci) {
+		beforeWrite();
+	}
+
+	@Inject(method = "read", at = @At("RETURN"))
+	private void onAfterRead(CallbackInfo ci) {
+		afterWrite();
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.mixin;
+
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+import net.minecraft.util.SimpleBitStorage;
+
+import grondag.canvas.mixinterface.BitStorageExt;
+
+@Mixin(SimpleBitStorage.class)
+public class MixinSimpleBitStorage implements BitStorageExt {
+	@Shadow @Final private long[] data;
+	@Shadow @Final private int bits;
+	@Shadow @Final private long mask;
+	@Shadow @Final private int size;
+	@Shadow @Final private int valuesPerLong;
+
+	@Override
+	public void canvas_unpack(int[] target) {
+		final long[] data = this.data;
+		final int bits = this.bits;
+		final long mask = this.mask;
+		final int size = this.size;
+		final int valuesPerLong = this.valuesPerLong;
+		int index = 0;
+
+		// Values never span words, so each word holds a whole number of values
+		for (final long word : data) {
+			long bits64 = word;
+			final int limit = Math.min(size, index + valuesPerLong);
+
+			while (index < limit) {
+				target[index++] = (int) (bits64 & mask);
+				bits64 >>>= bits;
+			}
+		}
+	}
+}
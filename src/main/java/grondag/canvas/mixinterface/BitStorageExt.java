@@ -20,8 +20,10 @@
 
 package grondag.canvas.mixinterface;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-
 public interface BitStorageExt {
-	void canvas_fastForEach(IntArrayList list);
+	/**
+	 * Writes every stored value to the target array in index order, reading each
+	 * backing word only once. Target must be at least as long as the storage size.
+	 */
+	void canvas_unpack(int[] target);
 }
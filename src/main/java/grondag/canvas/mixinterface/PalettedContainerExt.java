@@ -0,0 +1,38 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.mixinterface;
+
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+public interface PalettedContainerExt<T> {
+	/**
+	 * Current storage and palette. Both must be read from the same instance because
+	 * the container replaces them together when the palette is resized.
+	 */
+	PalettedContainer.Data<T> canvas_data();
+
+	/**
+	 * Current storage and palette, which will not change after this call. The container
+	 * copies them before its next change instead of changing them in place.
+	 * Safe to call from any thread while the owning thread writes to the container.
+	 */
+	PalettedContainer.Data<T> canvas_snapshot();
+}
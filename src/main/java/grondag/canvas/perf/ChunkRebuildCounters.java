@@ -20,6 +20,8 @@
 
 package grondag.canvas.perf;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import io.vram.sc.concurrency.ConcurrentPerformanceCounter;
 
 import grondag.canvas.CanvasMod;
@@ -30,6 +32,7 @@ public abstract class ChunkRebuildCounters {
 	private static final ConcurrentPerformanceCounter buildCounter = new ConcurrentPerformanceCounter();
 	private static final ConcurrentPerformanceCounter copyCounter = new ConcurrentPerformanceCounter();
 	private static final ConcurrentPerformanceCounter uploadCounter = new ConcurrentPerformanceCounter();
+	private static final AtomicInteger skipCount = new AtomicInteger();
 	private static final ThreadLocal<Long> chunkStart = ThreadLocal.withInitial(() -> 0L);
 	private static final ThreadLocal<Long> copyStart = ThreadLocal.withInitial(() -> 0L);
 	private static final ThreadLocal<Long> uploadStart = ThreadLocal.withInitial(() -> 0L);
@@ -41,6 +44,7 @@ public abstract class ChunkRebuildCounters {
 		buildCounter.clearStats();
 		copyCounter.clearStats();
 		uploadCounter.clearStats();
+		skipCount.set(0);
 	}
 
 	public static void startChunk() {
@@ -59,6 +63,9 @@ public abstract class ChunkRebuildCounters {
 
 			final int uploadCount = uploadCounter.runCount();
 			CanvasMod.LOG.info(String.format("Upload time per region for last %d regions = %,dns  total time: %fs", uploadCount, uploadCount == 0 ? 0 : uploadCounter.runTime() / uploadCount, uploadCounter.runTime() / 1000000000d));
+
+			final int skips = skipCount.get();
+			CanvasMod.LOG.info(String.format("Rebuilds skipped with unchanged content = %d  skip rate: %.1f%%", skips, skips * 100d / (skips + 2000)));
 			reset();
 
 			CanvasMod.LOG.info("");
@@ -74,6 +81,11 @@ public abstract class ChunkRebuildCounters {
 		copyCounter.addCount(1);
 	}
 
+	/** Call when a rebuild is skipped because captured content matches the last build. */
+	public static void completeSkip() {
+		skipCount.incrementAndGet();
+	}
+
 	public static void startUpload() {
 		uploadStart.set(System.nanoTime());
 	}
@@ -27,13 +27,10 @@ import net.minecraft.resources.ResourceLocation;
 
 import grondag.canvas.CanvasMod;
 import grondag.canvas.buffer.format.CanvasVertexFormats;
-import grondag.canvas.buffer.input.DrawableVertexCollector;
-import grondag.canvas.buffer.input.SimpleVertexCollector;
 import grondag.canvas.buffer.render.StaticDrawBuffer;
 import grondag.canvas.buffer.render.TransferBuffer;
 import grondag.canvas.buffer.render.TransferBuffers;
 import grondag.canvas.config.Configurator;
-import grondag.canvas.material.state.RenderState;
 import grondag.canvas.perf.Timekeeper;
 import grondag.canvas.pipeline.pass.Pass;
 import grondag.canvas.render.CanvasTextureState;
@@ -88,24 +85,20 @@ public class PipelineManager {
 		debugDepthArrayProgram = new ProcessProgram("debug_depth_array", new ResourceLocation("canvas:shaders/pipeline/post/simple_full_frame.vert"), new ResourceLocation("canvas:shaders/pipeline/post/visualize_depth_array.frag"), "_cvu_input");
 		debugCubeMapProgram = new ProcessProgram("debug_cube_map", new ResourceLocation("canvas:shaders/pipeline/post/simple_full_frame.vert"), new ResourceLocation("canvas:shaders/pipeline/post/visualize_cube_map.frag"), "_cvu_input");
 
-		final DrawableVertexCollector collector = new SimpleVertexCollector(RenderState.missing(), new int[64]);
-
-		final int[] v = collector.target();
+		// One-off quad, so written directly instead of claiming a pooled collector page
+		final int[] v = new int[30];
 		addVertex(0f, 0f, 0.2f, 0f, 1f, v, 0);
 		addVertex(1f, 0f, 0.2f, 1f, 1f, v, 5);
 		addVertex(1f, 1f, 0.2f, 1f, 0f, v, 10);
 		addVertex(1f, 1f, 0.2f, 1f, 0f, v, 15);
 		addVertex(0f, 1f, 0.2f, 0f, 0f, v, 20);
 		addVertex(0f, 0f, 0.2f, 0f, 1f, v, 25);
-		collector.commit(30);
 
-		final TransferBuffer transfer = TransferBuffers.claim(collector.byteSize());
-		collector.toBuffer(transfer, 0);
+		final TransferBuffer transfer = TransferBuffers.claim(v.length * 4);
+		transfer.put(v, 0, 0, v.length);
 		drawBuffer = new StaticDrawBuffer(CanvasVertexFormats.PROCESS_VERTEX_UV, transfer);
 		drawBuffer.upload();
 
-		collector.clear(); // releases storage
-
 		pendingInitPass = true;
 		pendingResizePass = true;
 	}
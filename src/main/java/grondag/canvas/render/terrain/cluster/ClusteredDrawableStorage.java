@@ -25,6 +25,7 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import grondag.canvas.buffer.input.FaceBucket;
 import grondag.canvas.buffer.render.TransferBuffer;
 import grondag.canvas.buffer.render.UploadableVertexStorage;
+import grondag.canvas.render.terrain.drawlist.QuadOrderIndex;
 import grondag.canvas.render.terrain.cluster.VertexCluster.RegionAllocation;
 import grondag.canvas.terrain.region.RegionPosition;
 
@@ -40,6 +41,7 @@ public class ClusteredDrawableStorage implements UploadableVertexStorage {
 	private TransferBuffer transferBuffer;
 	private boolean isClosed = false;
 	private RegionAllocation allocation = null;
+	private QuadOrderIndex quadOrder = null;
 
 	public ClusteredDrawableStorage(VertexClusterRealm owner, TransferBuffer transferBuffer, int byteCount, RegionPosition regionOrigin, int quadVertexCount, FaceBucket[] buckets) {
 		realm = owner;
@@ -78,6 +80,11 @@ public class ClusteredDrawableStorage implements UploadableVertexStorage {
 				allocation.onRegionClosed();
 				allocation = null;
 			}
+
+			if (quadOrder != null) {
+				quadOrder.shutdown();
+				quadOrder = null;
+			}
 		}
 	}
 
@@ -89,6 +96,31 @@ public class ClusteredDrawableStorage implements UploadableVertexStorage {
 		return allocation;
 	}
 
+	/** Element buffer with translucent draw order if quads were resorted by index, or null if drawn as uploaded. */
+	public QuadOrderIndex quadOrder() {
+		return quadOrder;
+	}
+
+	/**
+	 * Replaces draw order with elements from {@link QuadOrderIndex#prepare(int[], int)}.
+	 * Releases the transfer buffer even if closed. Elements prepared for a different
+	 * quad count can't be for these vertices and are dropped.
+	 */
+	public void uploadQuadOrder(TransferBuffer elements) {
+		assert RenderSystem.isOnRenderThread();
+
+		if (isClosed || elements.sizeBytes() != QuadOrderIndex.byteCount(quadVertexCount >> 2)) {
+			elements.release();
+			return;
+		}
+
+		if (quadOrder == null) {
+			quadOrder = new QuadOrderIndex(quadVertexCount >> 2);
+		}
+
+		quadOrder.upload(elements);
+	}
+
 	@Override
 	public void upload() {
 		assert allocation == null;
@@ -66,6 +66,15 @@ public class ClusterDrawList {
 
 		for (final var region : regions) {
 			final var alloc = region.allocation().getAllocation();
+			final var quadOrder = region.quadOrder();
+
+			if (quadOrder != null) {
+				// resorted by index - needs its own element buffer
+				quadCount += DrawSpecBuilder.build(specAllocations, drawSpecs, false, false);
+				quadCount += DrawSpecBuilder.buildOrdered(alloc, quadOrder, drawSpecs);
+				lastSlab = null;
+				continue;
+			}
 
 			if (alloc.slab != lastSlab) {
 				// NB: builder checks for empty region list (will be true for first region)
@@ -114,7 +123,7 @@ public class ClusterDrawList {
 		for (int i = 0; i < limit; ++i) {
 			final var spec = drawSpecs.get(i);
 			spec.bind();
-			GFX.glMultiDrawElementsBaseVertex(GFX.GL_TRIANGLES, spec.triVertexCount(), GFX.GL_UNSIGNED_SHORT, spec.triIndexOffset(), spec.baseQuadVertexOffset());
+			GFX.glMultiDrawElementsBaseVertex(GFX.GL_TRIANGLES, spec.triVertexCount(), spec.elementType(), spec.triIndexOffset(), spec.baseQuadVertexOffset());
 		}
 	}
 
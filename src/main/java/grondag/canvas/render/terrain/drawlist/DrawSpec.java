@@ -21,11 +21,13 @@
 package grondag.canvas.render.terrain.drawlist;
 
 import java.nio.IntBuffer;
+import java.util.function.IntSupplier;
 
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryUtil;
 
 import grondag.canvas.render.terrain.cluster.Slab;
+import grondag.canvas.varia.GFX;
 
 class DrawSpec {
 	private IntBuffer triVertexCount;
@@ -33,10 +35,16 @@ class DrawSpec {
 	private PointerBuffer triIndexOffset;
 	private final int size;
 	private final TerrainVAO vao;
+	private final int elementType;
 	private boolean isClosed = false;
 
 	DrawSpec (Slab slab, int size, int[] triVertexCount, int[] baseQuadVertexOffset) {
+		this(slab, size, triVertexCount, baseQuadVertexOffset, () -> SlabIndex.get().glBufferId(), GFX.GL_UNSIGNED_SHORT);
+	}
+
+	DrawSpec (Slab slab, int size, int[] triVertexCount, int[] baseQuadVertexOffset, IntSupplier elementIdSupplier, int elementType) {
 		this.size = size;
+		this.elementType = elementType;
 		this.triVertexCount = MemoryUtil.memAllocInt(size);
 		this.triVertexCount.put(0, triVertexCount, 0, size);
 
@@ -51,7 +59,11 @@ class DrawSpec {
 
 		triIndexOffset.position(0);
 
-		vao = new TerrainVAO(() -> slab.glBufferId(), () -> SlabIndex.get().glBufferId(), 0);
+		vao = new TerrainVAO(() -> slab.glBufferId(), elementIdSupplier, 0);
+	}
+
+	int elementType() {
+		return elementType;
 	}
 
 	IntBuffer baseQuadVertexOffset() {
@@ -66,6 +66,18 @@ abstract class DrawSpecBuilder {
 		return quadCount;
 	}
 
+	/** Single draw of a region with its own element buffer, which has no limit on vertex count. NOT THREAD-SAFE. */
+	public static int buildOrdered(SlabAllocation alloc, QuadOrderIndex quadOrder, ObjectArrayList<DrawSpec> output) {
+		assert RenderSystem.isOnRenderThread();
+
+		triVertexCount.clear();
+		baseQuadVertexOffset.clear();
+		triVertexCount.add(alloc.triVertexCount);
+		baseQuadVertexOffset.add(alloc.baseQuadVertexIndex);
+		output.add(new DrawSpec(alloc.slab, 1, triVertexCount.elements(), baseQuadVertexOffset.elements(), quadOrder::glBufferId, quadOrder.elementType));
+		return alloc.quadVertexCount;
+	}
+
 	private static void acceptAlloc(SlabAllocation alloc) {
 		quadCount += alloc.quadVertexCount;
 
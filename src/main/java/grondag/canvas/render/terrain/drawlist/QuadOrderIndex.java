@@ -0,0 +1,115 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.render.terrain.drawlist;
+
+import java.nio.ByteBuffer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import grondag.canvas.buffer.render.AbstractGlBuffer;
+import grondag.canvas.buffer.render.TransferBuffer;
+import grondag.canvas.buffer.render.TransferBuffers;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Element buffer that draws the quads of one translucent region in sorted order.
+ * Vertices stay where they were uploaded and only this buffer changes on resort.
+ * Elements are region-relative, so draws use the region's base vertex.
+ */
+public class QuadOrderIndex extends AbstractGlBuffer {
+	public final int elementType;
+
+	public QuadOrderIndex(int quadCount) {
+		super(byteCount(quadCount), GFX.GL_ELEMENT_ARRAY_BUFFER, GFX.GL_DYNAMIC_DRAW);
+		elementType = elementType(quadCount);
+	}
+
+	/** Short elements unless quad vertices are beyond what they can address. */
+	public static int elementType(int quadCount) {
+		return quadCount * 4 <= 65536 ? GFX.GL_UNSIGNED_SHORT : GFX.GL_UNSIGNED_INT;
+	}
+
+	private static int elementBytes(int elementType) {
+		return elementType == GFX.GL_UNSIGNED_SHORT ? 2 : 4;
+	}
+
+	/** Size of elements for the given number of quads, both in the buffer and from {@link #prepare(int[], int)}. */
+	public static int byteCount(int quadCount) {
+		return quadCount * 6 * elementBytes(elementType(quadCount));
+	}
+
+	/**
+	 * Writes triangle elements for quads in the given order. Can be called off-thread.
+	 * Caller must upload or release the result.
+	 */
+	public static TransferBuffer prepare(int[] order, int quadCount) {
+		final int elementType = elementType(quadCount);
+		final TransferBuffer transferBuffer = TransferBuffers.claim(byteCount(quadCount));
+		final ByteBuffer buff = transferBuffer.byteBuffer();
+		int byteIndex = 0;
+
+		if (elementType == GFX.GL_UNSIGNED_SHORT) {
+			for (int j = 0; j < quadCount; ++j) {
+				final int v = order[j] << 2;
+				buff.putShort(byteIndex, (short) v);
+				buff.putShort(byteIndex + 2, (short) (v + 1));
+				buff.putShort(byteIndex + 4, (short) (v + 2));
+				buff.putShort(byteIndex + 6, (short) (v + 2));
+				buff.putShort(byteIndex + 8, (short) (v + 3));
+				buff.putShort(byteIndex + 10, (short) v);
+				byteIndex += 12;
+			}
+		} else {
+			for (int j = 0; j < quadCount; ++j) {
+				final int v = order[j] << 2;
+				buff.putInt(byteIndex, v);
+				buff.putInt(byteIndex + 4, v + 1);
+				buff.putInt(byteIndex + 8, v + 2);
+				buff.putInt(byteIndex + 12, v + 2);
+				buff.putInt(byteIndex + 16, v + 3);
+				buff.putInt(byteIndex + 20, v);
+				byteIndex += 24;
+			}
+		}
+
+		return transferBuffer;
+	}
+
+	/**
+	 * Replaces buffer content and releases the transfer buffer. Copies only the prepared
+	 * bytes, which must be for the same quad count as this buffer.
+	 */
+	public void upload(TransferBuffer transferBuffer) {
+		assert RenderSystem.isOnRenderThread();
+		assert transferBuffer.sizeBytes() == capacityBytes;
+
+		// element buffer binding is part of VAO state
+		GFX.bindVertexArray(0);
+		bind();
+		transferBuffer.releaseToBoundBuffer(bindTarget, 0);
+		unbind();
+	}
+
+	@Override
+	protected void onShutdown() {
+		// NOOP
+	}
+}
@@ -118,6 +118,7 @@ import grondag.canvas.shader.data.ScreenRenderState;
 import grondag.canvas.shader.data.ShaderDataManager;
 import grondag.canvas.terrain.occlusion.SortableVisibleRegionList;
 import grondag.canvas.terrain.occlusion.TerrainIterator;
+import grondag.canvas.terrain.region.RegionBuildCostModel;
 import grondag.canvas.terrain.region.RegionRebuildManager;
 import grondag.canvas.terrain.region.RenderRegionStorage;
 import grondag.canvas.terrain.util.TerrainExecutor;
@@ -340,25 +341,13 @@ public class CanvasWorldRenderer extends LevelRenderer {
 		FrustumSetupListener.invoke(eventContext);
 
 		WorldRenderDraws.profileSwap(profiler, ProfilerGroup.StartWorld, "updatechunks");
-		final int maxFps = mc.options.framerateLimit().get();
-		long maxFpsLimit;
-
-		// Hardcoded MC max framerate
-		if (maxFps == 260) {
-			maxFpsLimit = 0L;
-		} else {
-			maxFpsLimit = 1000000000 / maxFps;
-		}
-
-		final long nowTime = Util.getNanos();
-		final long usedTime = nowTime - frameStartNanos;
-
-		// No idea what the 3/2 is for - looks like a hack
-		final long updateBudget = wr.canvas_chunkUpdateSmoother().registerValueAndGetMean(usedTime) * 3L / 2L;
-		final long clampedBudget = Mth.clamp(updateBudget, maxFpsLimit, 33333333L);
-
 		worldRenderState.regionBuilder().upload();
-		worldRenderState.regionRebuildManager.processScheduledRegions(frameStartNanos + clampedBudget);
+
+		final RegionBuildCostModel rebuildCostModel = worldRenderState.regionRebuildManager.costModel;
+		final long updateStartNanos = Util.getNanos();
+		final long updateBudget = rebuildCostModel.frameBudget(updateStartNanos - frameStartNanos, mc.options.framerateLimit().get());
+		worldRenderState.regionRebuildManager.processScheduledRegions(updateStartNanos + updateBudget);
+		rebuildCostModel.startFrameRemainder(Util.getNanos());
 
 		// WIP: need a way to set the deadline appropriately based on steady frame rate and time already elapsed.
 		// Method must ensure we don't have starvation - task queue can't grow indefinitely.
@@ -880,6 +869,7 @@ public class CanvasWorldRenderer extends LevelRenderer {
 		WorldRenderStartListener.invoke(eventContext);
 		PipelineManager.beforeWorldRender();
 		renderWorld(viewMatrixStack, tickDelta, frameStartNanos, renderBlockOutline, camera, gameRenderer, lightmapTextureManager, projectionMatrix);
+		worldRenderState.regionRebuildManager.costModel.completeFrameRemainder(Util.getNanos());
 		WorldRenderPostListener.invoke(eventContext);
 
 		RenderSystem.applyModelViewMatrix();
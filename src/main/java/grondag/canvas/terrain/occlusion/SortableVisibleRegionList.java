@@ -56,6 +56,8 @@ public final class SortableVisibleRegionList extends VisibleRegionList {
 	 * <p>Regions that are non-translucent, already scheduled or already current
 	 * won't count against the limit.  Resorts are fast and happen off thread -
 	 * checking incrementally avoids overloading the GPU with buffer uploads.
+	 * Regions beyond the near ring are resorted less often as they get farther away.
+	 * See {@link grondag.canvas.terrain.region.RegionPosition#checkAndUpdateSortNeeded(int, Vec3)}.
 	 */
 	public void scheduleResort(Vec3 cameraPos) {
 		final double x = cameraPos.x;
@@ -90,9 +92,8 @@ public final class SortableVisibleRegionList extends VisibleRegionList {
 			int count = 0;
 			int i;
 
-			// PERF: probably a way to sort more distant regions less frequently
 			for (i = 0; i < limit; i++) {
-				if (visibleRegions[i].scheduleSort(positionVersion)) {
+				if (visibleRegions[i].scheduleSort(positionVersion, cameraPos)) {
 					if (++count > 16) {
 						break;
 					}
@@ -52,6 +52,7 @@ import grondag.canvas.terrain.region.RegionBuildState;
 import grondag.canvas.terrain.region.RenderRegion;
 import grondag.canvas.terrain.region.RenderRegionIndexer;
 import grondag.canvas.terrain.region.RenderRegionStorage;
+import grondag.canvas.terrain.util.TerrainExecutor;
 import grondag.canvas.terrain.util.TerrainExecutorTask;
 
 public class TerrainIterator implements TerrainExecutorTask {
@@ -76,6 +77,10 @@ public class TerrainIterator implements TerrainExecutorTask {
 	 * camera is outside world range.  Otherwise will match the origin of the camera region.
 	 */
 	private long cameraChunkOrigin;
+
+	/** Camera region origin at the last update of region positions. Used to detect when task priorities change. */
+	private long lastPositionUpdateOrigin = -1;
+
 	private int renderDistance;
 	private int effectiveDistance;
 	private boolean chunkCullingEnabled = true;
@@ -220,6 +225,13 @@ public class TerrainIterator implements TerrainExecutorTask {
 
 		try {
 			worldRenderState.renderRegionStorage.updateRegionPositionAndVisibility();
+
+			if (lastPositionUpdateOrigin != cameraChunkOrigin) {
+				// Region distances changed so queued rebuild tasks need to be re-sorted
+				lastPositionUpdateOrigin = cameraChunkOrigin;
+				TerrainExecutor.INSTANCE.invalidatePriorities();
+			}
+
 			worldRenderState.drawListCullingHlper.update();
 
 			if (resetCameraOccluder) {
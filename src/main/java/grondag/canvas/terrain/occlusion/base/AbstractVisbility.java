@@ -157,6 +157,8 @@ public abstract class AbstractVisbility<T extends AbstractVisbility<T, U, V, W>,
 	public void updateView(TerrainFrustum frustum, long cameraRegionOrigin) {
 		if (lastCameraRegionOrigin != cameraRegionOrigin) {
 			lastCameraRegionOrigin = cameraRegionOrigin;
+			// Prior results can't seed the next pass: region distances, fuzz and occlusion ranges
+			// all change and the occluder is redrawn from the new position anyway.
 			shouldInvalidateNextPass = true;
 		}
 	}
@@ -127,7 +127,12 @@ public class CameraPotentiallyVisibleRegionSet implements PotentiallyVisibleRegi
 	@Override
 	public void clear() {
 		System.arraycopy(SQ_DIST_TO_RING_MAP, 0, ringMap, 0, RING_MAP_LENGTH);
-		Arrays.fill(states, null);
+
+		// Clears happen on every camera block move, so only visit the populated range.
+		if (maxIndex >= 0) {
+			Arrays.fill(states, 0, maxIndex + 1, null);
+		}
+
 		maxIndex = -1;
 		++version;
 		returnToStart();
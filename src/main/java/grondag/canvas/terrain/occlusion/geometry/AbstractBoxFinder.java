@@ -0,0 +1,47 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import grondag.bitraster.PackedBox;
+
+/**
+ * Decomposes the closed positions of a region into boxes for occlusion.
+ *
+ * <p>After {@link #findBoxes(long[], int)} returns, {@link #boxes} holds packed boxes
+ * that cover only closed positions. Boxes that remain useful at greater distance
+ * should come first because drawing stops at the first box with a range below
+ * the region range.
+ */
+public abstract class AbstractBoxFinder {
+	public final IntArrayList boxes = new IntArrayList();
+
+	/**
+	 * @param sourceBits Closed bits, same layout as interior region indexes.
+	 * @param sourceIndex Index of first word in source bits.
+	 */
+	public abstract void findBoxes(long[] sourceBits, int sourceIndex);
+
+	protected static int rangeFromVolume(int maxArea) {
+		return maxArea <= 64 ? PackedBox.RANGE_NEAR : maxArea > 512 ? PackedBox.RANGE_FAR : PackedBox.RANGE_MID;
+	}
+}
@@ -29,8 +29,7 @@ import it.unimi.dsi.fastutil.longs.LongArrayList;
 
 import grondag.bitraster.PackedBox;
 
-public class BoxFinder {
-	public final IntArrayList boxes = new IntArrayList();
+public class BoxFinder extends AbstractBoxFinder {
 	public final AreaFinder areaFinder;
 	final long[] source = new long[INTERIOR_CACHE_WORDS];
 	final long[] filled = new long[INTERIOR_CACHE_WORDS];
@@ -48,6 +47,7 @@ public class BoxFinder {
 		this.areaFinder = areaFinder;
 	}
 
+	@Override
 	public void findBoxes(long[] sourceBits, int sourceIndex) {
 		System.arraycopy(RegionOcclusionCalculator.EMPTY_BITS, 0, filled, 0, INTERIOR_CACHE_WORDS);
 		System.arraycopy(sourceBits, sourceIndex, source, 0, INTERIOR_CACHE_WORDS);
@@ -286,10 +286,6 @@ public class BoxFinder {
 		}
 	}
 
-	private int rangeFromVolume(int maxArea) {
-		return maxArea <= 64 ? PackedBox.RANGE_NEAR : maxArea > 512 ? PackedBox.RANGE_FAR : PackedBox.RANGE_MID;
-	}
-
 	private int voxelCount(long[] sourceBits, int sourceIndex) {
 		int result = 0;
 		final int limit = sourceIndex + INTERIOR_CACHE_WORDS;
@@ -0,0 +1,187 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import grondag.bitraster.PackedBox;
+
+/**
+ * Faster alternative to {@link BoxFinder} that gives up some box optimality for speed.
+ *
+ * <p>Scans positions in index order and grows a box from each closed position not yet
+ * covered: first along x to the end of the run, then along y and z as far as every
+ * row of the box is closed. Both y-then-z and z-then-y growth are tried and the
+ * larger box is kept. Boxes never overlap and together cover every closed position.
+ *
+ * <p>Unlike {@link BoxFinder} there is no search for the largest box, so the result
+ * can have more and smaller boxes. Only the largest {@link #maxBoxes()} boxes are
+ * kept, which bounds the cost of drawing them in the occluder.
+ *
+ * <p>Boxes that span the region along z and along x or y are given extreme range, same as
+ * the sections found by {@link BoxFinder}. Range of other boxes depends on volume.
+ */
+public class GreedyBoxFinder extends AbstractBoxFinder {
+	public static final int DEFAULT_MAX_BOXES = 64;
+
+	/** One 16-bit row of x positions for each y and z, indexed by y | z << 4. */
+	private final int[] rows = new int[256];
+	private final LongArrayList sortedBoxes = new LongArrayList();
+	private int maxBoxes = DEFAULT_MAX_BOXES;
+
+	public int maxBoxes() {
+		return maxBoxes;
+	}
+
+	public void setMaxBoxes(int maxBoxes) {
+		this.maxBoxes = maxBoxes;
+	}
+
+	@Override
+	public void findBoxes(long[] sourceBits, int sourceIndex) {
+		boxes.clear();
+		sortedBoxes.clear();
+
+		if (!loadRows(sourceBits, sourceIndex)) {
+			return;
+		}
+
+		final int[] rows = this.rows;
+
+		for (int z = 0; z < 16; ++z) {
+			for (int y = 0; y < 16; ++y) {
+				int row;
+
+				while ((row = rows[y | (z << 4)]) != 0) {
+					final int x0 = Integer.numberOfTrailingZeros(row);
+					final int x1 = x0 + Integer.numberOfTrailingZeros(~(row >>> x0));
+					final int mask = ((1 << (x1 - x0)) - 1) << x0;
+
+					// y then z
+					final int yA = extendY(mask, y, z, z + 1);
+					final int zA = extendZ(mask, y, yA, z);
+
+					// z then y
+					final int zB = extendZ(mask, y, y + 1, z);
+					final int yB = extendY(mask, y, z, zB);
+
+					if ((yA - y) * (zA - z) >= (yB - y) * (zB - z)) {
+						addBox(mask, x0, y, z, x1, yA, zA);
+					} else {
+						addBox(mask, x0, y, z, x1, yB, zB);
+					}
+				}
+			}
+		}
+
+		outputBoxes();
+	}
+
+	/** Returns false if there are no closed positions. */
+	private boolean loadRows(long[] sourceBits, int sourceIndex) {
+		final int[] rows = this.rows;
+		long any = 0;
+		int r = 0;
+
+		for (int i = 0; i < 64; ++i) {
+			final long bits = sourceBits[sourceIndex + i];
+			any |= bits;
+			rows[r++] = (int) bits & 0xFFFF;
+			rows[r++] = (int) (bits >>> 16) & 0xFFFF;
+			rows[r++] = (int) (bits >>> 32) & 0xFFFF;
+			rows[r++] = (int) (bits >>> 48);
+		}
+
+		return any != 0;
+	}
+
+	/** Exclusive y limit of box growing up from y0 where every row in the given z range includes mask. */
+	private int extendY(int mask, int y0, int z0, int z1) {
+		int y = y0 + 1;
+
+		while (y < 16 && rowsInclude(mask, y, y + 1, z0, z1)) {
+			++y;
+		}
+
+		return y;
+	}
+
+	/** Exclusive z limit of box growing up from z0 where every row in the given y range includes mask. */
+	private int extendZ(int mask, int y0, int y1, int z0) {
+		int z = z0 + 1;
+
+		while (z < 16 && rowsInclude(mask, y0, y1, z, z + 1)) {
+			++z;
+		}
+
+		return z;
+	}
+
+	private boolean rowsInclude(int mask, int y0, int y1, int z0, int z1) {
+		final int[] rows = this.rows;
+
+		for (int z = z0; z < z1; ++z) {
+			final int base = z << 4;
+
+			for (int y = y0; y < y1; ++y) {
+				if ((rows[base | y] & mask) != mask) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private void addBox(int mask, int x0, int y0, int z0, int x1, int y1, int z1) {
+		final int[] rows = this.rows;
+		final int clearMask = ~mask;
+
+		for (int z = z0; z < z1; ++z) {
+			final int base = z << 4;
+
+			for (int y = y0; y < y1; ++y) {
+				rows[base | y] &= clearMask;
+			}
+		}
+
+		final int volume = (x1 - x0) * (y1 - y0) * (z1 - z0);
+		final boolean isSection = z0 == 0 && z1 == 16 && ((x0 == 0 && x1 == 16) || (y0 == 0 && y1 == 16));
+		final int range = isSection ? PackedBox.RANGE_EXTREME : rangeFromVolume(volume);
+
+		// sorts by range, then volume, both descending
+		sortedBoxes.add(((long) range << 48) | ((long) volume << 32) | x0 | (y0 << 5) | (z0 << 10) | (x1 << 15) | (y1 << 20) | (z1 << 25));
+	}
+
+	private void outputBoxes() {
+		final LongArrayList sortedBoxes = this.sortedBoxes;
+		sortedBoxes.sort((a, b) -> Long.compare(b, a));
+		final int limit = Math.min(sortedBoxes.size(), maxBoxes);
+
+		for (int i = 0; i < limit; ++i) {
+			final long box = sortedBoxes.getLong(i);
+			final int coords = (int) box;
+
+			boxes.add(PackedBox.pack(coords & 31, (coords >> 5) & 31, (coords >> 10) & 31,
+					(coords >> 15) & 31, (coords >> 20) & 31, (coords >> 25) & 31, (int) (box >>> 48)));
+		}
+	}
+}
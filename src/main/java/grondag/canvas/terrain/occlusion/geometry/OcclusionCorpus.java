@@ -0,0 +1,84 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_CACHE_WORDS;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.config.Configurator;
+
+/**
+ * Saves the closed bits given to the box finder for real-world sections, so box finder
+ * engines can be compared on actual terrain instead of synthetic samples.
+ *
+ * <p>Each section is 64 longs, big-endian, appended to {@link #FILE_NAME}
+ * in the game directory in batches.
+ */
+public final class OcclusionCorpus {
+	public static final String FILE_NAME = "canvas_occlusion_corpus.bin";
+	private static final int BATCH_SIZE = 1024;
+
+	private static long[] batch = new long[BATCH_SIZE * INTERIOR_CACHE_WORDS];
+	private static int batchCount;
+
+	private OcclusionCorpus() { }
+
+	static void capture(long[] sourceBits, int sourceIndex) {
+		if (!Configurator.captureOcclusionCorpus) {
+			return;
+		}
+
+		final long[] output;
+
+		synchronized (OcclusionCorpus.class) {
+			System.arraycopy(sourceBits, sourceIndex, batch, batchCount * INTERIOR_CACHE_WORDS, INTERIOR_CACHE_WORDS);
+
+			if (++batchCount < BATCH_SIZE) {
+				return;
+			}
+
+			output = batch;
+			batch = new long[BATCH_SIZE * INTERIOR_CACHE_WORDS];
+			batchCount = 0;
+		}
+
+		@SuppressWarnings("resource") final File file = new File(Minecraft.getInstance().gameDirectory, FILE_NAME);
+
+		Util.ioPool().execute(() -> {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+				for (final long word : output) {
+					out.writeLong(word);
+				}
+			} catch (final IOException e) {
+				CanvasMod.LOG.warn("Couldn't save occlusion corpus", e);
+			}
+		});
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_CACHE_WORDS;
+
+/**
+ * Visits open interior positions of a region reachable from a set of seed positions.
+ * Closed bits are the first {@link #WORDS} words of the bit array and visited bits
+ * are the same number of words at the given offset.
+ *
+ * <p>Every seed is marked visited. Open seeds that were not already visited are
+ * filled from, and every position adjacent to a position reached by the fill is
+ * marked visited, including closed positions.
+ *
+ * <p>Implementations must produce identical results.
+ */
+abstract class OcclusionFill {
+	static final int WORDS = INTERIOR_CACHE_WORDS;
+
+	protected final long[] bits;
+	protected final int visitedOffset;
+
+	OcclusionFill(long[] bits, int visitedOffset) {
+		this.bits = bits;
+		this.visitedOffset = visitedOffset;
+	}
+
+	/**
+	 * @param seeds One bit per interior position, same layout as closed bits.
+	 * @param trackFaces True to report exterior faces of the region reached by the fill.
+	 * @return Face flags of newly visited open positions. Each position counts for only one face, in the
+	 * order west, east, down, up, north, south. Zero if faces are not tracked.
+	 */
+	abstract int fill(long[] seeds, boolean trackFaces);
+}
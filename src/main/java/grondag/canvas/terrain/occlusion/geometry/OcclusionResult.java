@@ -20,7 +20,21 @@
 
 package grondag.canvas.terrain.occlusion.geometry;
 
+/**
+ * Occlusion output of a region build.
+ *
+ * @param occlusionData Renderable bounds and occluding boxes, for advanced terrain culling. Null otherwise.
+ * @param mutalFaceMask Face connectivity matrix, for graph search when advanced terrain culling is off.
+ * Bits 0-5 of byte {@code i} are the faces connected to face index {@code i} through open space in the region.
+ * All bits set means every face connects, as for empty regions.
+ */
 public record OcclusionResult(int[] occlusionData, long mutalFaceMask) {
+	/**
+	 * Connectivity matrix in which all of the given faces connect to each other.
+	 * Combine with bitwise or for each separately filled open space in the region.
+	 *
+	 * @param mutualFaceMasks BIT FLAGS of faces reached by one fill
+	 */
 	public static long buildMutualFaceMask(long mutualFaceMasks) {
 		assert (mutualFaceMasks & 0b111111) == mutualFaceMasks : "More than six face bits provided to mutual mask input";
 		long result = 0L;
@@ -36,10 +50,9 @@ public record OcclusionResult(int[] occlusionData, long mutalFaceMask) {
 
 	/**
 	 * For terrain iteration face-based culling.
-	 * @param mutualFaceMask indicates which faces are connected, built with {@link #buildMutualFaceMask(int)}
+	 * @param mutualFaceMask indicates which faces are connected, built with {@link #buildMutualFaceMask(long)}
 	 * @param fromFaceFlags BIT FLAGS for faces visible from outside the section from which it was entered
-	 * @param toFaceFlag INDEX (0-5) of exit face being tested
-	 * @return true if the exit face is open to any of the entry faces
+	 * @return BIT FLAGS of exit faces open to any of the entry faces
 	 */
 	public static int openFacesFlag(long mutualFaceMask, int fromFaceFlags) {
 		if (fromFaceFlags == 0 || mutualFaceMask == 0) {
@@ -0,0 +1,135 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Remembers occlusion results for region inputs seen before. Many regions have
+ * identical occlusion inputs - flat worlds, ocean floors and repeated builds -
+ * so the fill and box search can be skipped for those.
+ *
+ * <p>Keys are a 128-bit hash of all inputs that affect the result. Entries are not
+ * compared beyond the hash. Results are shared between regions and must not be modified.
+ *
+ * <p>Storage is a fixed-size set-associative table. Lookups and inserts are lock-free
+ * and entries are immutable, so a racing insert at worst replaces another entry.
+ * The least recently used entry in a set is replaced when the set is full.
+ */
+public final class OcclusionResultCache {
+	private static final int WAYS = 4;
+	private static final int SET_BITS = 10;
+	private static final int SET_MASK = (1 << SET_BITS) - 1;
+
+	private static final AtomicReferenceArray<Entry> ENTRIES = new AtomicReferenceArray<>(WAYS << SET_BITS);
+
+	private static final LongAdder HITS = new LongAdder();
+	private static final LongAdder MISSES = new LongAdder();
+	private static final LongAdder EVICTIONS = new LongAdder();
+
+	/** Approximate recency for eviction. Updates from different threads can be lost, which is harmless. */
+	private static long useCounter;
+
+	private OcclusionResultCache() { }
+
+	static final class Entry {
+		final long hash0;
+		final long hash1;
+		final OcclusionResult result;
+
+		/** Interior positions hidden by the calculation, or null if none. Must not be modified. */
+		final long[] hiddenBits;
+
+		long lastUse;
+
+		private Entry(long hash0, long hash1, OcclusionResult result, long[] hiddenBits) {
+			this.hash0 = hash0;
+			this.hash1 = hash1;
+			this.result = result;
+			this.hiddenBits = hiddenBits;
+			lastUse = useCounter;
+		}
+	}
+
+	static Entry get(long hash0, long hash1) {
+		final int base = ((int) HashCommon.mix(hash0) & SET_MASK) * WAYS;
+
+		for (int i = 0; i < WAYS; ++i) {
+			final Entry entry = ENTRIES.get(base + i);
+
+			if (entry != null && entry.hash0 == hash0 && entry.hash1 == hash1) {
+				entry.lastUse = ++useCounter;
+				HITS.increment();
+				return entry;
+			}
+		}
+
+		MISSES.increment();
+		return null;
+	}
+
+	static void put(long hash0, long hash1, OcclusionResult result, long[] hiddenBits) {
+		final int base = ((int) HashCommon.mix(hash0) & SET_MASK) * WAYS;
+		int target = base;
+		long oldest = Long.MAX_VALUE;
+
+		for (int i = 0; i < WAYS; ++i) {
+			final Entry entry = ENTRIES.get(base + i);
+
+			if (entry == null) {
+				target = base + i;
+				oldest = Long.MIN_VALUE;
+				break;
+			} else if (entry.lastUse < oldest) {
+				target = base + i;
+				oldest = entry.lastUse;
+			}
+		}
+
+		if (oldest != Long.MIN_VALUE) {
+			EVICTIONS.increment();
+		}
+
+		ENTRIES.set(target, new Entry(hash0, hash1, result, hiddenBits));
+	}
+
+	/** Call when anything that affects occlusion results may have changed. */
+	public static void invalidate() {
+		for (int i = 0; i < ENTRIES.length(); ++i) {
+			ENTRIES.set(i, null);
+		}
+
+		HITS.reset();
+		MISSES.reset();
+		EVICTIONS.reset();
+	}
+
+	public static String debugSummary() {
+		final long hits = HITS.sum();
+		final long lookups = hits + MISSES.sum();
+
+		return String.format("Occlusion cache hit: %d%% of %d evicted: %d",
+				lookups == 0 ? 0 : hits * 100 / lookups, lookups, EVICTIONS.sum());
+	}
+}
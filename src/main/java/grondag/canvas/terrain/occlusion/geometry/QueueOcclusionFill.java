@@ -0,0 +1,178 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+
+import io.vram.frex.api.model.util.FaceUtil;
+
+/**
+ * Breadth-first fill that visits one position at a time.
+ */
+class QueueOcclusionFill extends OcclusionFill {
+	private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+	private boolean trackFaces;
+
+	/**
+	 * Accumulates exterior faces visited during fill to track which exterior
+	 * faces are connected. Used for occlusion.
+	 */
+	private int visitedFacesMask;
+
+	QueueOcclusionFill(long[] bits, int visitedOffset) {
+		super(bits, visitedOffset);
+	}
+
+	@Override
+	int fill(long[] seeds, boolean trackFaces) {
+		this.trackFaces = trackFaces;
+		visitedFacesMask = 0;
+
+		for (int w = 0; w < WORDS; ++w) {
+			long seedBits = seeds[w];
+
+			while (seedBits != 0) {
+				final int index = (w << 6) | Long.numberOfTrailingZeros(seedBits);
+
+				if (setVisited(index)) {
+					fill(index);
+				}
+
+				seedBits &= seedBits - 1;
+			}
+		}
+
+		return visitedFacesMask;
+	}
+
+	/**
+	 * If the position is not already visited, marks it visited
+	 * and returns a boolean indicating opacity.
+	 *
+	 * @param index
+	 * @return True if position was not already visited AND was not opaque.
+	 */
+	private boolean setVisited(int index) {
+		final int wordIndex = index >> 6;
+		final long mask = 1L << (index & 63);
+
+		if ((bits[wordIndex + visitedOffset] & mask) == 0) {
+			// not already visited
+
+			// mark visited
+			bits[wordIndex + visitedOffset] |= mask;
+
+			// return opacity result
+			if ((bits[wordIndex] & mask) == 0) {
+				if (trackFaces) {
+					trackVistedFaces(index);
+				}
+
+				return true;
+			} else {
+				return false;
+			}
+		} else {
+			// already visited
+			return false;
+		}
+	}
+
+	private void fill(int xyz4) {
+		visit(xyz4);
+
+		while (!queue.isEmpty()) {
+			final int nextXyz4 = queue.dequeueInt();
+			visit(nextXyz4);
+		}
+	}
+
+	private void visit(int xyz4) {
+		final int x = xyz4 & 0xF;
+
+		if (x == 0) {
+			enqueIfUnvisited(xyz4 + 1);
+		} else if (x == 15) {
+			enqueIfUnvisited(xyz4 - 1);
+		} else {
+			enqueIfUnvisited(xyz4 - 1);
+			enqueIfUnvisited(xyz4 + 1);
+		}
+
+		final int y = xyz4 & 0xF0;
+
+		if (y == 0) {
+			enqueIfUnvisited(xyz4 + 0x10);
+		} else if (y == 0xF0) {
+			enqueIfUnvisited(xyz4 - 0x10);
+		} else {
+			enqueIfUnvisited(xyz4 - 0x10);
+			enqueIfUnvisited(xyz4 + 0x10);
+		}
+
+		final int z = xyz4 & 0xF00;
+
+		if (z == 0) {
+			enqueIfUnvisited(xyz4 + 0x100);
+		} else if (z == 0xF00) {
+			enqueIfUnvisited(xyz4 - 0x100);
+		} else {
+			enqueIfUnvisited(xyz4 - 0x100);
+			enqueIfUnvisited(xyz4 + 0x100);
+		}
+	}
+
+	private void trackVistedFaces(int xyz4) {
+		final int x = xyz4 & 0xF;
+
+		if (x == 0) {
+			visitedFacesMask |= FaceUtil.WEST_FLAG;
+			return;
+		} else if (x == 15) {
+			visitedFacesMask |= FaceUtil.EAST_FLAG;
+			return;
+		}
+
+		final int y = xyz4 & 0xF0;
+
+		if (y == 0) {
+			visitedFacesMask |= FaceUtil.DOWN_FLAG;
+			return;
+		} else if (y == 0xF0) {
+			visitedFacesMask |= FaceUtil.UP_FLAG;
+			return;
+		}
+
+		final int z = xyz4 & 0xF00;
+
+		if (z == 0) {
+			visitedFacesMask |= FaceUtil.NORTH_FLAG;
+		} else if (z == 0xF00) {
+			visitedFacesMask |= FaceUtil.SOUTH_FLAG;
+		}
+	}
+
+	private void enqueIfUnvisited(int xyz4) {
+		if (setVisited(xyz4)) {
+			queue.enqueue(xyz4);
+		}
+	}
+}
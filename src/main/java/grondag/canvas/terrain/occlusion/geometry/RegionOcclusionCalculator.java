@@ -26,18 +26,18 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_CACHE_W
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
 
-import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import net.minecraft.world.level.block.Blocks;
-import net.minecraft.world.level.block.RenderShape;
 import net.minecraft.world.level.block.state.BlockState;
 
-import io.vram.frex.api.model.util.FaceUtil;
-
 import grondag.bitraster.PackedBox;
 import grondag.canvas.config.Configurator;
 import grondag.canvas.pipeline.Pipeline;
+import grondag.canvas.terrain.util.BlockStateTable;
 
 public abstract class RegionOcclusionCalculator {
 	public static final int OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX = 0;
@@ -45,6 +45,9 @@ public abstract class RegionOcclusionCalculator {
 	public static final int[] EMPTY_OCCLUSION_DATA = {PackedBox.EMPTY_BOX};
 	public static final OcclusionResult EMPTY_OCCLUSION_RESULT = new OcclusionResult(EMPTY_OCCLUSION_DATA, -1L);
 
+	/** Result for regions with no open interior positions: renderable bounds and a single occluding box both fill the region. */
+	public static final OcclusionResult FULL_OCCLUSION_RESULT = new OcclusionResult(new int[] {PackedBox.FULL_BOX, PackedBox.FULL_BOX}, 0L);
+
 	private static final int RENDERABLE_OFFSET = TOTAL_CACHE_WORDS;
 	private static final int EXTERIOR_VISIBLE_OFFSET = RENDERABLE_OFFSET + TOTAL_CACHE_WORDS;
 	private static final int WORD_COUNT = EXTERIOR_VISIBLE_OFFSET + TOTAL_CACHE_WORDS;
@@ -64,8 +67,12 @@ public abstract class RegionOcclusionCalculator {
 	}
 
 	public final BoxFinder boxFinder = new BoxFinder(new AreaFinder());
-	private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+	public final GreedyBoxFinder greedyBoxFinder = new GreedyBoxFinder();
 	private final long[] bits = new long[WORD_COUNT];
+	private final long[] seeds = new long[INTERIOR_CACHE_WORDS];
+	private final long[] hiddenBits = new long[INTERIOR_CACHE_WORDS];
+	private final OcclusionFill queueFill = new QueueOcclusionFill(bits, EXTERIOR_VISIBLE_OFFSET);
+	private final OcclusionFill wordFill = new WordOcclusionFill(bits, EXTERIOR_VISIBLE_OFFSET);
 	private int openCount;
 	private int minRenderableX;
 	private int minRenderableY;
@@ -74,11 +81,8 @@ public abstract class RegionOcclusionCalculator {
 	private int maxRenderableY;
 	private int maxRenderableZ;
 
-	/**
-	 * Accumulates exterior faces visited during fill to track which exterior
-	 * faces are connected. Used for occlusion.
-	 */
-	private int visitedFacesMask;
+	/** True if the last call to {@link #computeOcclusion(boolean)} hid interior positions. */
+	private boolean lastHidden;
 
 	public void prepare() {
 		System.arraycopy(EMPTY_BITS, 0, bits, 0, WORD_COUNT);
@@ -87,6 +91,34 @@ public abstract class RegionOcclusionCalculator {
 		captureInterior();
 	}
 
+	/**
+	 * Same outcome as {@link #prepare()} when every interior position has the given state,
+	 * but sets interior bits a word at a time instead of testing each position.
+	 * Solidity can vary by position for blocks with dynamic shape, so those
+	 * are handled by the normal path.
+	 */
+	public void prepareUniform(BlockState blockState) {
+		final int flags = BlockStateTable.get().flags(blockState);
+
+		if ((flags & BlockStateTable.STATIC_SOLIDITY) == 0) {
+			prepare();
+			return;
+		}
+
+		System.arraycopy(EMPTY_BITS, 0, bits, 0, WORD_COUNT);
+		captureExterior();
+		openCount = INTERIOR_STATE_COUNT;
+
+		if ((flags & BlockStateTable.IS_VISIBLE) != 0) {
+			Arrays.fill(bits, RENDERABLE_OFFSET, RENDERABLE_OFFSET + INTERIOR_CACHE_WORDS, -1L);
+
+			if ((flags & BlockStateTable.IS_SOLID_RENDER) != 0 || (Configurator.renderWhiteGlassAsOccluder && blockState.getBlock() == Blocks.WHITE_STAINED_GLASS)) {
+				Arrays.fill(bits, 0, INTERIOR_CACHE_WORDS, -1L);
+				openCount = 0;
+			}
+		}
+	}
+
 	protected abstract BlockState blockStateAtIndex(int regionIndex);
 
 	protected abstract boolean closedAtRelativePos(BlockState blockState, int regionIndex);
@@ -99,6 +131,11 @@ public abstract class RegionOcclusionCalculator {
 		return (bits[(interiorIndex >> 6) + RENDERABLE_OFFSET] & (1L << (interiorIndex & 63))) != 0;
 	}
 
+	/** Copies {@link #shouldRender(int)} of all interior positions as bits, indexed the same way. */
+	public void copyRenderable(long[] target) {
+		System.arraycopy(bits, RENDERABLE_OFFSET, target, 0, INTERIOR_CACHE_WORDS);
+	}
+
 	protected void setVisibility(int index, boolean isRenderable, boolean isClosed) {
 		final long mask = (1L << (index & 63));
 		final int baseIndex = index >> 6;
@@ -113,18 +150,28 @@ public abstract class RegionOcclusionCalculator {
 		}
 	}
 
-	private void captureInteriorVisibility(int regionIndex) {
+	/**
+	 * Uses cached solidity when it doesn't depend on position.
+	 */
+	private boolean isClosed(BlockState blockState, int flags, int regionIndex) {
+		return (flags & BlockStateTable.STATIC_SOLIDITY) == 0 ? closedAtRelativePos(blockState, regionIndex) : (flags & BlockStateTable.IS_SOLID_RENDER) != 0;
+	}
+
+	private void captureInteriorVisibility(BlockStateTable table, int regionIndex) {
 		final BlockState blockState = blockStateAtIndex(regionIndex);
+		final int flags = table.flags(blockState);
 
-		if (blockState.getRenderShape() != RenderShape.INVISIBLE || !blockState.getFluidState().isEmpty()) {
-			final boolean closed = closedAtRelativePos(blockState, regionIndex) || (Configurator.renderWhiteGlassAsOccluder && blockState.getBlock() == Blocks.WHITE_STAINED_GLASS);
+		if ((flags & BlockStateTable.IS_VISIBLE) != 0) {
+			final boolean closed = isClosed(blockState, flags, regionIndex) || (Configurator.renderWhiteGlassAsOccluder && blockState.getBlock() == Blocks.WHITE_STAINED_GLASS);
 			setVisibility(regionIndex, true, closed);
 		}
 	}
 
 	private void captureInterior() {
+		final BlockStateTable table = BlockStateTable.get();
+
 		for (int i = 0; i < INTERIOR_STATE_COUNT; i++) {
-			captureInteriorVisibility(i);
+			captureInteriorVisibility(table, i);
 		}
 	}
 
@@ -234,60 +281,24 @@ public abstract class RegionOcclusionCalculator {
 		assert exteriorIndex == EDGE_INDEX_COUNT;
 	}
 
-	private void captureExteriorVisibility(int regionIndex) {
+	private void captureExteriorVisibility(BlockStateTable table, int regionIndex) {
 		final BlockState blockState = blockStateAtIndex(regionIndex);
+		final int flags = table.flags(blockState);
 
-		if ((blockState.getRenderShape() != RenderShape.INVISIBLE || !blockState.getFluidState().isEmpty()) && closedAtRelativePos(blockState, regionIndex)) {
+		if ((flags & BlockStateTable.IS_VISIBLE) != 0 && isClosed(blockState, flags, regionIndex)) {
 			setVisibility(regionIndex, false, true);
 		}
 	}
 
 	private void captureExterior() {
+		final BlockStateTable table = BlockStateTable.get();
+
 		for (int i = 0; i < COVERING_INDEX_COUNT; i++) {
-			captureExteriorVisibility(COVERING_INDEXES[i]);
+			captureExteriorVisibility(table, COVERING_INDEXES[i]);
 		}
 
 		for (int i = 0; i < EDGE_INDEX_COUNT; i++) {
-			captureExteriorVisibility(EDGE_INDEXES[i]);
-		}
-	}
-
-	/**
-	 * Checks if the position is interior and not already visited.
-	 * If the position is interior and not already visited, marks it visited
-	 * and returns a boolean indicating opacity.
-	 *
-	 * @param index
-	 * @return True if position met the conditions for visiting AND was not opaque.
-	 */
-	private boolean setVisited(int index) {
-		// interior only
-		if (index >= INTERIOR_STATE_COUNT) {
-			return false;
-		}
-
-		final int wordIndex = index >> 6;
-		final long mask = 1L << (index & 63);
-
-		if ((bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] & mask) == 0) {
-			// not already visited
-
-			// mark visited
-			bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] |= mask;
-
-			// return opacity result
-			if ((bits[wordIndex] & mask) == 0) {
-				if (!Pipeline.advancedTerrainCulling()) {
-					trackVistedFaces(index);
-				}
-
-				return true;
-			} else {
-				return false;
-			}
-		} else {
-			// already visited
-			return false;
+			captureExteriorVisibility(table, EDGE_INDEXES[i]);
 		}
 	}
 
@@ -466,20 +477,31 @@ public abstract class RegionOcclusionCalculator {
 	/**
 	 * Removes renderable flag and marks closed if position has no open neighbors and is not visible from exterior.
 	 * Should not be called if camera may be inside the chunk!
+	 *
+	 * @return True if any positions were hidden. Hidden positions are left in {@link #hiddenBits}.
 	 */
-	private void hideInteriorClosedPositions() {
-		for (int i = 0; i < INTERIOR_STATE_COUNT; i++) {
-			final long mask = (1L << (i & 63));
-			final int wordIndex = (i >> 6);
-			final int x = i & 0xF;
-			final int y = (i >> 4) & 0xF;
-			final int z = (i >> 8) & 0xF;
-
-			if ((bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] & mask) == 0 && x != 0 && y != 0 && z != 0 && x != 15 && y != 15 && z != 15) {
-				bits[wordIndex + RENDERABLE_OFFSET] &= ~mask;
-				// mark it opaque
-				bits[wordIndex] |= mask;
-			}
+	private boolean hideInteriorClosedPositions() {
+		long any = 0;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; i++) {
+			final long hidden = ~(bits[i + EXTERIOR_VISIBLE_OFFSET] | EXTERIOR_MASK[i]);
+			hiddenBits[i] = hidden;
+			any |= hidden;
+		}
+
+		if (any != 0) {
+			applyHiddenBits(hiddenBits);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	private void applyHiddenBits(long[] hidden) {
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; i++) {
+			bits[i + RENDERABLE_OFFSET] &= ~hidden[i];
+			// mark it opaque
+			bits[i] |= hidden[i];
 		}
 	}
 
@@ -553,57 +575,111 @@ public abstract class RegionOcclusionCalculator {
 		maxRenderableZ = maxZ < minZ ? minZ : maxZ;
 	}
 
-	private void visitSurfaceIfPossible(int index) {
-		if (setVisited(index)) {
-			fill(index);
+	/**
+	 * Seeds are surface positions not covered by a closed position in the adjacent region.
+	 * Covered positions are visited but are not filled from, same as closed interior positions.
+	 */
+	private void captureSeeds(int start, int end) {
+		final long[] seeds = this.seeds;
+		Arrays.fill(seeds, 0);
+
+		for (int i = start; i < end; ++i) {
+			if (!isClosed(COVERING_INDEXES[i])) {
+				final int index = COVERED_INDEXES[i];
+				seeds[index >> 6] |= 1L << (index & 63);
+			}
+		}
+	}
+
+	/**
+	 * Uses a remembered result if the same inputs were seen before. Positions hidden by
+	 * the original calculation are hidden again because terrain baking depends on them.
+	 */
+	private OcclusionResult computeOcclusionCached(boolean isNear) {
+		final boolean hideInterior = Pipeline.advancedTerrainCulling() && !isNear;
+		long hash0 = 0x9E3779B97F4A7C15L;
+		long hash1 = Configurator.greedyOcclusionBoxes ? Configurator.greedyOcclusionBoxLimit : -1;
+
+		if (Pipeline.advancedTerrainCulling()) {
+			hash0 ^= hideInterior ? 3 : 1;
+		}
+
+		for (int i = 0; i < TOTAL_CACHE_WORDS; ++i) {
+			hash0 = hashRound(hash0, bits[i]);
+			hash1 = hashRound(hash1, bits[i] ^ hash0);
+		}
+
+		for (int i = RENDERABLE_OFFSET; i < RENDERABLE_OFFSET + INTERIOR_CACHE_WORDS; ++i) {
+			hash0 = hashRound(hash0, bits[i]);
+			hash1 = hashRound(hash1, bits[i] ^ hash0);
+		}
+
+		hash0 = HashCommon.mix(hash0 ^ hash1);
+		hash1 = HashCommon.mix(hash1 + hash0);
+
+		final OcclusionResultCache.Entry hit = OcclusionResultCache.get(hash0, hash1);
+
+		if (hit != null) {
+			if (hit.hiddenBits != null) {
+				applyHiddenBits(hit.hiddenBits);
+			}
+
+			return hit.result;
 		}
+
+		lastHidden = false;
+		final OcclusionResult result = computeOcclusion(isNear);
+		OcclusionResultCache.put(hash0, hash1, result, lastHidden ? hiddenBits.clone() : null);
+		return result;
+	}
+
+	/** Same as one round of XXH64, which mixes each word well enough for a cache key. */
+	private static long hashRound(long acc, long input) {
+		return Long.rotateLeft(acc + input * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B185EBCA87L;
 	}
 
 	private OcclusionResult computeOcclusion(boolean isNear) {
 		// Determine which blocks are visible by visiting exterior blocks
 		// that aren't occluded by neighboring regions and doing a fill from there.
 		long mutualFaceMask = 0;
+		final OcclusionFill fill = Configurator.wordParallelOcclusionFill ? wordFill : queueFill;
 
 		if (Pipeline.advancedTerrainCulling()) {
-			for (int i = 0; i < COVERING_INDEX_COUNT; ++i) {
-				if (!isClosed(COVERING_INDEXES[i])) {
-					visitSurfaceIfPossible(COVERED_INDEXES[i]);
-				}
-			}
+			captureSeeds(0, COVERING_INDEX_COUNT);
+			fill.fill(seeds, false);
 		} else {
-			for (int i = 0; i < COVERING_INDEX_COUNT; ++i) {
-				// face indices are six groups of 256, one for each face.
-				// We want to reset visibility search on each new face and
-				// exploit this fact to know when we progress to the next face
-				if ((i & 0xFF) == 0) {
-					if (visitedFacesMask != 0) {
-						mutualFaceMask |= OcclusionResult.buildMutualFaceMask(visitedFacesMask);
-						visitedFacesMask = 0;
-					}
+			// face indices are six groups of 256, one for each face.
+			// We want to reset visibility search on each new face.
+			for (int start = 0; start < COVERING_INDEX_COUNT; start += 256) {
+				captureSeeds(start, start + 256);
+				final int visitedFacesMask = fill.fill(seeds, true);
+
+				if (visitedFacesMask != 0) {
+					mutualFaceMask |= OcclusionResult.buildMutualFaceMask(visitedFacesMask);
 				}
-
-				if (!isClosed(COVERING_INDEXES[i])) {
-					visitSurfaceIfPossible(COVERED_INDEXES[i]);
-				}
-			}
-
-			if (visitedFacesMask != 0) {
-				mutualFaceMask |= OcclusionResult.buildMutualFaceMask(visitedFacesMask);
-				visitedFacesMask = 0;
 			}
 		}
 
 		if (Pipeline.advancedTerrainCulling()) {
 			// don't hide inside position if we may be inside the chunk!
 			if (!isNear) {
-				hideInteriorClosedPositions();
+				lastHidden = hideInteriorClosedPositions();
 			}
 
 			computeRenderableBounds();
 
-			final BoxFinder boxFinder = this.boxFinder;
+			final AbstractBoxFinder boxFinder;
+
+			if (Configurator.greedyOcclusionBoxes) {
+				greedyBoxFinder.setMaxBoxes(Configurator.greedyOcclusionBoxLimit);
+				boxFinder = greedyBoxFinder;
+			} else {
+				boxFinder = this.boxFinder;
+			}
+
 			final IntArrayList boxes = boxFinder.boxes;
 
+			OcclusionCorpus.capture(bits, 0);
 			boxFinder.findBoxes(bits, 0);
 
 			final int boxCount = boxes.size();
@@ -653,87 +729,7 @@ public abstract class RegionOcclusionCalculator {
 			result[OCCLUSION_RESULT_FIRST_BOX_INDEX] = PackedBox.FULL_BOX;
 			return new OcclusionResult(result, 0L);
 		} else {
-			return computeOcclusion(isNear);
-		}
-	}
-
-	private void fill(int xyz4) {
-		visit(xyz4);
-
-		while (!queue.isEmpty()) {
-			final int nextXyz4 = queue.dequeueInt();
-			visit(nextXyz4);
-		}
-	}
-
-	private void visit(int xyz4) {
-		final int x = xyz4 & 0xF;
-
-		if (x == 0) {
-			enqueIfUnvisited(xyz4 + 1);
-		} else if (x == 15) {
-			enqueIfUnvisited(xyz4 - 1);
-		} else {
-			enqueIfUnvisited(xyz4 - 1);
-			enqueIfUnvisited(xyz4 + 1);
-		}
-
-		final int y = xyz4 & 0xF0;
-
-		if (y == 0) {
-			enqueIfUnvisited(xyz4 + 0x10);
-		} else if (y == 0xF0) {
-			enqueIfUnvisited(xyz4 - 0x10);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x10);
-			enqueIfUnvisited(xyz4 + 0x10);
-		}
-
-		final int z = xyz4 & 0xF00;
-
-		if (z == 0) {
-			enqueIfUnvisited(xyz4 + 0x100);
-		} else if (z == 0xF00) {
-			enqueIfUnvisited(xyz4 - 0x100);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x100);
-			enqueIfUnvisited(xyz4 + 0x100);
-		}
-	}
-
-	private void trackVistedFaces(int xyz4) {
-		final int x = xyz4 & 0xF;
-
-		if (x == 0) {
-			visitedFacesMask |= FaceUtil.WEST_FLAG;
-			return;
-		} else if (x == 15) {
-			visitedFacesMask |= FaceUtil.EAST_FLAG;
-			return;
-		}
-
-		final int y = xyz4 & 0xF0;
-
-		if (y == 0) {
-			visitedFacesMask |= FaceUtil.DOWN_FLAG;
-			return;
-		} else if (y == 0xF0) {
-			visitedFacesMask |= FaceUtil.UP_FLAG;
-			return;
-		}
-
-		final int z = xyz4 & 0xF00;
-
-		if (z == 0) {
-			visitedFacesMask |= FaceUtil.NORTH_FLAG;
-		} else if (z == 0xF00) {
-			visitedFacesMask |= FaceUtil.SOUTH_FLAG;
-		}
-	}
-
-	private void enqueIfUnvisited(int xyz4) {
-		if (setVisited(xyz4)) {
-			queue.enqueue(xyz4);
+			return Configurator.cacheOcclusionResults ? computeOcclusionCached(isNear) : computeOcclusion(isNear);
 		}
 	}
 }
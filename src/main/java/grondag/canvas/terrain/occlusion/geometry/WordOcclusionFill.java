@@ -0,0 +1,217 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import io.vram.frex.api.model.util.FaceUtil;
+
+/**
+ * Fill that grows the reached set a whole word at a time with shifts and masks
+ * until it stops changing. Same outcome as {@link QueueOcclusionFill} but does not
+ * depend on the number of positions reached, which makes it much faster for caves
+ * and other sections with many open positions.
+ *
+ * <p>Interior index is x | y << 4 | z << 8, so each word holds four rows of 16
+ * positions along the x axis for one z value. X neighbors are one bit away and
+ * y neighbors 16 bits away within the same word, or in the adjacent word at the
+ * ends of the word. Z neighbors are in the word four words away.
+ */
+class WordOcclusionFill extends OcclusionFill {
+	/** Positions with x == 0. */
+	private static final long X0 = 0x0001000100010001L;
+	/** Positions with x == 15. */
+	private static final long X15 = 0x8000800080008000L;
+	/** Positions with 0 < x < 15. */
+	private static final long X_INNER = ~(X0 | X15);
+	private static final long FIRST_ROW = 0xFFFFL;
+	private static final long LAST_ROW = 0xFFFF000000000000L;
+
+	/** Open positions not visited before the current fill. */
+	private final long[] open = new long[WORDS];
+	private final long[] reached = new long[WORDS];
+
+	WordOcclusionFill(long[] bits, int visitedOffset) {
+		super(bits, visitedOffset);
+	}
+
+	@Override
+	int fill(long[] seeds, boolean trackFaces) {
+		final long[] bits = this.bits;
+		final long[] open = this.open;
+		final long[] reached = this.reached;
+		final int visitedOffset = this.visitedOffset;
+		boolean found = false;
+
+		for (int w = 0; w < WORDS; ++w) {
+			final long visited = bits[w + visitedOffset];
+			final long o = ~(bits[w] | visited);
+			final long r = seeds[w] & o;
+			open[w] = o;
+			reached[w] = r;
+			found |= r != 0;
+			bits[w + visitedOffset] = visited | seeds[w];
+		}
+
+		if (!found) {
+			return 0;
+		}
+
+		spread();
+
+		// Any neighbor of a reached position is closed, reached, or was already visited.
+		for (int w = 0; w < WORDS; ++w) {
+			bits[w + visitedOffset] |= reached[w] | shiftInWord(reached[w]) | shiftFromNeighbors(w);
+		}
+
+		return trackFaces ? faceFlags() : 0;
+	}
+
+	/**
+	 * Alternates forward and backward passes over all words until a fixed point.
+	 * Words are updated in place so a pass carries growth along its direction.
+	 */
+	private void spread() {
+		boolean changed;
+
+		do {
+			changed = false;
+
+			for (int w = 0; w < WORDS; ++w) {
+				changed |= grow(w);
+			}
+
+			for (int w = WORDS - 1; w >= 0; --w) {
+				changed |= grow(w);
+			}
+		} while (changed);
+	}
+
+	private boolean grow(int w) {
+		final long mask = open[w];
+
+		if (mask == 0) {
+			return false;
+		}
+
+		final long prior = reached[w];
+		long r = prior | (shiftFromNeighbors(w) & mask);
+
+		if (r == 0) {
+			return false;
+		}
+
+		// fill within the word before moving on so growth along x and y doesn't need a pass per step
+		long last;
+
+		do {
+			last = r;
+			r |= shiftInWord(r) & mask;
+		} while (r != last);
+
+		if (r == prior) {
+			return false;
+		}
+
+		reached[w] = r;
+		return true;
+	}
+
+	/** Neighbors within the same word. */
+	private static long shiftInWord(long r) {
+		return ((r << 1) & ~X0) | ((r >>> 1) & ~X15) | (r << 16) | (r >>> 16);
+	}
+
+	/** Positions in word w adjacent to reached positions in other words. */
+	private long shiftFromNeighbors(int w) {
+		final long[] reached = this.reached;
+		long result = 0;
+
+		if ((w & 3) != 0) {
+			result |= reached[w - 1] >>> 48;
+		}
+
+		if ((w & 3) != 3) {
+			result |= reached[w + 1] << 48;
+		}
+
+		if (w >= 4) {
+			result |= reached[w - 4];
+		}
+
+		if (w < WORDS - 4) {
+			result |= reached[w + 4];
+		}
+
+		return result;
+	}
+
+	/** Same face assignment as {@link QueueOcclusionFill}: x faces first, then y, then z. */
+	private int faceFlags() {
+		final long[] reached = this.reached;
+		long any = 0;
+		long down = 0;
+		long up = 0;
+
+		for (int w = 0; w < WORDS; ++w) {
+			any |= reached[w];
+
+			if ((w & 3) == 0) {
+				down |= reached[w] & FIRST_ROW;
+			} else if ((w & 3) == 3) {
+				up |= reached[w] & LAST_ROW;
+			}
+		}
+
+		int result = 0;
+
+		if ((any & X0) != 0) {
+			result |= FaceUtil.WEST_FLAG;
+		}
+
+		if ((any & X15) != 0) {
+			result |= FaceUtil.EAST_FLAG;
+		}
+
+		if ((down & X_INNER) != 0) {
+			result |= FaceUtil.DOWN_FLAG;
+		}
+
+		if ((up & X_INNER) != 0) {
+			result |= FaceUtil.UP_FLAG;
+		}
+
+		if (zFaceReached(0)) {
+			result |= FaceUtil.NORTH_FLAG;
+		}
+
+		if (zFaceReached(WORDS - 4)) {
+			result |= FaceUtil.SOUTH_FLAG;
+		}
+
+		return result;
+	}
+
+	/** True if any position in the z layer starting at the given word was reached, excluding x and y edges. */
+	private boolean zFaceReached(int firstWord) {
+		final long[] reached = this.reached;
+		final long layer = (reached[firstWord] & ~FIRST_ROW) | reached[firstWord + 1] | reached[firstWord + 2] | (reached[firstWord + 3] & ~LAST_ROW);
+		return (layer & X_INNER) != 0;
+	}
+}
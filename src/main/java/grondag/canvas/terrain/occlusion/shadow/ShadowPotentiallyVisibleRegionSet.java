@@ -20,8 +20,7 @@
 
 package grondag.canvas.terrain.occlusion.shadow;
 
-import java.util.Arrays;
-
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.jetbrains.annotations.Nullable;
 
 import com.mojang.math.Vector3f;
@@ -37,6 +36,8 @@ public class ShadowPotentiallyVisibleRegionSet implements PotentiallyVisibleRegi
 	private int version = 1;
 	private int regionCount = 0;
 	private final ShadowRegionVisibility[] states = new ShadowRegionVisibility[RenderRegionIndexer.PADDED_REGION_INDEX_COUNT];
+	/** Populated indexes of {@link #states}, so clearing doesn't visit the whole address space. */
+	private final IntArrayList stateIndexes = new IntArrayList();
 
 	int xBase;
 	int zBase;
@@ -289,7 +290,15 @@ public class ShadowPotentiallyVisibleRegionSet implements PotentiallyVisibleRegi
 
 	@Override
 	public void clear() {
-		Arrays.fill(states, null);
+		final ShadowRegionVisibility[] states = this.states;
+		final int[] stateIndexes = this.stateIndexes.elements();
+		final int limit = this.stateIndexes.size();
+
+		for (int i = 0; i < limit; ++i) {
+			states[stateIndexes[i]] = null;
+		}
+
+		this.stateIndexes.clear();
 		regionCount = 0;
 		++version;
 		returnToStart();
@@ -306,6 +315,7 @@ public class ShadowPotentiallyVisibleRegionSet implements PotentiallyVisibleRegi
 		final int i = index(rx, ry, rz);
 		assert states[i] == null;
 		states[i] = state;
+		stateIndexes.add(i);
 		++regionCount;
 	}
 
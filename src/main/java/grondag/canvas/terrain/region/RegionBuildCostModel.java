@@ -0,0 +1,124 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.region;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.minecraft.util.Mth;
+
+import grondag.canvas.config.Configurator;
+
+/**
+ * Predicts the main-thread cost of region rebuild work so the render thread can
+ * admit only as much work as fits in the time left in the frame.
+ *
+ * <p>Samples are taken at the same points {@link grondag.canvas.perf.ChunkRebuildCounters}
+ * measures - world copy, terrain build and upload - but are always collected and folded
+ * into an exponentially-weighted moving average per kind. Build samples come from
+ * worker threads as well as the render thread, so averages are updated lock-free.
+ *
+ * <p>Per-region build cost is tracked by the region itself, because the cost of
+ * rebuilding a region correlates strongly with its previous build.
+ */
+public class RegionBuildCostModel {
+	public static final int COPY = 0;
+	public static final int BUILD = 1;
+	public static final int UPLOAD = 2;
+
+	/** Weight of each new sample is 1 / (1 << EWMA_SHIFT). */
+	private static final int EWMA_SHIFT = 3;
+
+	/** Work still gets done even when the frame is already over target. */
+	private static final long MIN_BUDGET_NANOS = 500_000L;
+
+	/** Same upper limit as vanilla. */
+	private static final long MAX_BUDGET_NANOS = 33_333_333L;
+
+	/** Initial guesses, replaced quickly once samples arrive. */
+	private static final long[] INITIAL_NANOS = {150_000L, 1_500_000L, 100_000L};
+
+	private final AtomicLongArray averages = new AtomicLongArray(INITIAL_NANOS);
+
+	/**
+	 * Time from the end of rebuild processing to the end of world rendering.
+	 * Only accessed from render thread.
+	 */
+	private long remainderNanos = 8_000_000L;
+	private long remainderStartNanos;
+
+	public void record(int kind, long nanos) {
+		while (true) {
+			final long current = averages.get(kind);
+			final long next = current + ((nanos - current) >> EWMA_SHIFT);
+
+			if (averages.compareAndSet(kind, current, next)) {
+				return;
+			}
+		}
+	}
+
+	public long average(int kind) {
+		return averages.get(kind);
+	}
+
+	/** Main-thread cost of capturing world state and queuing an off-thread rebuild. */
+	public long predictScheduleCost() {
+		return averages.get(COPY);
+	}
+
+	/** Main-thread cost of capturing, building and uploading the given region on the render thread. */
+	public long predictMainThreadCost(RenderRegion region) {
+		final long regionBuild = region.lastBuildNanos();
+		return averages.get(COPY) + (regionBuild > 0 ? regionBuild : averages.get(BUILD)) + averages.get(UPLOAD);
+	}
+
+	/**
+	 * Time available for rebuild processing this frame, based on the target frame time
+	 * less time already used and the expected cost of the rest of the frame.
+	 *
+	 * @param usedNanos Time elapsed since frame start.
+	 * @param maxFps Frame rate limit from game options. A lower limit than the configured
+	 * target means longer frames are acceptable. (The unlimited setting is always higher.)
+	 */
+	public long frameBudget(long usedNanos, int maxFps) {
+		final int targetFps = Math.min(maxFps, Configurator.rebuildTargetFps);
+		final long targetNanos = 1_000_000_000L / targetFps;
+		return Mth.clamp(targetNanos - usedNanos - remainderNanos, MIN_BUDGET_NANOS, MAX_BUDGET_NANOS);
+	}
+
+	/** Call right after rebuild processing ends. */
+	public void startFrameRemainder(long nanos) {
+		remainderStartNanos = nanos;
+	}
+
+	/** Call when world rendering is complete. */
+	public void completeFrameRemainder(long nanos) {
+		if (remainderStartNanos != 0) {
+			remainderNanos += (nanos - remainderStartNanos - remainderNanos) >> EWMA_SHIFT;
+			remainderStartNanos = 0;
+		}
+	}
+
+	public String debugSummary() {
+		return String.format("Rebuild cost copy: %dus build: %dus upload: %dus rest of frame: %dus",
+				averages.get(COPY) / 1000, averages.get(BUILD) / 1000, averages.get(UPLOAD) / 1000, remainderNanos / 1000);
+	}
+}
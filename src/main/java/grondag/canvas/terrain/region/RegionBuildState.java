@@ -29,7 +29,9 @@ import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.phys.Vec3;
 
 import grondag.canvas.buffer.input.DrawableVertexCollector;
+import grondag.canvas.buffer.input.TranslucentSortState;
 import grondag.canvas.buffer.input.VertexCollectorList;
+import grondag.canvas.config.Configurator;
 import grondag.canvas.material.state.TerrainRenderStates;
 import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 import grondag.canvas.terrain.occlusion.geometry.OcclusionResult;
@@ -38,6 +40,8 @@ import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 public class RegionBuildState {
 	/** value for new regions that never been built or have been built and then closed. */
 	public static final RegionBuildState UNBUILT = new RegionBuildState();
+	/** Content hash of states that were not built from hashable input. */
+	public static final long NO_CONTENT_HASH = 0;
 
 	final ObjectArrayList<BlockEntity> blockEntities = new ObjectArrayList<>();
 	OcclusionResult occlusionResult = RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT;
@@ -45,6 +49,13 @@ public class RegionBuildState {
 	@Nullable
 	int[] translucentState;
 
+	/** Used instead of {@link #translucentState} when translucency is resorted by index. */
+	@Nullable
+	TranslucentSortState translucentSortState;
+
+	/** Hash of the input this state was built from, for skipping rebuilds when nothing changed. */
+	long contentHash = NO_CONTENT_HASH;
+
 	public List<BlockEntity> getBlockEntities() {
 		return blockEntities;
 	}
@@ -58,10 +69,19 @@ public class RegionBuildState {
 
 		if (buffer != null && !buffer.isEmpty()) {
 			buffer.sortTerrainQuads(sortPos, sector);
-			translucentState = buffer.saveState(translucentState);
+
+			if (Configurator.translucentIndexSort) {
+				translucentSortState = buffer.saveSortState();
+			} else {
+				translucentState = buffer.saveState(translucentState);
+			}
 		}
 	}
 
+	boolean hasTranslucentState() {
+		return translucentState != null || translucentSortState != null;
+	}
+
 	public OcclusionResult getOcclusionResult() {
 		return occlusionResult;
 	}
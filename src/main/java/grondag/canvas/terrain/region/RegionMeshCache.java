@@ -0,0 +1,591 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.region;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.buffer.format.TerrainEncoder;
+import grondag.canvas.buffer.input.DrawableVertexCollector;
+import grondag.canvas.buffer.input.VertexCollectorList;
+import grondag.canvas.config.ConfigManager;
+import grondag.canvas.config.Configurator;
+import grondag.canvas.pipeline.Pipeline;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionResult;
+import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
+import grondag.canvas.terrain.region.input.InputRegion;
+import grondag.canvas.terrain.util.BlockStateTable;
+
+/**
+ * Disk cache of baked region meshes so regions that haven't changed can skip terrain
+ * bake when they are loaded again after teleport, rejoin or render distance changes.
+ *
+ * <p>Entries are keyed by a 128-bit hash of dimension, region position, all world
+ * content read during bake (see {@link InputRegion#hashContent(ContentHash)}), and
+ * a fingerprint of resources and configuration. Entries are not compared beyond the hash.
+ *
+ * <p>Vertex data contains material indices that are assigned at run time as materials
+ * are first encountered, so entries are only valid in the game session that saved them.
+ * Each session uses a new subdirectory and directories of earlier sessions are removed.
+ *
+ * <p>Each region is one file with a versioned header and a checksum of the content.
+ * Files are written to a temporary file and moved into place, and are read
+ * through a memory mapping. Total size is capped and the least recently used
+ * files are removed first.
+ */
+public final class RegionMeshCache {
+	public static final String DIRECTORY_NAME = "canvas_mesh_cache";
+
+	/** "CMSH". */
+	private static final int MAGIC = 0x48534D43;
+	private static final int FORMAT_VERSION = 1;
+
+	// Header layout: magic, version, hash0, hash1, payload length, payload checksum
+	private static final int HEADER_BYTES = 32;
+
+	private static final int RESULT_BUILT = 0;
+	private static final int RESULT_EMPTY = 1;
+	private static final int RESULT_FULL = 2;
+
+	private static final long SESSION_ID = ThreadLocalRandom.current().nextLong();
+
+	private static final LongAdder HITS = new LongAdder();
+	private static final LongAdder MISSES = new LongAdder();
+	private static final LongAdder SAVES = new LongAdder();
+	private static final LongAdder EVICTIONS = new LongAdder();
+	private static final LongAdder REJECTS = new LongAdder();
+
+	/** Size of saved files by file key, least recently used first. Guarded by itself. */
+	private static final Long2LongLinkedOpenHashMap FILES = new Long2LongLinkedOpenHashMap();
+	private static long totalBytes;
+
+	/** Null if disabled. */
+	private static volatile @Nullable Path directory;
+	private static volatile long fingerprint;
+	private static volatile boolean didWarn;
+
+	private RegionMeshCache() { }
+
+	/** Mutable 128-bit hash of region inputs. Not thread-safe, each build context has one. */
+	public static final class ContentHash {
+		private long fileKey;
+		private long hash0;
+		private long hash1;
+
+		public void add(long input) {
+			hash0 = round(hash0, input);
+			hash1 = round(hash1, input ^ hash0);
+		}
+
+		/** 64 bits of a hash completed by {@link RegionMeshCache#hashRegion}. */
+		public long digest() {
+			return hash0;
+		}
+
+		private static long round(long acc, long input) {
+			return Long.rotateLeft(acc + input * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B185EBCA87L;
+		}
+	}
+
+	public static boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * Computes the key for the region being built.
+	 *
+	 * @return False if the region can't be cached.
+	 */
+	static boolean hashRegion(ContentHash hash, InputRegion region, Level world, RegionPosition origin, boolean isNear) {
+		final long positionKey = HashCommon.mix(origin.asLong() + world.dimension().location().hashCode() * 0x9E3779B97F4A7C15L);
+		hash.fileKey = positionKey;
+
+		// Visibility mode and shadows change hidden faces and collector types
+		final int flags = (isNear ? 1 : 0) | (Pipeline.advancedTerrainCulling() ? 2 : 0) | (Pipeline.shadowsEnabled() ? 4 : 0);
+		hash.hash0 = fingerprint;
+		hash.hash1 = ~fingerprint;
+		hash.add(positionKey);
+		hash.add(flags);
+
+		if (!region.hashContent(hash)) {
+			return false;
+		}
+
+		hash.hash0 = HashCommon.mix(hash.hash0 ^ hash.hash1);
+		hash.hash1 = HashCommon.mix(hash.hash1 + hash.hash0);
+		return true;
+	}
+
+	/**
+	 * Baked mesh read from a cache file. Occlusion result and animation bits are
+	 * available immediately, vertex data is read from the mapping when restored.
+	 */
+	static final class CachedMesh {
+		private final ByteBuffer buffer;
+		private final OcclusionResult occlusionResult;
+		private final long[] animationWords;
+
+		private CachedMesh(ByteBuffer buffer, OcclusionResult occlusionResult, long[] animationWords) {
+			this.buffer = buffer;
+			this.occlusionResult = occlusionResult;
+			this.animationWords = animationWords;
+		}
+
+		OcclusionResult occlusionResult() {
+			return occlusionResult;
+		}
+
+		/**
+		 * Commits saved quads to collectors as they were originally committed.
+		 * Collectors and animation bits must be empty.
+		 */
+		void restore(VertexCollectorList collectors, BitSet animationBits, int sectorId) {
+			animationBits.or(BitSet.valueOf(animationWords));
+
+			final ByteBuffer buffer = this.buffer;
+			final int collectorCount = buffer.getInt();
+
+			for (int c = 0; c < collectorCount; ++c) {
+				final DrawableVertexCollector collector = collectors.getForCollectorKey(buffer.getLong());
+				final int quadStride = collector.target().length;
+				final int runCount = buffer.getInt();
+
+				for (int r = 0; r < runCount; ++r) {
+					final int faceIndex = buffer.getInt();
+					final boolean castShadow = buffer.getInt() != 0;
+					final int length = buffer.getInt();
+					final IntBuffer data = buffer.asIntBuffer();
+
+					for (int i = 0; i < length; i += quadStride) {
+						final int targetIndex = collector.reserveQuad(faceIndex, castShadow);
+						final int[] target = collector.reservedData();
+						data.get(target, targetIndex, quadStride);
+						TerrainEncoder.setSectorId(target, targetIndex, quadStride, sectorId);
+					}
+
+					buffer.position(buffer.position() + length * 4);
+				}
+			}
+		}
+	}
+
+	/** Returns null if there is no valid entry for the hash. */
+	static @Nullable CachedMesh find(ContentHash hash) {
+		final Path directory = RegionMeshCache.directory;
+
+		if (directory == null) {
+			return null;
+		}
+
+		synchronized (FILES) {
+			if (!FILES.containsKey(hash.fileKey)) {
+				MISSES.increment();
+				return null;
+			}
+
+			FILES.getAndMoveToLast(hash.fileKey);
+		}
+
+		final CachedMesh result = read(directory.resolve(fileName(hash.fileKey)), hash);
+
+		if (result == null) {
+			MISSES.increment();
+		} else {
+			HITS.increment();
+		}
+
+		return result;
+	}
+
+	private static @Nullable CachedMesh read(Path path, ContentHash hash) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final long size = channel.size();
+
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+				REJECTS.increment();
+				return null;
+			}
+
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+				REJECTS.increment();
+				return null;
+			}
+
+			// Different content at same position is normal, not corruption
+			if (buffer.getLong() != hash.hash0 || buffer.getLong() != hash.hash1) {
+				return null;
+			}
+
+			final int payloadBytes = buffer.getInt();
+			final int checksum = buffer.getInt();
+
+			if (payloadBytes != size - HEADER_BYTES || checksum != checksum(buffer, HEADER_BYTES, payloadBytes)) {
+				REJECTS.increment();
+				return null;
+			}
+
+			buffer.position(HEADER_BYTES);
+			final OcclusionResult occlusionResult = readOcclusionResult(buffer);
+			final long[] animationWords = new long[buffer.getInt()];
+
+			for (int i = 0; i < animationWords.length; ++i) {
+				animationWords[i] = buffer.getLong();
+			}
+
+			return new CachedMesh(buffer, occlusionResult, animationWords);
+		} catch (final IOException | RuntimeException e) {
+			// Buffer underflow and similar mean the file is corrupt despite the checksum - same as a miss
+			REJECTS.increment();
+			return null;
+		}
+	}
+
+	private static OcclusionResult readOcclusionResult(ByteBuffer buffer) {
+		final int kind = buffer.getInt();
+
+		if (kind == RESULT_EMPTY) {
+			return RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT;
+		} else if (kind == RESULT_FULL) {
+			return RegionOcclusionCalculator.FULL_OCCLUSION_RESULT;
+		}
+
+		final int[] occlusionData = new int[buffer.getInt()];
+		buffer.asIntBuffer().get(occlusionData);
+		buffer.position(buffer.position() + occlusionData.length * 4);
+		return new OcclusionResult(occlusionData, buffer.getLong());
+	}
+
+	/** Measures and then writes collector content. */
+	private static class RunWriter implements DrawableVertexCollector.RunConsumer {
+		private @Nullable ByteBuffer buffer;
+		private int runCount;
+		private int byteCount;
+
+		@Override
+		public void accept(int effectiveFaceIndex, boolean castShadow, DrawableVertexCollector quads) {
+			final int length = quads.integerSize();
+			++runCount;
+			byteCount += 12 + length * 4;
+			final ByteBuffer buffer = this.buffer;
+
+			if (buffer != null) {
+				buffer.putInt(effectiveFaceIndex).putInt(castShadow ? 1 : 0).putInt(length);
+				quads.toBuffer(buffer.asIntBuffer());
+				buffer.position(buffer.position() + length * 4);
+			}
+		}
+	}
+
+	/**
+	 * Copies the baked mesh and saves it in the background.
+	 * Call after bake and before collectors are cleared.
+	 */
+	static void save(ContentHash hash, OcclusionResult occlusionResult, VertexCollectorList collectors, BitSet animationBits) {
+		final Path directory = RegionMeshCache.directory;
+
+		if (directory == null) {
+			return;
+		}
+
+		final int collectorLimit = collectors.activeCount();
+		final RunWriter writer = new RunWriter();
+		int collectorCount = 0;
+
+		for (int i = 0; i < collectorLimit; ++i) {
+			final DrawableVertexCollector collector = collectors.get(i);
+
+			if (!collector.isEmpty()) {
+				++collectorCount;
+				collector.forEachRun(0, writer);
+			}
+		}
+
+		final boolean isBuilt = occlusionResult != RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT && occlusionResult != RegionOcclusionCalculator.FULL_OCCLUSION_RESULT;
+		final long[] animationWords = animationBits.toLongArray();
+
+		final int payloadBytes = 4 + (isBuilt ? 12 + occlusionResult.occlusionData().length * 4 : 0)
+				+ 4 + animationWords.length * 8
+				+ 4 + collectorCount * 12 + writer.byteCount;
+
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payloadBytes).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(hash.hash0).putLong(hash.hash1).putInt(payloadBytes).putInt(0);
+
+		if (isBuilt) {
+			final int[] occlusionData = occlusionResult.occlusionData();
+			buffer.putInt(RESULT_BUILT).putInt(occlusionData.length);
+			buffer.asIntBuffer().put(occlusionData);
+			buffer.position(buffer.position() + occlusionData.length * 4);
+			buffer.putLong(occlusionResult.mutalFaceMask());
+		} else {
+			buffer.putInt(occlusionResult == RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT ? RESULT_EMPTY : RESULT_FULL);
+		}
+
+		buffer.putInt(animationWords.length);
+
+		for (final long word : animationWords) {
+			buffer.putLong(word);
+		}
+
+		buffer.putInt(collectorCount);
+		writer.buffer = buffer;
+
+		for (int i = 0; i < collectorLimit; ++i) {
+			final DrawableVertexCollector collector = collectors.get(i);
+
+			if (!collector.isEmpty()) {
+				writer.runCount = 0;
+				final int countPosition = buffer.position() + 8;
+				buffer.putLong(collectors.collectorKey(i)).putInt(0);
+				collector.forEachRun(0, writer);
+				buffer.putInt(countPosition, writer.runCount);
+			}
+		}
+
+		assert buffer.position() == buffer.capacity();
+		buffer.putInt(HEADER_BYTES - 4, checksum(buffer, HEADER_BYTES, payloadBytes));
+		buffer.flip();
+
+		final long fileKey = hash.fileKey;
+		Util.ioPool().execute(() -> write(directory, fileKey, buffer));
+	}
+
+	private static int checksum(ByteBuffer buffer, int start, int length) {
+		final CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate().limit(start + length).position(start));
+		return (int) crc.getValue();
+	}
+
+	private static void write(Path directory, long fileKey, ByteBuffer buffer) {
+		final Path target = directory.resolve(fileName(fileKey));
+		Path temp = null;
+
+		try {
+			temp = Files.createTempFile(directory, null, ".tmp");
+
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			try {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			temp = null;
+		} catch (final IOException e) {
+			// Can happen normally on some platforms if the file is mapped for reading
+			if (!didWarn) {
+				didWarn = true;
+				CanvasMod.LOG.warn("Couldn't save region mesh cache file. Further errors will not be logged.", e);
+			}
+
+			return;
+		} finally {
+			if (temp != null) {
+				delete(temp);
+			}
+		}
+
+		SAVES.increment();
+		final LongArrayList evicted = new LongArrayList();
+
+		synchronized (FILES) {
+			// Cache may have been disabled or moved while writing
+			if (directory != RegionMeshCache.directory) {
+				return;
+			}
+
+			totalBytes += buffer.capacity() - FILES.putAndMoveToLast(fileKey, buffer.capacity());
+			trim(evicted);
+		}
+
+		deleteAll(directory, evicted);
+	}
+
+	/** Must hold lock on {@link #FILES}. */
+	private static void trim(LongArrayList evicted) {
+		final long maxBytes = Configurator.persistentMeshCacheMb * 0x100000L;
+
+		while (totalBytes > maxBytes && !FILES.isEmpty()) {
+			final long fileKey = FILES.firstLongKey();
+			totalBytes -= FILES.removeFirstLong();
+			evicted.add(fileKey);
+			EVICTIONS.increment();
+		}
+	}
+
+	private static void deleteAll(Path directory, LongArrayList fileKeys) {
+		for (int i = 0; i < fileKeys.size(); ++i) {
+			delete(directory.resolve(fileName(fileKeys.getLong(i))));
+		}
+	}
+
+	private static void delete(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (final IOException e) {
+			// Mapped files can't be deleted on some platforms, will be removed with the session directory
+		}
+	}
+
+	private static String fileName(long fileKey) {
+		return Long.toHexString(fileKey) + ".bin";
+	}
+
+	/** Call after {@link BlockStateTable#reload()} on render reload. */
+	public static void reload() {
+		if (Configurator.persistentMeshCache) {
+			if (directory == null) {
+				open();
+			}
+
+			fingerprint = computeFingerprint();
+			final LongArrayList evicted = new LongArrayList();
+
+			synchronized (FILES) {
+				trim(evicted);
+			}
+
+			final Path directory = RegionMeshCache.directory;
+
+			if (directory != null) {
+				Util.ioPool().execute(() -> deleteAll(directory, evicted));
+			}
+		} else if (directory != null) {
+			close();
+		}
+	}
+
+	/**
+	 * Anything that can change baked output for the same content and isn't part of the content hash.
+	 * Baked models are replaced when resources reload. Config changes that affect bake cause a reload.
+	 */
+	private static long computeFingerprint() {
+		long result = HashCommon.mix(SESSION_ID + FORMAT_VERSION);
+		result = HashCommon.mix(result + ConfigManager.configHash());
+		result = HashCommon.mix(result + (Minecraft.useAmbientOcclusion() ? 1 : 0));
+		result = HashCommon.mix(result + Minecraft.getInstance().options.biomeBlendRadius().get());
+
+		final BlockStateTable stateTable = BlockStateTable.get();
+
+		for (final BlockState blockState : Block.BLOCK_STATE_REGISTRY) {
+			result = result * 31 + System.identityHashCode(stateTable.model(blockState));
+		}
+
+		return HashCommon.mix(result);
+	}
+
+	@SuppressWarnings("resource")
+	private static void open() {
+		final Path root = Minecraft.getInstance().gameDirectory.toPath().normalize().resolve(DIRECTORY_NAME);
+		final Path directory = root.resolve(Long.toHexString(SESSION_ID));
+
+		try {
+			Files.createDirectories(directory);
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Couldn't create region mesh cache directory. Cache will be disabled.", e);
+			return;
+		}
+
+		RegionMeshCache.directory = directory;
+
+		// Entries from earlier sessions can't be used
+		Util.ioPool().execute(() -> {
+			try (Stream<Path> sessions = Files.list(root)) {
+				sessions.filter(p -> !p.equals(directory)).forEach(RegionMeshCache::deleteTree);
+			} catch (final IOException e) {
+				CanvasMod.LOG.warn("Couldn't remove old region mesh cache files.", e);
+			}
+		});
+	}
+
+	private static void close() {
+		final Path directory = RegionMeshCache.directory;
+		RegionMeshCache.directory = null;
+
+		synchronized (FILES) {
+			FILES.clear();
+			totalBytes = 0;
+		}
+
+		HITS.reset();
+		MISSES.reset();
+		SAVES.reset();
+		EVICTIONS.reset();
+		REJECTS.reset();
+
+		Util.ioPool().execute(() -> deleteTree(directory));
+	}
+
+	private static void deleteTree(Path path) {
+		try (Stream<Path> paths = Files.walk(path)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(RegionMeshCache::delete);
+		} catch (final IOException e) {
+			// Try again next session
+		}
+	}
+
+	public static String debugSummary() {
+		final long hits = HITS.sum();
+		final long lookups = hits + MISSES.sum();
+		final long megabytes;
+
+		synchronized (FILES) {
+			megabytes = totalBytes / 0x100000L;
+		}
+
+		return String.format("Mesh cache hit: %d%% of %d saved: %d evicted: %d rejected: %d size: %dMB",
+				lookups == 0 ? 0 : hits * 100 / lookups, lookups, SAVES.sum(), EVICTIONS.sum(), REJECTS.sum(), megabytes);
+	}
+}
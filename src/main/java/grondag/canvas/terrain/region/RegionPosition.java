@@ -83,9 +83,15 @@ public class RegionPosition extends BlockPos {
 
 	private boolean isPotentiallyVisibleFromCamera;
 
-	/** See {@link #checkAndUpdateSortNeeded(int)}. */
+	/** See {@link #checkAndUpdateSortNeeded(int, Vec3)}. */
 	private int sortPositionVersion = -1;
 
+	/** Camera position and octant when this region was last scheduled for resort. */
+	private double sortX = Double.MAX_VALUE;
+	private double sortY = Double.MAX_VALUE;
+	private double sortZ = Double.MAX_VALUE;
+	private int sortOctant = -1;
+
 	/** The smallest cascade on which this region can potentially cast a shadow. */
 	private int shadowCascade;
 
@@ -136,7 +142,13 @@ public class RegionPosition extends BlockPos {
 			final int cy = (BlockPos.getY(cameraRegionOrigin) >> 4) - chunkY;
 			squaredCameraChunkDistance = owner.renderChunk.horizontalSquaredDistance + cy * cy;
 			isInsideRenderDistance = squaredCameraChunkDistance <= worldRenderState.maxSquaredChunkRenderDistance();
+			final boolean wasNear = isNear;
 			isNear = squaredCameraChunkDistance <= 3;
+
+			if (wasNear && !isNear) {
+				owner.releaseRetainedMesh();
+			}
+
 			// Based on trial-and-error
 			fuzz = squaredCameraChunkDistance >= 7 * 7 ? 1 : 0;
 			occlusionRange = PackedBox.rangeFromSquareChunkDist(squaredCameraChunkDistance);
@@ -267,23 +279,67 @@ public class RegionPosition extends BlockPos {
 	}
 
 	/**
-	 * Tracks the given sort counter and returns true when the input value was different.
+	 * Tracks the given sort counter and returns true when the input value was different
+	 * and the camera has moved enough since the last resort of this region to change its order.
 	 * Used to identify regions that require a translucency resort.
 	 * The sort version is incremented elsewhere based on camera movement.
 	 *
-	 * <p>Here because it is nominally related to position even if not related
-	 * to other feature of this class. (It has to live somewhere.) Future optimizations
-	 * might make more use of region-specific position information.
+	 * <p>Near regions are resorted on every version. For regions farther away, the camera must
+	 * move farther before a resort, doubling with each distance ring. The camera also moving to
+	 * a different side of the region on any axis always causes a resort, because that reverses the
+	 * order of parallel axis-aligned quads, which is most translucent terrain. While the camera stays
+	 * on the same sides that order is fixed and only the order of quads at different angles can drift,
+	 * by an amount that shrinks with distance.
 	 */
-	public boolean checkAndUpdateSortNeeded(int sortPositionVersion) {
+	public boolean checkAndUpdateSortNeeded(int sortPositionVersion, Vec3 cameraPos) {
 		if (this.sortPositionVersion == sortPositionVersion) {
 			return false;
+		}
+
+		this.sortPositionVersion = sortPositionVersion;
+		final double x = cameraPos.x;
+		final double y = cameraPos.y;
+		final double z = cameraPos.z;
+		final int octant = sortOctant(x, y, z);
+
+		if (!isNear && octant == sortOctant) {
+			final double dx = x - sortX;
+			final double dy = y - sortY;
+			final double dz = z - sortZ;
+			final double threshold = sortDistanceThreshold(squaredCameraChunkDistance);
+
+			if (dx * dx + dy * dy + dz * dz < threshold * threshold) {
+				return false;
+			}
+		}
+
+		sortX = x;
+		sortY = y;
+		sortZ = z;
+		sortOctant = octant;
+		return true;
+	}
+
+	/** Camera movement in blocks that causes resort of non-near regions at the given distance. */
+	private static double sortDistanceThreshold(int squaredCameraChunkDistance) {
+		if (squaredCameraChunkDistance <= 4 * 4) {
+			return 2;
+		} else if (squaredCameraChunkDistance <= 8 * 8) {
+			return 4;
 		} else {
-			this.sortPositionVersion = sortPositionVersion;
-			return true;
+			return 8;
 		}
 	}
 
+	/** Which side of this region the given position is on, or if it is within its bounds, for each axis. */
+	private int sortOctant(double x, double y, double z) {
+		return sortSide(x, getX()) + sortSide(y, getY()) * 3 + sortSide(z, getZ()) * 9;
+	}
+
+	private static int sortSide(double pos, int min) {
+		return pos < min ? 0 : pos > min + 16 ? 2 : 1;
+	}
+
 	/** For debugging. */
 	public boolean sharesOriginWith(int blockX, int blockY, int blockZ) {
 		return getX() >> 4 == blockX >> 4 && getY() >> 4 == blockY >> 4 && getZ() >> 4 == blockZ >> 4;
@@ -40,6 +40,9 @@ import io.vram.sc.unordered.SimpleUnorderedArrayList;
 public class RegionRebuildManager {
 	private final Set<RenderRegion> regionsToRebuild = Sets.newLinkedHashSet();
 
+	/** Predicts main-thread cost of rebuild work. Also sampled by regions as they build. */
+	public final RegionBuildCostModel costModel = new RegionBuildCostModel();
+
 	/**
 	 * Region rebuild requests accumulated on main thread that may impact visibility
 	 * but not generated by terrain iteration. These should be processed every frame
@@ -135,6 +138,12 @@ public class RegionRebuildManager {
 	 * world data are captured on the calling thread and packaged into a
 	 * rebuild task that runs off thread.
 	 *
+	 * <p>Work is admitted only when its predicted cost fits in the time remaining.
+	 * Regions that don't fit are skipped and remain scheduled, so cheaper work
+	 * later in the set can still be done. Some work is always done each frame,
+	 * and one urgent main-thread rebuild is always allowed per frame even if over
+	 * budget, so that scheduled regions and urgent rebuilds can't starve.
+	 *
 	 * <p>Not thread-safe and meant to be called from the main render thread.
 	 *
 	 * @param endNanos The max end time for this task. (NOT the duration.)
@@ -143,41 +152,39 @@ public class RegionRebuildManager {
 	public void processScheduledRegions(long endNanos) {
 		final Set<RenderRegion> regionsToRebuild = this.regionsToRebuild;
 
-		//final long start = Util.getMeasuringTimeNano();
-		//int builtCount = 0;
-
 		if (!regionsToRebuild.isEmpty()) {
 			final Iterator<RenderRegion> iterator = regionsToRebuild.iterator();
 			final boolean flawless = FlawlessFrames.isActive();
+			final RegionBuildCostModel costModel = this.costModel;
+			final long scheduleCost = costModel.predictScheduleCost();
+			boolean didBuildOnMainThread = false;
+			boolean didWork = false;
+			long remaining = endNanos - Util.getNanos();
 
 			while (iterator.hasNext()) {
+				// Nothing is cheaper than scheduling, so if that doesn't fit we are done.
+				if (!flawless && didWork && remaining < scheduleCost) {
+					break;
+				}
+
 				final RenderRegion region = iterator.next();
 
 				if (region.isClosed()) {
 					iterator.remove();
 				} else if (flawless || region.needsImportantRebuild()) {
-					region.rebuildOnMainThread();
-					iterator.remove();
+					if (flawless || !didBuildOnMainThread || costModel.predictMainThreadCost(region) <= remaining) {
+						region.rebuildOnMainThread();
+						iterator.remove();
+						didBuildOnMainThread = true;
+						didWork = true;
+					}
 				} else if (region.renderChunk.areCornersLoaded()) {
 					region.prepareAndExecuteRebuildTask();
 					iterator.remove();
+					didWork = true;
 				}
 
-				// this seemed excessive
-				//				++builtCount;
-				//
-				//				final long now = Util.getMeasuringTimeNano();
-				//				final long elapsed = now - start;
-				//				final long avg = elapsed / builtCount;
-				//				final long remaining = endNanos - now;
-				//
-				//				if (remaining < avg) {
-				//					break;
-				//				}
-
-				if (!flawless && Util.getNanos() >= endNanos) {
-					break;
-				}
+				remaining = endNanos - Util.getNanos();
 			}
 		}
 	}
@@ -29,29 +29,27 @@ import java.util.concurrent.atomic.AtomicReference;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.jetbrains.annotations.Nullable;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.block.BlockRenderDispatcher;
 import net.minecraft.client.renderer.blockentity.BlockEntityRenderer;
 import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.core.BlockPos;
-import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.RenderShape;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.material.FluidState;
 import net.minecraft.world.phys.Vec3;
 
-import io.vram.frex.api.math.FastMatrix3f;
 import io.vram.frex.api.math.FastMatrix4f;
-import io.vram.frex.api.math.MatrixStack;
 import io.vram.frex.api.model.fluid.FluidModel;
 
 import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
+import grondag.canvas.apiimpl.rendercontext.encoder.TerrainQuadEncoder;
 import grondag.canvas.buffer.input.DrawableVertexCollector;
+import grondag.canvas.buffer.input.TranslucentSortState;
 import grondag.canvas.buffer.input.VertexCollectorList;
+import grondag.canvas.buffer.render.TransferBuffer;
 import grondag.canvas.compat.FlywheelHolder;
 import grondag.canvas.material.state.TerrainRenderStates;
 import grondag.canvas.perf.ChunkRebuildCounters;
@@ -59,14 +57,19 @@ import grondag.canvas.pipeline.Pipeline;
 import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 import grondag.canvas.render.terrain.base.DrawableRegion;
 import grondag.canvas.render.terrain.base.UploadableRegion;
+import grondag.canvas.render.terrain.cluster.ClusteredDrawableStorage;
+import grondag.canvas.render.terrain.drawlist.QuadOrderIndex;
 import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.terrain.occlusion.camera.CameraRegionVisibility;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionResult;
 import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 import grondag.canvas.terrain.occlusion.shadow.ShadowRegionVisibility;
 import grondag.canvas.terrain.region.input.InputRegion;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
 import grondag.canvas.terrain.region.input.SignalInputRegion;
+import grondag.canvas.terrain.util.BlockStateTable;
 import grondag.canvas.terrain.util.RenderRegionStateIndexer;
+import grondag.canvas.terrain.util.StaticQuadCache;
 import grondag.canvas.terrain.util.TerrainExecutor;
 import grondag.canvas.terrain.util.TerrainExecutorTask;
 
@@ -110,9 +113,21 @@ public class RenderRegion implements TerrainExecutorTask {
 	private boolean needsRebuild;
 	private boolean needsImportantRebuild;
 	private DrawableRegion translucentDrawable = DrawableRegion.EMPTY_DRAWABLE;
+	/**
+	 * Build state that produced the vertices in {@link #translucentDrawable}. Render thread only.
+	 * Build state is replaced before upload, so resorts must check this to know their order
+	 * applies to the vertices being drawn.
+	 */
+	private RegionBuildState translucentBuildState = RegionBuildState.UNBUILT;
 	private DrawableRegion solidDrawable = DrawableRegion.EMPTY_DRAWABLE;
 	public final BitSet animationBits = new BitSet();
 
+	/** Output of the last build if retained for patching. Claimed by each build and replaced after. */
+	private final AtomicReference<RetainedRegionMesh> retainedMesh = new AtomicReference<>();
+
+	/** Duration of the most recent terrain build, zero if never built. For rebuild cost prediction. */
+	private volatile long lastBuildNanos;
+
 	private boolean isClosed = false;
 
 	public RenderRegion(RenderChunk chunk, long packedPos) {
@@ -162,6 +177,7 @@ public class RenderRegion implements TerrainExecutorTask {
 			storage.trackRegionClosed();
 			cancel();
 			buildState.set(RegionBuildState.UNBUILT);
+			retainedMesh.set(null);
 			needsRebuild = true;
 			origin.close();
 
@@ -177,6 +193,12 @@ public class RenderRegion implements TerrainExecutorTask {
 
 		translucentDrawable.releaseFromRegion();
 		translucentDrawable = DrawableRegion.EMPTY_DRAWABLE;
+		translucentBuildState = RegionBuildState.UNBUILT;
+	}
+
+	/** Called when the region is no longer near the camera. */
+	void releaseRetainedMesh() {
+		retainedMesh.set(null);
 	}
 
 	public void markForBuild(boolean isImportant) {
@@ -202,7 +224,9 @@ public class RenderRegion implements TerrainExecutorTask {
 	}
 
 	public void prepareAndExecuteRebuildTask() {
+		final long start = System.nanoTime();
 		final PackedInputRegion region = PackedInputRegion.claim(worldRenderState.getWorld(), origin);
+		worldRenderState.regionRebuildManager.costModel.record(RegionBuildCostModel.COPY, System.nanoTime() - start);
 
 		// Idle region is signal to reschedule
 		// If region is something other than idle, we are already in the queue
@@ -217,23 +241,25 @@ public class RenderRegion implements TerrainExecutorTask {
 	/**
 	 * Schedules a resort of this region if all of the following are true.
 	 * 1) region has translucency
-	 * 2) region sort version doesn't match the input version
+	 * 2) region sort version doesn't match the input version and the camera
+	 *    has moved far enough for the region's distance
 	 * 3) resort isn't already scheduled for this region
 	 *
 	 * <p>If a resort is already scheduled then the region sort version is
 	 * updated to match the input version.
 	 *
 	 * @param sortPositionVersion The most recent position version counter - for comparision.
+	 * @param cameraPos Camera position for the most recent position version.
 	 * @return true if a resort was scheduled
 	 */
-	public boolean scheduleSort(int sortPositionVersion) {
+	public boolean scheduleSort(int sortPositionVersion, Vec3 cameraPos) {
 		final RegionBuildState regionData = buildState.get();
 
-		if (!origin.checkAndUpdateSortNeeded(sortPositionVersion)) {
+		if (!origin.checkAndUpdateSortNeeded(sortPositionVersion, cameraPos)) {
 			return false;
 		}
 
-		if (regionData.translucentState != null && inputState.compareAndSet(SignalInputRegion.IDLE, SignalInputRegion.RESORT_ONLY)) {
+		if (regionData.hasTranslucentState() && inputState.compareAndSet(SignalInputRegion.IDLE, SignalInputRegion.RESORT_ONLY)) {
 			// null means need to reschedule, otherwise was already scheduled for either
 			// resort or rebuild, or is invalid, not ready to be built.
 			TerrainExecutor.INSTANCE.execute(this);
@@ -268,15 +294,8 @@ public class RenderRegion implements TerrainExecutorTask {
 		}
 
 		if (protoRegion == SignalInputRegion.EMPTY) {
-			final RegionBuildState chunkData = new RegionBuildState();
-			chunkData.setOcclusionResult(RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT);
-
-			// don't rebuild occlusion if occlusion did not change
-			final RegionBuildState oldBuildData = buildState.getAndSet(chunkData);
-
-			if (oldBuildData == RegionBuildState.UNBUILT || !Arrays.equals(chunkData.occlusionResult.occlusionData(), oldBuildData.occlusionResult.occlusionData())) {
-				// Even if empty the chunk may still be needed for visibility search to progress
-				notifyOcclusionChange();
+			if (setTrivialBuildState(RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT) && runningState.get() != SignalInputRegion.INVALID) {
+				renderRegionBuilder.scheduleUpload(this::clearDrawables);
 			}
 
 			return;
@@ -304,9 +323,12 @@ public class RenderRegion implements TerrainExecutorTask {
 
 		if (protoRegion == SignalInputRegion.RESORT_ONLY) {
 			final RegionBuildState regionData = buildState.get();
+			final TranslucentSortState sortState = regionData.translucentSortState;
 			final int[] state = regionData.translucentState;
 
-			if (state != null) {
+			if (sortState != null) {
+				resortByIndex(context, regionData, sortState, runningState);
+			} else if (state != null) {
 				final VertexCollectorList collectors = context.encoder.collectors;
 				final DrawableVertexCollector collector = collectors.get(TerrainRenderStates.TRANSLUCENT_TERRAIN);
 				collector.loadState(state);
@@ -325,6 +347,7 @@ public class RenderRegion implements TerrainExecutorTask {
 
 								translucentDrawable.releaseFromRegion();
 								translucentDrawable = upload.produceDrawable();
+								translucentBuildState = regionData;
 								worldRenderState.invalidateDrawLists();
 
 								if (ChunkRebuildCounters.ENABLED) {
@@ -337,9 +360,31 @@ public class RenderRegion implements TerrainExecutorTask {
 
 				collectors.clear();
 			}
+		} else if (protoRegion.isEnclosedUniform() && localNoCullingBlockEntities.isEmpty()) {
+			if (setTrivialBuildState(RegionOcclusionCalculator.FULL_OCCLUSION_RESULT) && runningState.get() != SignalInputRegion.INVALID) {
+				renderRegionBuilder.scheduleUpload(this::clearDrawables);
+			}
+
+			protoRegion.release();
 		} else {
 			context.prepareForRegion(protoRegion);
-			final RegionBuildState newBuildState = captureAndSetBuildState(context, origin.isNear());
+			final boolean isNear = origin.isNear();
+			final long contentHash = hashContent(context, protoRegion, isNear);
+
+			if (isUnchanged(contentHash)) {
+				protoRegion.release();
+				return;
+			}
+
+			final RetainedRegionMesh priorMesh = retainedMesh.getAndSet(null);
+			final RegionMeshCache.ContentHash meshHash = context.meshHash;
+			final boolean isCacheable = priorMesh == null && contentHash != RegionBuildState.NO_CONTENT_HASH && RegionMeshCache.isEnabled();
+			final RegionMeshCache.CachedMesh cachedMesh = isCacheable ? RegionMeshCache.find(meshHash) : null;
+
+			final RegionBuildState newBuildState = cachedMesh == null
+					? captureAndSetBuildState(context, isNear, contentHash)
+					: setBuildState(context, cachedMesh.occlusionResult(), contentHash);
+
 			context.encoder.updateSector(renderSector, origin);
 			final VertexCollectorList collectors = context.encoder.collectors;
 
@@ -349,7 +394,16 @@ public class RenderRegion implements TerrainExecutorTask {
 				return;
 			}
 
-			buildTerrain(context, newBuildState);
+			if (cachedMesh == null) {
+				buildTerrain(context, newBuildState, isNear, priorMesh);
+
+				if (isCacheable) {
+					RegionMeshCache.save(meshHash, newBuildState.occlusionResult, collectors, context.encoder.animationBits);
+				}
+			} else {
+				cachedMesh.restore(collectors, context.encoder.animationBits, renderSector.sectorId());
+				newBuildState.prepareTranslucentIfNeeded(worldRenderState.sectorManager.cameraPos(), renderSector, collectors);
+			}
 
 			if (runningState.get() != SignalInputRegion.INVALID) {
 				final UploadableRegion solidUpload = collectors.toUploadableChunk(false, origin, worldRenderState);
@@ -360,12 +414,15 @@ public class RenderRegion implements TerrainExecutorTask {
 						ChunkRebuildCounters.startUpload();
 					}
 
+					final long uploadStart = System.nanoTime();
 					releaseDrawables();
 					solidDrawable = solidUpload.produceDrawable();
 					translucentDrawable = translucentUpload.produceDrawable();
+					translucentBuildState = newBuildState;
 					animationBits.clear();
 					animationBits.or(context.encoder.animationBits);
 					worldRenderState.invalidateDrawLists();
+					worldRenderState.regionRebuildManager.costModel.record(RegionBuildCostModel.UPLOAD, System.nanoTime() - uploadStart);
 
 					if (ChunkRebuildCounters.ENABLED) {
 						ChunkRebuildCounters.completeUpload();
@@ -378,9 +435,89 @@ public class RenderRegion implements TerrainExecutorTask {
 		}
 	}
 
-	private RegionBuildState captureAndSetBuildState(CanvasTerrainRenderContext context, boolean isNear) {
+	/**
+	 * Sets build state for regions in which nothing can render without capturing world
+	 * state or iterating blocks. Used for empty regions and for uniform opaque regions
+	 * enclosed by opaque neighbors.
+	 *
+	 * @param occlusionResult Must be one of the shared results that identify a trivial state.
+	 * @return True if the prior state may have had drawables that now need to be cleared.
+	 */
+	private boolean setTrivialBuildState(OcclusionResult occlusionResult) {
+		final RegionBuildState newBuildState = new RegionBuildState();
+		newBuildState.setOcclusionResult(occlusionResult);
+
+		// don't rebuild occlusion if occlusion did not change
+		final RegionBuildState oldBuildState = buildState.getAndSet(newBuildState);
+
+		if (oldBuildState == RegionBuildState.UNBUILT || !Arrays.equals(occlusionResult.occlusionData(), oldBuildState.occlusionResult.occlusionData())) {
+			// Even if empty the region may still be needed for visibility search to progress
+			notifyOcclusionChange();
+		}
+
+		return oldBuildState != RegionBuildState.UNBUILT && !isTrivial(oldBuildState.occlusionResult);
+	}
+
+	private static boolean isTrivial(OcclusionResult occlusionResult) {
+		return occlusionResult == RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT || occlusionResult == RegionOcclusionCalculator.FULL_OCCLUSION_RESULT;
+	}
+
+	/** Must be called on render thread. */
+	private void clearDrawables() {
+		releaseDrawables();
+		animationBits.clear();
+		worldRenderState.invalidateDrawLists();
+	}
+
+	/**
+	 * Hash of everything captured for the build, for comparison with the next build.
+	 * Uses the mesh cache hash, which covers all world state read during bake, plus
+	 * the identity of block entities, which are retained by build state.
+	 *
+	 * <p>Leaves the mesh cache key for the region in the context mesh hash.
+	 *
+	 * @return {@link RegionBuildState#NO_CONTENT_HASH} if the input can't be hashed.
+	 */
+	private long hashContent(CanvasTerrainRenderContext context, PackedInputRegion protoRegion, boolean isNear) {
+		final RegionMeshCache.ContentHash meshHash = context.meshHash;
+
+		if (!RegionMeshCache.hashRegion(meshHash, context.region, worldRenderState.getWorld(), origin, isNear)) {
+			return RegionBuildState.NO_CONTENT_HASH;
+		}
+
+		final long result = meshHash.digest() ^ protoRegion.blockEntityHash() ^ protoRegion.biomeHash();
+		return result == RegionBuildState.NO_CONTENT_HASH ? 1 : result;
+	}
+
+	/**
+	 * True if the current build state was built from the same content. Block, light and
+	 * neighbor updates often mark regions for rebuild without changing anything we capture.
+	 * The existing build state and drawables remain valid in that case.
+	 */
+	private boolean isUnchanged(long contentHash) {
+		if (contentHash == RegionBuildState.NO_CONTENT_HASH || buildState.get().contentHash != contentHash) {
+			return false;
+		}
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.completeSkip();
+		}
+
+		return true;
+	}
+
+	private RegionBuildState captureAndSetBuildState(CanvasTerrainRenderContext context, boolean isNear, long contentHash) {
+		return setBuildState(context, context.region.occlusion.build(isNear), contentHash);
+	}
+
+	/**
+	 * Replaces build state with one having the given occlusion result and
+	 * current block entities, notifying visibility if occlusion changed.
+	 */
+	private RegionBuildState setBuildState(CanvasTerrainRenderContext context, OcclusionResult occlusionResult, long contentHash) {
 		final RegionBuildState newBuildState = new RegionBuildState();
-		newBuildState.setOcclusionResult(context.region.occlusion.build(isNear));
+		newBuildState.setOcclusionResult(occlusionResult);
+		newBuildState.contentHash = contentHash;
 		handleBlockEntities(newBuildState, context);
 
 		// don't rebuild occlusion if occlusion did not change
@@ -399,74 +536,160 @@ public class RenderRegion implements TerrainExecutorTask {
 		return newBuildState;
 	}
 
-	private void buildTerrain(CanvasTerrainRenderContext context, RegionBuildState buildState) {
+	/**
+	 * Bakes terrain into the context collectors. When the output of the previous build was
+	 * retained and the region changed little since then, only blocks near the changes are
+	 * baked and quads of all other blocks are copied from the prior output.
+	 *
+	 * @param priorMesh Retained output of the previous build, if any. Not valid after this call.
+	 */
+	private void buildTerrain(CanvasTerrainRenderContext context, RegionBuildState buildState, boolean isNear, @Nullable RetainedRegionMesh priorMesh) {
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.startChunk();
 		}
 
+		final long buildStart = System.nanoTime();
 		context.renderBakeListeners();
 
 		final VertexCollectorList collectors = context.encoder.collectors;
-
-		final BlockPos.MutableBlockPos searchPos = context.searchPos;
-		final int xOrigin = origin.getX();
-		final int yOrigin = origin.getY();
-		final int zOrigin = origin.getZ();
-
 		final InputRegion region = context.region;
-		final MatrixStack matrixStack = context.matrixStack;
-		final FastMatrix4f modelMatrix = matrixStack.modelMatrix();
-		final FastMatrix3f normalMatrix = matrixStack.normalMatrix();
-		normalMatrix.f_setIdentity();
+		final TerrainQuadEncoder encoder = context.encoder;
+		final RetainedRegionMesh.Recorder recorder = RetainedRegionMesh.shouldRetain(region, isNear) ? context.meshRecorder : null;
+		final long[] dirtyBlocks = recorder == null ? null : recorder.begin(collectors, region, buildState.occlusionResult, priorMesh);
+
+		context.matrixStack.normalMatrix().f_setIdentity();
 
-		final BlockRenderDispatcher blockRenderManager = Minecraft.getInstance().getBlockRenderer();
+		final BlockStateTable stateTable = BlockStateTable.get();
+		final StaticQuadCache staticQuads = StaticQuadCache.get();
 		final RegionOcclusionCalculator occlusionRegion = region.occlusion;
 
-		for (int i = 0; i < RenderRegionStateIndexer.INTERIOR_STATE_COUNT; i++) {
-			if (occlusionRegion.shouldRender(i)) {
-				final BlockState blockState = region.getLocalBlockState(i);
-				final FluidState fluidState = blockState.getFluidState();
-				final int x = i & 0xF;
-				final int y = (i >> 4) & 0xF;
-				final int z = (i >> 8) & 0xF;
-				searchPos.set(xOrigin + x, yOrigin + y, zOrigin + z);
-
-				final boolean hasFluid = !fluidState.isEmpty();
-				// Vanilla only checks not invisible, but filters non-model shape down the line
-				final boolean hasBlock = blockState.getRenderShape() == RenderShape.MODEL;
-
-				if (hasFluid || hasBlock) {
-					// Vanilla does a push/pop for each block but that creates needless allocation spam.
-					modelMatrix.f_setIdentity();
-					modelMatrix.f_translate(x, y, z);
-
-					if (hasFluid) {
-						context.renderFluid(blockState, searchPos, FluidModel.get(fluidState.getType()));
+		if (dirtyBlocks == null) {
+			for (int i = 0; i < RenderRegionStateIndexer.INTERIOR_STATE_COUNT; i++) {
+				if (occlusionRegion.shouldRender(i)) {
+					final int quadCount = encoder.quadCount();
+					bakeBlock(context, stateTable, staticQuads, i);
+
+					if (recorder != null && encoder.quadCount() != quadCount) {
+						recorder.endBlock(i);
 					}
+				}
+			}
+		} else {
+			priorMesh.replay(collectors, dirtyBlocks, recorder, encoder.animationBits);
 
-					if (hasBlock) {
-						if (blockState.getOffsetType() != Block.OffsetType.NONE) {
-							final Vec3 vec3d = blockState.getOffset(region, searchPos);
+			for (int w = 0; w < dirtyBlocks.length; ++w) {
+				long bits = dirtyBlocks[w];
 
-							if (vec3d != Vec3.ZERO) {
-								modelMatrix.f_translate((float) vec3d.x, (float) vec3d.y, (float) vec3d.z);
-							}
-						}
+				while (bits != 0) {
+					final int i = (w << 6) | Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+
+					if (occlusionRegion.shouldRender(i)) {
+						final int quadCount = encoder.quadCount();
+						bakeBlock(context, stateTable, staticQuads, i);
 
-						final BakedModel model = blockRenderManager.getBlockModel(blockState);
-						context.renderBlock(blockState, searchPos, model);
+						if (encoder.quadCount() != quadCount) {
+							recorder.endBlock(i);
+						}
 					}
 				}
 			}
 		}
 
+		if (recorder != null) {
+			retainedMesh.set(recorder.finish(encoder.animationBits));
+		}
+
 		buildState.prepareTranslucentIfNeeded(worldRenderState.sectorManager.cameraPos(), renderSector, collectors);
 
+		final long buildNanos = System.nanoTime() - buildStart;
+		lastBuildNanos = buildNanos;
+		worldRenderState.regionRebuildManager.costModel.record(RegionBuildCostModel.BUILD, buildNanos);
+
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.completeChunk();
 		}
 	}
 
+	/** Resorts translucent quads and uploads only the new draw order. */
+	private void resortByIndex(CanvasTerrainRenderContext context, RegionBuildState regionData, TranslucentSortState sortState, AtomicReference<PackedInputRegion> runningState) {
+		final TransferBuffer elements;
+
+		// a resort can be scheduled again while this one is running
+		synchronized (sortState) {
+			if (!sortState.sortTerrainQuads(worldRenderState.sectorManager.cameraPos(), renderSector, context.quadSorter)
+					|| runningState.get() == SignalInputRegion.INVALID) {
+				return;
+			}
+
+			elements = QuadOrderIndex.prepare(sortState.order(), sortState.quadCount());
+		}
+
+		renderRegionBuilder.scheduleUpload(() -> {
+			if (ChunkRebuildCounters.ENABLED) {
+				ChunkRebuildCounters.startUpload();
+			}
+
+			// order only applies to vertices uploaded from the same build, which may not be uploaded yet
+			if (translucentBuildState == regionData && translucentDrawable.storage() instanceof ClusteredDrawableStorage storage) {
+				storage.uploadQuadOrder(elements);
+				worldRenderState.invalidateDrawLists();
+			} else {
+				elements.release();
+			}
+
+			if (ChunkRebuildCounters.ENABLED) {
+				ChunkRebuildCounters.completeUpload();
+			}
+		});
+	}
+
+	private void bakeBlock(CanvasTerrainRenderContext context, BlockStateTable stateTable, StaticQuadCache staticQuads, int i) {
+		final InputRegion region = context.region;
+		final BlockState blockState = region.getLocalBlockState(i);
+		final int flags = stateTable.flags(blockState);
+		final boolean hasFluid = (flags & BlockStateTable.HAS_FLUID) != 0;
+		// Vanilla only checks not invisible, but filters non-model shape down the line
+		final boolean hasBlock = (flags & BlockStateTable.RENDERS_MODEL) != 0;
+
+		if (hasFluid || hasBlock) {
+			final int x = i & 0xF;
+			final int y = (i >> 4) & 0xF;
+			final int z = (i >> 8) & 0xF;
+			final BlockPos.MutableBlockPos searchPos = context.searchPos;
+			searchPos.set(origin.getX() + x, origin.getY() + y, origin.getZ() + z);
+
+			// Vanilla does a push/pop for each block but that creates needless allocation spam.
+			final FastMatrix4f modelMatrix = context.matrixStack.modelMatrix();
+			modelMatrix.f_setIdentity();
+			modelMatrix.f_translate(x, y, z);
+
+			if (hasFluid) {
+				context.renderFluid(blockState, searchPos, FluidModel.get(blockState.getFluidState().getType()));
+			}
+
+			if (hasBlock) {
+				if ((flags & BlockStateTable.HAS_OFFSET) != 0) {
+					final Vec3 vec3d = blockState.getOffset(region, searchPos);
+
+					if (vec3d != Vec3.ZERO) {
+						modelMatrix.f_translate((float) vec3d.x, (float) vec3d.y, (float) vec3d.z);
+					}
+				}
+
+				final BakedModel model = stateTable.model(blockState);
+
+				if ((flags & (BlockStateTable.STATIC_MODEL | BlockStateTable.HAS_OFFSET)) == BlockStateTable.STATIC_MODEL) {
+					context.encoder.beginStaticBlock(staticQuads, blockState, StaticQuadCache.variant(model, blockState, searchPos, context.modelRandom));
+					context.renderBlock(blockState, searchPos, model);
+					context.encoder.endStaticBlock();
+				} else {
+					context.renderBlock(blockState, searchPos, model);
+				}
+			}
+		}
+	}
+
 	private void handleBlockEntities(RegionBuildState regionData, CanvasTerrainRenderContext context) {
 		final ObjectOpenHashSet<BlockEntity> nonCullBlockEntities = context.nonCullBlockEntities;
 		final ObjectArrayList<BlockEntity> regionDataBlockEntities = regionData.blockEntities;
@@ -510,30 +733,42 @@ public class RenderRegion implements TerrainExecutorTask {
 	}
 
 	public void rebuildOnMainThread() {
+		final RegionBuildCostModel costModel = worldRenderState.regionRebuildManager.costModel;
+		final long start = System.nanoTime();
 		final PackedInputRegion inputRegion = PackedInputRegion.claim(worldRenderState.getWorld(), origin);
+		costModel.record(RegionBuildCostModel.COPY, System.nanoTime() - start);
 
 		if (inputRegion == SignalInputRegion.EMPTY) {
-			final RegionBuildState newBuildState = new RegionBuildState();
-			newBuildState.setOcclusionResult(RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT);
-
-			// don't rebuild occlusion if occlusion did not change
-			final RegionBuildState oldBuildState = buildState.getAndSet(newBuildState);
-
-			if (oldBuildState == RegionBuildState.UNBUILT || !Arrays.equals(newBuildState.occlusionResult.occlusionData(), oldBuildState.occlusionResult.occlusionData())) {
-				// Even if empty the chunk may still be needed for visibility search to progress
-				notifyOcclusionChange();
+			if (setTrivialBuildState(RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT)) {
+				clearDrawables();
+			}
+		} else if (inputRegion.isEnclosedUniform() && localNoCullingBlockEntities.isEmpty()) {
+			if (setTrivialBuildState(RegionOcclusionCalculator.FULL_OCCLUSION_RESULT)) {
+				clearDrawables();
 			}
+
+			inputRegion.release();
 		} else {
 			final CanvasTerrainRenderContext context = renderRegionBuilder.mainThreadContext.prepareForRegion(inputRegion);
-			final RegionBuildState newBuildState = captureAndSetBuildState(context, origin.isNear());
+			final boolean isNear = origin.isNear();
+			final long contentHash = hashContent(context, inputRegion, isNear);
+
+			if (isUnchanged(contentHash)) {
+				inputRegion.release();
+				markBuilt();
+				return;
+			}
+
+			final RegionBuildState newBuildState = captureAndSetBuildState(context, isNear, contentHash);
 			context.encoder.updateSector(renderSector, origin);
 
-			buildTerrain(context, newBuildState);
+			buildTerrain(context, newBuildState, isNear, retainedMesh.getAndSet(null));
 
 			if (ChunkRebuildCounters.ENABLED) {
 				ChunkRebuildCounters.startUpload();
 			}
 
+			final long uploadStart = System.nanoTime();
 			final VertexCollectorList collectors = context.encoder.collectors;
 			final UploadableRegion solidUpload = collectors.toUploadableChunk(false, origin, worldRenderState);
 			final UploadableRegion translucentUpload = collectors.toUploadableChunk(true, origin, worldRenderState);
@@ -541,10 +776,12 @@ public class RenderRegion implements TerrainExecutorTask {
 			releaseDrawables();
 			solidDrawable = solidUpload.produceDrawable();
 			translucentDrawable = translucentUpload.produceDrawable();
+			translucentBuildState = newBuildState;
 			animationBits.clear();
 			animationBits.or(context.encoder.animationBits);
 
 			worldRenderState.invalidateDrawLists();
+			costModel.record(RegionBuildCostModel.UPLOAD, System.nanoTime() - uploadStart);
 
 			if (ChunkRebuildCounters.ENABLED) {
 				ChunkRebuildCounters.completeUpload();
@@ -561,6 +798,11 @@ public class RenderRegion implements TerrainExecutorTask {
 		return buildState.get();
 	}
 
+	/** Duration of the most recent terrain build in nanoseconds, or zero if never built. */
+	public long lastBuildNanos() {
+		return lastBuildNanos;
+	}
+
 	public DrawableRegion translucentDrawable() {
 		return translucentDrawable;
 	}
@@ -0,0 +1,336 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.region;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_CACHE_WORDS;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndexToPackedSectionPos;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import grondag.canvas.buffer.input.DrawableVertexCollector;
+import grondag.canvas.buffer.input.VertexCollectorList;
+import grondag.canvas.config.Configurator;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionResult;
+import grondag.canvas.terrain.region.input.InputRegion;
+
+/**
+ * Output of the most recent build of a region near the camera, with the quads
+ * baked for each block, and the input it was baked from. A later build compares
+ * its input to this one and, when few positions changed, re-bakes only blocks
+ * that could be affected and replays quads of all other blocks.
+ *
+ * <p>Quads of a block depend on its own state and on states and light within one
+ * block of it - face culling, ambient occlusion, smooth lighting and fluid heights.
+ * Blocks within one block of a changed position are re-baked, along with blocks
+ * that became hidden or exposed. Changes to occlusion mean a full rebuild.
+ *
+ * <p>Instances are handed from one build to the next and are never used
+ * by more than one thread at a time.
+ */
+public final class RetainedRegionMesh {
+	/** Rebuilds that would re-bake more blocks than this aren't worth patching. */
+	private static final int MAX_PATCH_BLOCKS = 512;
+
+	/** Leaves of a collector are identified by face and shadow casting. */
+	private static final int LEAF_SLOTS = 14;
+
+	/** Block index, leaf, start and end of the quads of one block in one leaf. */
+	private static final int RECORD_STRIDE = 4;
+
+	private final int[] stateIndexes = new int[TOTAL_STATE_COUNT];
+	private final byte[] light = new byte[TOTAL_STATE_COUNT];
+	private final long[] renderable = new long[INTERIOR_CACHE_WORDS];
+	private long lightLayers;
+	private OcclusionResult occlusionResult;
+	private final BitSet animationBits = new BitSet();
+
+	private long[] leafCollectorKeys;
+	private int[] leafFaces;
+	private boolean[] leafCastShadows;
+	private int[][] leafData;
+	private int[] records;
+
+	private RetainedRegionMesh() { }
+
+	/** True if output of the region should be retained for later patching. */
+	static boolean shouldRetain(InputRegion region, boolean isNear) {
+		// smoothed light depends on light well beyond adjacent blocks
+		return isNear && Configurator.incrementalRebuild && !Configurator.lightSmoothing && region.isBakedPerBlock();
+	}
+
+	private void captureInput(InputRegion region, OcclusionResult occlusionResult) {
+		region.copyStateIndexes(stateIndexes);
+		lightLayers = region.copyLight(light);
+		region.occlusion.copyRenderable(renderable);
+		this.occlusionResult = occlusionResult;
+	}
+
+	/**
+	 * Sets bits of interior positions that need to be re-baked because
+	 * input near them is different than when the prior mesh was baked.
+	 *
+	 * @return False if the region should be fully rebuilt instead.
+	 */
+	private boolean findDirtyBlocks(RetainedRegionMesh prior, long[] dirtyBlocks) {
+		if (prior.lightLayers != lightLayers || !isSameOcclusion(prior.occlusionResult, occlusionResult)) {
+			return false;
+		}
+
+		Arrays.fill(dirtyBlocks, 0);
+		final int[] stateIndexes = this.stateIndexes;
+		final int[] priorStateIndexes = prior.stateIndexes;
+		final byte[] light = this.light;
+		final byte[] priorLight = prior.light;
+		int changeCount = 0;
+
+		for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+			if (stateIndexes[i] != priorStateIndexes[i] || light[i] != priorLight[i]) {
+				if (++changeCount > MAX_PATCH_BLOCKS) {
+					return false;
+				}
+
+				markNeighborhood(dirtyBlocks, regionIndexToPackedSectionPos(i));
+			}
+		}
+
+		int dirtyCount = 0;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			final long bits = dirtyBlocks[i] | (renderable[i] ^ prior.renderable[i]);
+			dirtyBlocks[i] = bits;
+			dirtyCount += Long.bitCount(bits);
+		}
+
+		return dirtyCount <= MAX_PATCH_BLOCKS;
+	}
+
+	private static boolean isSameOcclusion(OcclusionResult a, OcclusionResult b) {
+		return a.mutalFaceMask() == b.mutalFaceMask() && Arrays.equals(a.occlusionData(), b.occlusionData());
+	}
+
+	/** Marks interior positions within one block of the given position. */
+	private static void markNeighborhood(long[] dirtyBlocks, int packedSectionPos) {
+		// values are +2 actual
+		final int x = (packedSectionPos & 31) - 2;
+		final int y = ((packedSectionPos >> 5) & 31) - 2;
+		final int z = (packedSectionPos >> 10) - 2;
+		final int x1 = Math.min(15, x + 1);
+		final int y1 = Math.min(15, y + 1);
+		final int z1 = Math.min(15, z + 1);
+
+		for (int bz = Math.max(0, z - 1); bz <= z1; ++bz) {
+			for (int by = Math.max(0, y - 1); by <= y1; ++by) {
+				for (int bx = Math.max(0, x - 1); bx <= x1; ++bx) {
+					final int i = bx | (by << 4) | (bz << 8);
+					dirtyBlocks[i >> 6] |= 1L << (i & 63);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds quads of every block not marked in dirtyBlocks to the collectors, in the same
+	 * order they were baked, and records them as if they had been baked again.
+	 */
+	void replay(VertexCollectorList collectors, long[] dirtyBlocks, Recorder recorder, BitSet animationBits) {
+		final int leafCount = leafData.length;
+		final DrawableVertexCollector[] leafCollectors = new DrawableVertexCollector[leafCount];
+
+		for (int i = 0; i < leafCount; ++i) {
+			leafCollectors[i] = collectors.getForCollectorKey(leafCollectorKeys[i]);
+		}
+
+		final int[] records = this.records;
+		final int limit = records.length;
+		int r = 0;
+
+		while (r < limit) {
+			final int block = records[r];
+			final boolean keep = (dirtyBlocks[block >> 6] & (1L << (block & 63))) == 0;
+
+			// records of a block are contiguous
+			do {
+				if (keep) {
+					final int leaf = records[r + 1];
+					final DrawableVertexCollector collector = leafCollectors[leaf];
+					final int stride = collector.target().length;
+					final int[] data = leafData[leaf];
+					final int end = records[r + 3];
+					final int face = leafFaces[leaf];
+					final boolean castShadow = leafCastShadows[leaf];
+
+					for (int i = records[r + 2]; i < end; i += stride) {
+						final int targetIndex = collector.reserveQuad(face, castShadow);
+						System.arraycopy(data, i, collector.reservedData(), targetIndex, stride);
+					}
+				}
+
+				r += RECORD_STRIDE;
+			} while (r < limit && records[r] == block);
+
+			if (keep) {
+				recorder.endBlock(block);
+			}
+		}
+
+		// May include sprites no longer present, which only means they keep animating.
+		animationBits.or(this.animationBits);
+	}
+
+	/**
+	 * Tracks which quads in each collector come from each block during a build,
+	 * and produces the retained mesh when the build is done. One per build context.
+	 */
+	public static final class Recorder implements DrawableVertexCollector.RunConsumer {
+		private final IntArrayList records = new IntArrayList();
+		private final long[] dirtyBlocks = new long[INTERIOR_CACHE_WORDS];
+		private VertexCollectorList collectors;
+		private RetainedRegionMesh mesh;
+
+		/** Size of each leaf as of the last recorded block, by leaf slot. */
+		private int[] leafSizes = new int[LEAF_SLOTS * 8];
+		private int[] slotLeaves = new int[LEAF_SLOTS * 8];
+		private int slotBase;
+		private int block;
+		private boolean isFinishing;
+
+		/**
+		 * Starts recording a build into empty collectors.
+		 *
+		 * @param prior Mesh retained by the previous build of the region, if any.
+		 * @return Interior positions that need to be baked, in which case all other quads
+		 * should be obtained with {@link RetainedRegionMesh#replay}, or null if all must be baked.
+		 */
+		@Nullable long[] begin(VertexCollectorList collectors, InputRegion region, OcclusionResult occlusionResult, @Nullable RetainedRegionMesh prior) {
+			this.collectors = collectors;
+			records.clear();
+			Arrays.fill(leafSizes, 0);
+			mesh = new RetainedRegionMesh();
+			mesh.captureInput(region, occlusionResult);
+			return prior != null && mesh.findDirtyBlocks(prior, dirtyBlocks) ? dirtyBlocks : null;
+		}
+
+		/** Call after all quads of the block at the given interior index have been added to the collectors. */
+		void endBlock(int blockIndex) {
+			block = blockIndex;
+			final VertexCollectorList collectors = this.collectors;
+			final int limit = collectors.activeCount();
+			ensureSlots(limit * LEAF_SLOTS);
+
+			for (int i = 0; i < limit; ++i) {
+				slotBase = i * LEAF_SLOTS;
+				collectors.get(i).forEachRun(0, this);
+			}
+		}
+
+		/** Collectors can be added at any time during the build. */
+		private void ensureSlots(int slotCount) {
+			if (leafSizes.length < slotCount) {
+				leafSizes = Arrays.copyOf(leafSizes, slotCount * 2);
+				slotLeaves = new int[slotCount * 2];
+			}
+		}
+
+		@Override
+		public void accept(int effectiveFaceIndex, boolean castShadow, DrawableVertexCollector quads) {
+			final int length = quads.integerSize();
+			final int slot = slotBase + effectiveFaceIndex * 2 + (castShadow ? 0 : 1);
+
+			if (isFinishing) {
+				// all quads should have been recorded
+				assert leafSizes[slot] == length;
+
+				if (leafSizes[slot] == 0) {
+					return;
+				}
+
+				final RetainedRegionMesh mesh = this.mesh;
+				final int leaf = slotLeaves[slot];
+				mesh.leafCollectorKeys[leaf] = collectors.collectorKey(slotBase / LEAF_SLOTS);
+				mesh.leafFaces[leaf] = effectiveFaceIndex;
+				mesh.leafCastShadows[leaf] = castShadow;
+				mesh.leafData[leaf] = quads.saveState(null);
+			} else {
+				final int start = leafSizes[slot];
+
+				if (length != start) {
+					records.add(block);
+					records.add(slot);
+					records.add(start);
+					records.add(length);
+					leafSizes[slot] = length;
+				}
+			}
+		}
+
+		/**
+		 * Call when all blocks have been baked or replayed, before translucent quads are sorted.
+		 *
+		 * @return Mesh to be passed to the next build of the region.
+		 */
+		RetainedRegionMesh finish(BitSet animationBits) {
+			final RetainedRegionMesh mesh = this.mesh;
+			final int slotCount = collectors.activeCount() * LEAF_SLOTS;
+			ensureSlots(slotCount);
+			final int[] leafSizes = this.leafSizes;
+			int leafCount = 0;
+
+			for (int slot = 0; slot < slotCount; ++slot) {
+				if (leafSizes[slot] != 0) {
+					slotLeaves[slot] = leafCount++;
+				}
+			}
+
+			mesh.leafCollectorKeys = new long[leafCount];
+			mesh.leafFaces = new int[leafCount];
+			mesh.leafCastShadows = new boolean[leafCount];
+			mesh.leafData = new int[leafCount][];
+
+			if (leafCount > 0) {
+				isFinishing = true;
+
+				for (int i = 0; i < slotCount / LEAF_SLOTS; ++i) {
+					slotBase = i * LEAF_SLOTS;
+					collectors.get(i).forEachRun(0, this);
+				}
+
+				isFinishing = false;
+			}
+
+			final int[] records = this.records.toIntArray();
+
+			for (int r = 1; r < records.length; r += RECORD_STRIDE) {
+				records[r] = slotLeaves[records[r]];
+			}
+
+			mesh.records = records;
+			mesh.animationBits.or(animationBits);
+			this.mesh = null;
+			collectors = null;
+			return mesh;
+		}
+	}
+}
@@ -54,6 +54,14 @@ public abstract class AbstractInputRegion {
 		return regionIndex(x - originX, y - originY, z - originZ);
 	}
 
+	/**
+	 * Index in arrays that cover the region and adjacent sections. Coordinates
+	 * are 0-2, with the region at 1, 1, 1.
+	 */
+	static int sectionIndex(int x, int y, int z) {
+		return x + z * 3 + y * 9;
+	}
+
 	protected LevelChunkSection getSection(int x, int y, int z) {
 		final int index = y + baseSectionIndex;
 
@@ -67,6 +67,9 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_C
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndexToPackedSectionPos;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
@@ -74,41 +77,46 @@ import it.unimi.dsi.fastutil.shorts.ShortArrayList;
 import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.client.renderer.LevelRenderer;
+import net.minecraft.client.renderer.LightTexture;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.core.Holder;
+import net.minecraft.util.BitStorage;
 import net.minecraft.world.level.BlockAndTintGetter;
 import net.minecraft.world.level.ColorResolver;
 import net.minecraft.world.level.LightLayer;
 import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.BiomeManager;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.DataLayer;
 import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.PalettedContainerRO;
 import net.minecraft.world.level.lighting.LevelLightEngine;
 import net.minecraft.world.level.material.FluidState;
 
 import io.vram.frex.api.world.RenderRegionBakeListener;
 
 import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
+import grondag.canvas.mixinterface.BitStorageExt;
+import grondag.canvas.mixinterface.BlockStateExt;
 import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
+import grondag.canvas.terrain.region.RegionMeshCache;
+import grondag.canvas.terrain.util.BlockStateTable;
 import grondag.canvas.terrain.util.ChunkColorCache;
 
-// FIX: should not allow direct world access, esp from non-main threads
 public class InputRegion extends AbstractInputRegion implements BlockAndTintGetter {
-	private static final int[] EMPTY_AO_CACHE = new int[TOTAL_STATE_COUNT];
-	private static final int[] EMPTY_LIGHT_CACHE = new int[TOTAL_STATE_COUNT];
 	private static final Object[] EMPTY_RENDER_DATA = new Object[INTERIOR_STATE_COUNT];
 	private static final BlockEntity[] EMPTY_BLOCK_ENTITIES = new BlockEntity[INTERIOR_STATE_COUNT];
 
-	static {
-		Arrays.fill(EMPTY_AO_CACHE, Integer.MAX_VALUE);
-		Arrays.fill(EMPTY_LIGHT_CACHE, Integer.MAX_VALUE);
-	}
-
 	public final BlockEntity[] blockEntities = new BlockEntity[INTERIOR_STATE_COUNT];
 	public final CanvasTerrainRenderContext terrainContext;
 	protected final BlockPos.MutableBlockPos searchPos = new BlockPos.MutableBlockPos();
 	protected final Object[] renderData = new Object[INTERIOR_STATE_COUNT];
+	private boolean hasRenderData;
 	private final BlockState[] states = new BlockState[TOTAL_STATE_COUNT];
 	public final ObjectArrayList<RenderRegionBakeListener> bakeListeners = new ObjectArrayList<>();
 
@@ -128,9 +136,38 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		}
 	};
 
-	// PERF: pack for reduced memory, better LOC
-	private final int[] aoCache = new int[TOTAL_STATE_COUNT];
-	private final int[] lightCache = new int[TOTAL_STATE_COUNT];
+	private final LightingPlanes lighting = new LightingPlanes();
+	/** Table for the current lighting capture. */
+	private BlockStateTable lightingTable;
+
+	private final LightingPlanes.Source lightingSource = new LightingPlanes.Source() {
+		@Override
+		public int aoLevel(int regionIndex, int x, int y, int z) {
+			final BlockState blockState = states[regionIndex];
+			return lightingTable.aoLevel(lightingTable.flags(blockState), blockState, InputRegion.this, searchPos.set(x, y, z));
+		}
+
+		@Override
+		public int brightness(int regionIndex, int x, int y, int z) {
+			return directBrightness(states[regionIndex], x, y, z);
+		}
+	};
+
+	/** State of every interior position if they are all the same, otherwise null. */
+	private @Nullable BlockState uniformState;
+
+	// Snapshots of the region and adjacent sections, same as in PackedInputRegion.
+	// All world content read during bake comes from these.
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final PalettedContainer.Data<BlockState>[] sectionStates = new PalettedContainer.Data[27];
+	private final DataLayer[] blockLight = new DataLayer[27];
+	private final DataLayer[] skyLight = new DataLayer[27];
+	private final DataLayer[] inheritedSkyLight = new DataLayer[27];
+	private boolean hasSkyLight;
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final PalettedContainerRO<Holder<Biome>>[] sectionBiomes = new PalettedContainerRO[27];
+	private final BiomeManager.NoiseBiomeSource biomeSource = this::snapshotNoiseBiome;
+	private BiomeManager biomeManager;
 
 	public InputRegion(CanvasTerrainRenderContext terrainContext) {
 		this.terrainContext = terrainContext;
@@ -143,8 +180,6 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		System.arraycopy(packedRegion.chunks, 0, chunks, 0, 16);
 		System.arraycopy(EMPTY_BLOCK_ENTITIES, 0, blockEntities, 0, INTERIOR_STATE_COUNT);
 		System.arraycopy(EMPTY_RENDER_DATA, 0, renderData, 0, INTERIOR_STATE_COUNT);
-		System.arraycopy(EMPTY_AO_CACHE, 0, aoCache, 0, TOTAL_STATE_COUNT);
-		System.arraycopy(EMPTY_LIGHT_CACHE, 0, lightCache, 0, TOTAL_STATE_COUNT);
 
 		world = packedRegion.world;
 
@@ -156,135 +191,356 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		baseSectionIndex = packedRegion.baseSectionIndex;
 		chunkBaseZ = packedRegion.chunkBaseZ;
 
-		final var mainSection = getSection(1, 1, 1);
-
-		for (int x = 0; x < 16; x++) {
-			for (int y = 0; y < 16; y++) {
-				for (int z = 0; z < 16; z++) {
-					states[interiorIndex(x, y, z)] = mainSection.getBlockState(x, y, z);
-				}
-			}
-		}
+		System.arraycopy(packedRegion.sectionStates, 0, sectionStates, 0, 27);
+		System.arraycopy(packedRegion.blockLight, 0, blockLight, 0, 27);
+		System.arraycopy(packedRegion.skyLight, 0, skyLight, 0, 27);
+		System.arraycopy(packedRegion.inheritedSkyLight, 0, inheritedSkyLight, 0, 27);
+		hasSkyLight = packedRegion.hasSkyLight;
+		System.arraycopy(packedRegion.sectionBiomes, 0, sectionBiomes, 0, 27);
+		biomeManager = world.getBiomeManager().withDifferentSource(biomeSource);
 
+		final BlockState uniformState = captureInterior(sectionStates[sectionIndex(1, 1, 1)]);
+		this.uniformState = uniformState;
 		captureCorners();
 		captureEdges();
 		captureFaces();
 
 		copyBeData(packedRegion);
 
-		occlusion.prepare();
-	}
-
-	private interface BlockStateFunction {
-		BlockState apply (int i, int j, int k);
+		if (uniformState == null) {
+			occlusion.prepare();
+		} else {
+			occlusion.prepareUniform(uniformState);
+		}
 	}
 
 	private static final BlockState AIR = Blocks.AIR.defaultBlockState();
-	private static BlockStateFunction AIR_FUNCTION = (i, j, k) -> AIR;
 
-	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureFace(int baseIndex, BlockStateFunction func) {
-		for (int n = 0; n < FACE_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & FACE_I_MASK, (n >> FACE_J_SHIFT) & FACE_J_MASK, n >> FACE_K_SHIFT);
+	// Strides of x, y, z within the index space of a section palette container.
+	private static final int SX = 1;
+	private static final int SY = 256;
+	private static final int SZ = 16;
+
+	/** Palettes larger than this are the global palette and are looked up directly instead of decoded. */
+	private static final int MAX_DECODED_PALETTE_SIZE = 256;
+
+	/** Palette ids of the main section in container index order. */
+	private final int[] sectionIds = new int[INTERIOR_STATE_COUNT];
+	private final BlockState[] decodedPalette = new BlockState[MAX_DECODED_PALETTE_SIZE];
+	private Palette<BlockState> palette;
+	private BitStorage storage;
+	private boolean isPaletteDecoded;
+
+	/**
+	 * Reads storage and palette of the section once so that states can be copied
+	 * without going through the section and container for every block.
+	 *
+	 * @return The state of every block in the section if there is only one, otherwise null.
+	 */
+	private @Nullable BlockState loadSection(@Nullable PalettedContainer.Data<BlockState> data) {
+		if (data == null) {
+			return AIR;
+		}
+
+		final Palette<BlockState> palette = data.palette();
+		final int size = palette.getSize();
+
+		// Every stored id is a valid palette index, so a single entry means every block is that state.
+		// Covers the single value palette used for empty and fully solid sections.
+		if (size == 1) {
+			return palette.valueFor(0);
+		}
+
+		this.palette = palette;
+		storage = data.storage();
+		isPaletteDecoded = size <= MAX_DECODED_PALETTE_SIZE;
+
+		if (isPaletteDecoded) {
+			final BlockState[] decodedPalette = this.decodedPalette;
+
+			for (int i = 0; i < size; ++i) {
+				decodedPalette[i] = palette.valueFor(i);
+			}
 		}
+
+		return null;
 	}
 
-	private void captureFaces() {
-		final LevelChunkSection lowX = getSection(0, 1, 1);
-		captureFace(SIDE_INDEX_X0, lowX == null ? AIR_FUNCTION : (i, j, k) -> lowX.getBlockState(14 + k, i, j));
+	/**
+	 * @return The state of every interior position if there is only one, otherwise null.
+	 */
+	private @Nullable BlockState captureInterior(@Nullable PalettedContainer.Data<BlockState> section) {
+		final BlockState[] states = this.states;
+		final BlockState uniform = loadSection(section);
+
+		if (uniform != null) {
+			Arrays.fill(states, 0, INTERIOR_STATE_COUNT, uniform);
+			return uniform;
+		}
 
-		final LevelChunkSection highX = getSection(2, 1, 1);
-		captureFace(SIDE_INDEX_X2, highX == null ? AIR_FUNCTION : (i, j, k) -> highX.getBlockState(k, i, j));
+		final int[] ids = sectionIds;
+		((BitStorageExt) storage).canvas_unpack(ids);
 
-		final LevelChunkSection lowZ = getSection(1, 1, 0);
-		captureFace(SIDE_INDEX_Z0, lowZ == null ? AIR_FUNCTION : (i, j, k) -> lowZ.getBlockState(i, j, 14 + k));
+		// Container order is x, z, y from low to high bits and ours is x, y, z.
+		if (isPaletteDecoded) {
+			final BlockState[] decodedPalette = this.decodedPalette;
 
-		final LevelChunkSection highZ = getSection(1, 1, 2);
-		captureFace(SIDE_INDEX_Z2, highZ == null ? AIR_FUNCTION : (i, j, k) -> highZ.getBlockState(i, j, k));
+			for (int i = 0; i < INTERIOR_STATE_COUNT; ++i) {
+				states[interiorIndex(i & 0xF, i >> 8, (i >> 4) & 0xF)] = decodedPalette[ids[i]];
+			}
+		} else {
+			final Palette<BlockState> palette = this.palette;
 
-		final LevelChunkSection lowY = getSection(1, 0, 1);
-		captureFace(SIDE_INDEX_Y0, lowY == null ? AIR_FUNCTION : (i, j, k) -> lowY.getBlockState(i, 14 + k, j));
+			for (int i = 0; i < INTERIOR_STATE_COUNT; ++i) {
+				states[interiorIndex(i & 0xF, i >> 8, (i >> 4) & 0xF)] = palette.valueFor(ids[i]);
+			}
+		}
 
-		final LevelChunkSection highY = getSection(1, 2, 1);
-		captureFace(SIDE_INDEX_Y2, highY == null ? AIR_FUNCTION : (i, j, k) -> highY.getBlockState(i, k, j));
+		return null;
 	}
 
-	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureEdge(int baseIndex, BlockStateFunction func) {
-		for (int n = 0; n < EDGE_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & EDGE_I_MASK, (n >> EDGE_J_SHIFT) & EDGE_J_MASK, n >> EDGE_K_SHIFT);
+	/**
+	 * Copies padding states from a neighbor section. Each target sub-address is split into
+	 * i, j, k components using the given shifts and masks and each component is mapped to
+	 * a section axis by its stride.
+	 *
+	 * <p>NB: the addressing math here must match what is in RenderRegionAddressHelper
+	 */
+	private void capturePadding(@Nullable PalettedContainer.Data<BlockState> section, int baseIndex, int count, int iMask, int jShift, int jMask, int kShift,
+			int sectionOrigin, int iStride, int jStride, int kStride) {
+		final BlockState[] states = this.states;
+		final BlockState uniform = loadSection(section);
+
+		if (uniform != null) {
+			Arrays.fill(states, baseIndex, baseIndex + count, uniform);
+			return;
+		}
+
+		final BitStorage storage = this.storage;
+
+		if (isPaletteDecoded) {
+			final BlockState[] decodedPalette = this.decodedPalette;
+
+			for (int n = 0; n < count; ++n) {
+				final int sectionIndex = sectionOrigin + (n & iMask) * iStride + ((n >> jShift) & jMask) * jStride + (n >> kShift) * kStride;
+				states[baseIndex + n] = decodedPalette[storage.get(sectionIndex)];
+			}
+		} else {
+			final Palette<BlockState> palette = this.palette;
+
+			for (int n = 0; n < count; ++n) {
+				final int sectionIndex = sectionOrigin + (n & iMask) * iStride + ((n >> jShift) & jMask) * jStride + (n >> kShift) * kStride;
+				states[baseIndex + n] = palette.valueFor(storage.get(sectionIndex));
+			}
 		}
 	}
 
+	private void captureFace(int baseIndex, PalettedContainer.Data<BlockState> section, int sectionOrigin, int iStride, int jStride, int kStride) {
+		capturePadding(section, baseIndex, FACE_STATE_COUNT, FACE_I_MASK, FACE_J_SHIFT, FACE_J_MASK, FACE_K_SHIFT, sectionOrigin, iStride, jStride, kStride);
+	}
+
+	private void captureFaces() {
+		captureFace(SIDE_INDEX_X0, sectionStates[sectionIndex(0, 1, 1)], 14 * SX, SY, SZ, SX);
+		captureFace(SIDE_INDEX_X2, sectionStates[sectionIndex(2, 1, 1)], 0, SY, SZ, SX);
+		captureFace(SIDE_INDEX_Z0, sectionStates[sectionIndex(1, 1, 0)], 14 * SZ, SX, SY, SZ);
+		captureFace(SIDE_INDEX_Z2, sectionStates[sectionIndex(1, 1, 2)], 0, SX, SY, SZ);
+		captureFace(SIDE_INDEX_Y0, sectionStates[sectionIndex(1, 0, 1)], 14 * SY, SX, SZ, SY);
+		captureFace(SIDE_INDEX_Y2, sectionStates[sectionIndex(1, 2, 1)], 0, SX, SZ, SY);
+	}
+
+	private void captureEdge(int baseIndex, PalettedContainer.Data<BlockState> section, int sectionOrigin, int iStride, int jStride, int kStride) {
+		capturePadding(section, baseIndex, EDGE_STATE_COUNT, EDGE_I_MASK, EDGE_J_SHIFT, EDGE_J_MASK, EDGE_K_SHIFT, sectionOrigin, iStride, jStride, kStride);
+	}
+
 	private void captureEdges() {
-		final LevelChunkSection aaZ = getSection(0, 0, 1);
-		captureEdge(EDGE_INDEX_Y0X0, aaZ == null ? AIR_FUNCTION : (i, j, k) -> aaZ.getBlockState(14 + i, 14 + j, k));
+		captureEdge(EDGE_INDEX_Y0X0, sectionStates[sectionIndex(0, 0, 1)], 14 * SX + 14 * SY, SX, SY, SZ);
+		captureEdge(EDGE_INDEX_Y2X0, sectionStates[sectionIndex(0, 2, 1)], 14 * SX, SX, SY, SZ);
+		captureEdge(EDGE_INDEX_Y0X2, sectionStates[sectionIndex(2, 0, 1)], 14 * SY, SX, SY, SZ);
+		captureEdge(EDGE_INDEX_Y2X2, sectionStates[sectionIndex(2, 2, 1)], 0, SX, SY, SZ);
 
-		final LevelChunkSection abZ = getSection(0, 2, 1);
-		captureEdge(EDGE_INDEX_Y2X0, abZ == null ? AIR_FUNCTION : (i, j, k) -> abZ.getBlockState(14 + i, j, k));
+		captureEdge(EDGE_INDEX_Z0X0, sectionStates[sectionIndex(0, 1, 0)], 14 * SX + 14 * SZ, SX, SZ, SY);
+		captureEdge(EDGE_INDEX_Z2X0, sectionStates[sectionIndex(0, 1, 2)], 14 * SX, SX, SZ, SY);
+		captureEdge(EDGE_INDEX_Z0X2, sectionStates[sectionIndex(2, 1, 0)], 14 * SZ, SX, SZ, SY);
+		captureEdge(EDGE_INDEX_Z2X2, sectionStates[sectionIndex(2, 1, 2)], 0, SX, SZ, SY);
 
-		final LevelChunkSection baZ = getSection(2, 0, 1);
-		captureEdge(EDGE_INDEX_Y0X2, baZ == null ? AIR_FUNCTION : (i, j, k) -> baZ.getBlockState(i, 14 + j, k));
+		captureEdge(EDGE_INDEX_Z0Y0, sectionStates[sectionIndex(1, 0, 0)], 14 * SY + 14 * SZ, SY, SZ, SX);
+		captureEdge(EDGE_INDEX_Z2Y0, sectionStates[sectionIndex(1, 0, 2)], 14 * SY, SY, SZ, SX);
+		captureEdge(EDGE_INDEX_Z0Y2, sectionStates[sectionIndex(1, 2, 0)], 14 * SZ, SY, SZ, SX);
+		captureEdge(EDGE_INDEX_Z2Y2, sectionStates[sectionIndex(1, 2, 2)], 0, SY, SZ, SX);
+	}
 
-		final LevelChunkSection bbZ = getSection(2, 2, 1);
-		captureEdge(EDGE_INDEX_Y2X2, bbZ == null ? AIR_FUNCTION : (i, j, k) -> bbZ.getBlockState(i, j, k));
+	private void captureCorner(int baseIndex, PalettedContainer.Data<BlockState> section, int sectionOrigin) {
+		capturePadding(section, baseIndex, CORNER_STATE_COUNT, CORNER_I_MASK, CORNER_J_SHIFT, CORNER_J_MASK, CORNER_K_SHIFT, sectionOrigin, SX, SY, SZ);
+	}
 
-		final LevelChunkSection aYa = getSection(0, 1, 0);
-		captureEdge(EDGE_INDEX_Z0X0, aYa == null ? AIR_FUNCTION : (i, j, k) -> aYa.getBlockState(14 + i, k, 14 + j));
+	private void captureCorners() {
+		captureCorner(CORNER_INDEX_000, sectionStates[sectionIndex(0, 0, 0)], 14 * SX + 14 * SY + 14 * SZ);
+		captureCorner(CORNER_INDEX_200, sectionStates[sectionIndex(0, 0, 2)], 14 * SX + 14 * SY);
+		captureCorner(CORNER_INDEX_020, sectionStates[sectionIndex(0, 2, 0)], 14 * SX + 14 * SZ);
+		captureCorner(CORNER_INDEX_220, sectionStates[sectionIndex(0, 2, 2)], 14 * SX);
+		captureCorner(CORNER_INDEX_002, sectionStates[sectionIndex(2, 0, 0)], 14 * SY + 14 * SZ);
+		captureCorner(CORNER_INDEX_202, sectionStates[sectionIndex(2, 0, 2)], 14 * SY);
+		captureCorner(CORNER_INDEX_022, sectionStates[sectionIndex(2, 2, 0)], 14 * SZ);
+		captureCorner(CORNER_INDEX_222, sectionStates[sectionIndex(2, 2, 2)], 0);
+	}
 
-		final LevelChunkSection aYb = getSection(0, 1, 2);
-		captureEdge(EDGE_INDEX_Z2X0, aYb == null ? AIR_FUNCTION : (i, j, k) -> aYb.getBlockState(14 + i, k, j));
+	private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
 
-		final LevelChunkSection bYa = getSection(2, 1, 0);
-		captureEdge(EDGE_INDEX_Z0X2, bYa == null ? AIR_FUNCTION : (i, j, k) -> bYa.getBlockState(i, k, 14 + j));
+	/**
+	 * Adds everything read from the world during bake, other than region position, to the given hash:
+	 * block states of the region and its neighbor ring, and light and biomes of the region and
+	 * adjacent sections. Light is hashed as stored per section. Sky light of sections without
+	 * stored light comes from the nearest section above with stored light, which is hashed instead.
+	 * Block states outside the neighbor ring are not included.
+	 *
+	 * @return False if bake depends on inputs that can't be hashed - render data or bake listeners.
+	 */
+	public boolean hashContent(RegionMeshCache.ContentHash hash) {
+		if (!bakeListeners.isEmpty() || hasRenderData) {
+			return false;
+		}
 
-		final LevelChunkSection bYb = getSection(2, 1, 2);
-		captureEdge(EDGE_INDEX_Z2X2, bYb == null ? AIR_FUNCTION : (i, j, k) -> bYb.getBlockState(i, k, j));
+		final BlockState[] states = this.states;
+
+		for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+			final BlockState state = states[i];
+			hash.add(state == null ? -1 : ((BlockStateExt) state).canvas_stateIndex());
+		}
 
-		final LevelChunkSection Xaa = getSection(1, 0, 0);
-		captureEdge(EDGE_INDEX_Z0Y0, Xaa == null ? AIR_FUNCTION : (i, j, k) -> Xaa.getBlockState(k, 14 + i, 14 + j));
+		for (int i = 0; i < 27; ++i) {
+			hashLight(hash, blockLight[i]);
 
-		final LevelChunkSection Xab = getSection(1, 0, 2);
-		captureEdge(EDGE_INDEX_Z2Y0, Xab == null ? AIR_FUNCTION : (i, j, k) -> Xab.getBlockState(k, 14 + i, j));
+			if (skyLight[i] == null) {
+				hash.add(1);
+				hashLight(hash, inheritedSkyLight[i]);
+			} else {
+				hash.add(0);
+				hashLight(hash, skyLight[i]);
+			}
+		}
 
-		final LevelChunkSection Xba = getSection(1, 2, 0);
-		captureEdge(EDGE_INDEX_Z0Y2, Xba == null ? AIR_FUNCTION : (i, j, k) -> Xba.getBlockState(k, i, 14 + j));
+		for (int x = 0; x < 3; ++x) {
+			for (int z = 0; z < 3; ++z) {
+				hashBiomes(hash, getSection(x, 1, z));
+			}
+		}
 
-		final LevelChunkSection Xbb = getSection(1, 2, 2);
-		captureEdge(EDGE_INDEX_Z2Y2, Xbb == null ? AIR_FUNCTION : (i, j, k) -> Xbb.getBlockState(k, i, j));
+		return true;
 	}
 
-	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureCorner(int baseIndex, BlockStateFunction func) {
-		for (int n = 0; n < CORNER_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & CORNER_I_MASK, (n >> CORNER_J_SHIFT) & CORNER_J_MASK, n >> CORNER_K_SHIFT);
+	private static void hashLight(RegionMeshCache.ContentHash hash, @Nullable DataLayer layer) {
+		if (layer == null || layer.isEmpty()) {
+			hash.add(-1);
+		} else {
+			final byte[] data = layer.getData();
+
+			for (int i = 0; i < DataLayer.SIZE; i += 8) {
+				hash.add((long) LONG_VIEW.get(data, i));
+			}
 		}
 	}
 
-	private void captureCorners() {
-		final LevelChunkSection xyz = getSection(0, 0, 0);
-		captureCorner(CORNER_INDEX_000, xyz == null ? AIR_FUNCTION : (i, j, k) -> xyz.getBlockState(14 + i, 14 + j, 14 + k));
+	/**
+	 * Biomes of the same section layer. Tint blending is horizontal. Read directly because
+	 * client biome containers are replaced when chunk data is received, never changed.
+	 */
+	private static void hashBiomes(RegionMeshCache.ContentHash hash, @Nullable LevelChunkSection section) {
+		if (section == null) {
+			hash.add(-1);
+			return;
+		}
+
+		// Client biome instances are replaced on rejoin, so hash the key instead of identity.
+		Holder<Biome> lastBiome = null;
+		int lastKey = 0;
+
+		for (int i = 0; i < 64; ++i) {
+			final Holder<Biome> biome = section.getNoiseBiome(i & 3, (i >> 2) & 3, i >> 4);
+
+			if (biome != lastBiome) {
+				lastBiome = biome;
+				lastKey = biome.unwrapKey().map(k -> k.location().hashCode()).orElse(0);
+			}
+
+			hash.add(lastKey);
+		}
+	}
+
+	/**
+	 * True if everything baked for the region comes from block positions in the region, so
+	 * that a change can be patched by re-baking nearby positions. Not true when bake listeners
+	 * or block entity render data contribute inputs that aren't captured as block state.
+	 */
+	public boolean isBakedPerBlock() {
+		return bakeListeners.isEmpty() && !hasRenderData;
+	}
+
+	/** Copies the state index of every position in the region and its padding. */
+	public void copyStateIndexes(int[] target) {
+		final BlockState[] states = this.states;
+
+		for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+			final BlockState state = states[i];
+			target[i] = state == null ? -1 : ((BlockStateExt) state).canvas_stateIndex();
+		}
+	}
+
+	/**
+	 * Copies block and sky light of every position in the region and its padding,
+	 * packed as (block << 4) | sky.
+	 *
+	 * @return Bit mask of the light layers that are stored, two bits for each of the 27 sections.
+	 */
+	public long copyLight(byte[] target) {
+		long mask = 0;
 
-		final LevelChunkSection xyZ = getSection(0, 0, 2);
-		captureCorner(CORNER_INDEX_200, xyZ == null ? AIR_FUNCTION : (i, j, k) -> xyZ.getBlockState(14 + i, 14 + j, k));
+		for (int i = 0; i < 27; ++i) {
+			if (blockLight[i] != null) {
+				mask |= 1L << (i << 1);
+			}
 
-		final LevelChunkSection xYz = getSection(0, 2, 0);
-		captureCorner(CORNER_INDEX_020, xYz == null ? AIR_FUNCTION : (i, j, k) -> xYz.getBlockState(14 + i, j, 14 + k));
+			if (skyLight[i] != null) {
+				mask |= 2L << (i << 1);
+			}
+		}
 
-		final LevelChunkSection xYZ = getSection(0, 2, 2);
-		captureCorner(CORNER_INDEX_220, xYZ == null ? AIR_FUNCTION : (i, j, k) -> xYZ.getBlockState(14 + i, j, k));
+		for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+			// values are +2 actual, so adding 14 gives +16 and the section is 0-2
+			final int xyz5 = regionIndexToPackedSectionPos(i);
+			final int x = (xyz5 & 31) + 14;
+			final int y = ((xyz5 >> 5) & 31) + 14;
+			final int z = (xyz5 >> 10) + 14;
+			final int section = sectionIndex(x >> 4, y >> 4, z >> 4);
+			target[i] = (byte) ((blockLight(section, x, y, z) << 4) | skyLight(section, x, y, z));
+		}
+
+		return mask;
+	}
 
-		final LevelChunkSection Xyz = getSection(2, 0, 0);
-		captureCorner(CORNER_INDEX_002, Xyz == null ? AIR_FUNCTION : (i, j, k) -> Xyz.getBlockState(i, 14 + j, 14 + k));
+	/** Section of a world position in the snapshot arrays, or -1 if it isn't the region or adjacent. */
+	private int snapshotSection(int x, int y, int z) {
+		final int sx = (x >> 4) - chunkBaseX;
+		final int sy = (y >> 4) - (originY >> 4) + 1;
+		final int sz = (z >> 4) - chunkBaseZ;
+		return (sx | sy | sz) < 0 || sx > 2 || sy > 2 || sz > 2 ? -1 : sectionIndex(sx, sy, sz);
+	}
 
-		final LevelChunkSection XyZ = getSection(2, 0, 2);
-		captureCorner(CORNER_INDEX_202, XyZ == null ? AIR_FUNCTION : (i, j, k) -> XyZ.getBlockState(i, 14 + j, k));
+	private int blockLight(int section, int x, int y, int z) {
+		final DataLayer layer = blockLight[section];
+		return layer == null ? 0 : layer.get(x & 15, y & 15, z & 15);
+	}
 
-		final LevelChunkSection XYz = getSection(2, 2, 0);
-		captureCorner(CORNER_INDEX_022, XYz == null ? AIR_FUNCTION : (i, j, k) -> XYz.getBlockState(i, j, 14 + k));
+	private int skyLight(int section, int x, int y, int z) {
+		final DataLayer layer = skyLight[section];
 
-		final LevelChunkSection XYZ = getSection(2, 2, 2);
-		captureCorner(CORNER_INDEX_222, XYZ == null ? AIR_FUNCTION : (i, j, k) -> XYZ.getBlockState(i, j, k));
+		if (layer != null) {
+			return layer.get(x & 15, y & 15, z & 15);
+		} else if (!hasSkyLight) {
+			return 0;
+		} else {
+			final DataLayer inherited = inheritedSkyLight[section];
+			return inherited == null ? 15 : inherited.get(x & 15, 0, z & 15);
+		}
 	}
 
 	private void copyBeData(PackedInputRegion protoRegion) {
@@ -300,8 +556,9 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		}
 
 		final ShortArrayList renderDataPos = protoRegion.renderDataPos;
+		hasRenderData = !renderDataPos.isEmpty();
 
-		if (!renderDataPos.isEmpty()) {
+		if (hasRenderData) {
 			final ObjectArrayList<Object> renderData = protoRegion.renderData;
 			final int limit = renderDataPos.size();
 
@@ -313,23 +570,24 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 
 	@Override
 	public BlockState getBlockState(BlockPos pos) {
-		final int i = blockIndex(pos.getX(), pos.getY(), pos.getZ());
-
-		if (i == -1) {
-			return world.getBlockState(pos);
-		}
-
-		return states[i];
+		return getBlockState(pos.getX(), pos.getY(), pos.getZ());
 	}
 
 	public BlockState getBlockState(int x, int y, int z) {
 		final int i = blockIndex(x, y, z);
+		return i == -1 ? snapshotBlockState(x, y, z) : states[i];
+	}
+
+	/** For positions outside the region and its padding. Air if not in an adjacent section. */
+	private BlockState snapshotBlockState(int x, int y, int z) {
+		final int section = snapshotSection(x, y, z);
+		final PalettedContainer.Data<BlockState> data = section == -1 ? null : sectionStates[section];
 
-		if (i == -1) {
-			return world.getBlockState(searchPos.set(x, y, z));
+		if (data == null) {
+			return AIR;
 		}
 
-		return states[i];
+		return data.palette().valueFor(data.storage().get((x & 15) * SX + (y & 15) * SY + (z & 15) * SZ));
 	}
 
 	/**
@@ -342,7 +600,8 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 	@Override
 	@Nullable
 	public BlockEntity getBlockEntity(BlockPos pos) {
-		return isInMainChunk(pos) ? blockEntities[interiorIndex(pos)] : world.getBlockEntity(pos);
+		// Block entities of other sections aren't captured and can change at any time
+		return isInMainChunk(pos) ? blockEntities[interiorIndex(pos)] : null;
 	}
 
 	@Override
@@ -352,7 +611,16 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 
 	@Override
 	public int getBrightness(LightLayer type, BlockPos pos) {
-		return world.getBrightness(type, pos);
+		final int x = pos.getX();
+		final int y = pos.getY();
+		final int z = pos.getZ();
+		final int section = snapshotSection(x, y, z);
+
+		if (section == -1) {
+			return type == LightLayer.SKY && hasSkyLight ? 15 : 0;
+		}
+
+		return type == LightLayer.SKY ? skyLight(section, x, y, z) : blockLight(section, x, y, z);
 	}
 
 	// Implements Fabrics API RenderAttachedBlockView
@@ -365,30 +633,52 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 	}
 
 	public int cachedBrightness(int cacheIndex) {
-		int result = lightCache[cacheIndex];
-
-		if (result == Integer.MAX_VALUE) {
-			final BlockState state = states[cacheIndex];
-			final int packedXyz5 = regionIndexToPackedSectionPos(cacheIndex);
-			final int x = (packedXyz5 & 31) - 2 + originX;
-			final int y = ((packedXyz5 >> 5) & 31) - 2 + originY;
-			final int z = (packedXyz5 >> 10) - 2 + originZ;
-			result = LevelRenderer.getLightColor(world, state, searchPos.set(x, y, z));
-			lightCache[cacheIndex] = result;
-		}
-
-		return result;
+		return lighting.brightness(cacheIndex);
 	}
 
 	/**
 	 * For light smoothing.
 	 */
 	public void setLightCache(int x, int y, int z, int val) {
-		lightCache[blockIndex(x, y, z)] = val;
+		lighting.setBrightness(blockIndex(x, y, z), val);
 	}
 
-	public int directBrightness(BlockPos pos) {
-		return LevelRenderer.getLightColor(world, getBlockState(pos), pos);
+	/**
+	 * Computes AO level and brightness of every position in the region and its padding
+	 * so that {@link #cachedAoLevel(int)} and {@link #cachedBrightness(int)} are plain
+	 * array reads during bake. Call after {@link #prepare(PackedInputRegion)}.
+	 *
+	 * @param isSmoothed If true, brightness is not computed for positions that
+	 * light smoothing will set. Those are all but the outer layer of padding.
+	 */
+	public void captureLighting(boolean isSmoothed) {
+		final BlockStateTable table = BlockStateTable.get();
+		lightingTable = table;
+		final BlockState uniformState = this.uniformState;
+		final int uniformFlags = uniformState == null ? 0 : table.flags(uniformState);
+		// interior AO of a uniform state is the same everywhere unless it depends on position
+		final int uniformAoLevel = uniformState != null && (uniformFlags & BlockStateTable.STATIC_SOLIDITY) != 0
+				? table.aoLevel(uniformFlags, uniformState, this, searchPos) : -1;
+
+		lighting.capture(lightingSource, originX, originY, originZ, uniformAoLevel, isSmoothed);
+	}
+
+	/**
+	 * Same result as {@link LevelRenderer#getLightColor(BlockAndTintGetter, BlockState, BlockPos)}
+	 * but reads light from the snapshot directly.
+	 */
+	public int directBrightness(BlockState state, int x, int y, int z) {
+		if (state.emissiveRendering(this, searchPos.set(x, y, z))) {
+			return LightTexture.FULL_BRIGHT;
+		}
+
+		final int section = snapshotSection(x, y, z);
+
+		if (section == -1) {
+			return LightTexture.pack(state.getLightEmission(), hasSkyLight ? 15 : 0);
+		}
+
+		return LightTexture.pack(Math.max(blockLight(section, x, y, z), state.getLightEmission()), skyLight(section, x, y, z));
 	}
 
 	// TODO: do anything with this?
@@ -399,25 +689,7 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 	}
 
 	public int cachedAoLevel(int cacheIndex) {
-		int result = aoCache[cacheIndex];
-
-		if (result == Integer.MAX_VALUE) {
-			final BlockState state = states[cacheIndex];
-
-			if (state.getLightEmission() == 0) {
-				final int packedXyz5 = regionIndexToPackedSectionPos(cacheIndex);
-				final int x = (packedXyz5 & 31) - 2 + originX;
-				final int y = ((packedXyz5 >> 5) & 31) - 2 + originY;
-				final int z = (packedXyz5 >> 10) - 2 + originZ;
-				result = Math.round(255f * state.getShadeBrightness(this, searchPos.set(x, y, z)));
-			} else {
-				result = 255;
-			}
-
-			aoCache[cacheIndex] = result;
-		}
-
-		return result;
+		return lighting.aoLevel(cacheIndex);
 	}
 
 	@Override
@@ -425,17 +697,44 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		return world.getLightEngine();
 	}
 
+	/**
+	 * Colors come from planes shared by the chunk column. Positions outside the
+	 * main chunk get the color of the nearest column the planes include.
+	 */
 	@Override
 	public int getBlockTint(BlockPos blockPos, ColorResolver colorResolver) {
-		final int x = blockPos.getX();
-		final int z = blockPos.getZ();
-		return ChunkColorCache.get(getChunk(x >> 4, z >> 4)).getColor(x, blockPos.getY(), z, colorResolver);
+		return ChunkColorCache.get(chunks[1 | (1 << 2)]).getColor(blockPos.getX(), blockPos.getZ(), colorResolver, biomeManager, originY + 8);
 	}
 
 	public Biome getBiome(BlockPos blockPos) {
-		final int x = blockPos.getX();
-		final int z = blockPos.getZ();
-		return ChunkColorCache.get(getChunk(x >> 4, z >> 4)).getBiome(x, blockPos.getY(), z);
+		return biomeManager.getBiome(blockPos).value();
+	}
+
+	/**
+	 * Biome of the given quart position from the snapshot. Above and below the world,
+	 * uses the nearest quart in the main section, like chunks clamp to the world.
+	 */
+	private Holder<Biome> snapshotNoiseBiome(int quartX, int quartY, int quartZ) {
+		final int sx = (quartX >> 2) - chunkBaseX;
+		final int sz = (quartZ >> 2) - chunkBaseZ;
+
+		if ((sx | sz) < 0 || sx > 2 || sz > 2) {
+			return world.getUncachedNoiseBiome(quartX, quartY, quartZ);
+		}
+
+		final int sy = (quartY >> 2) - (originY >> 4) + 1;
+		PalettedContainerRO<Holder<Biome>> biomes = sy < 0 || sy > 2 ? null : sectionBiomes[sectionIndex(sx, sy, sz)];
+
+		if (biomes == null) {
+			biomes = sectionBiomes[sectionIndex(sx, 1, sz)];
+			quartY = sy < 1 ? 0 : 3;
+
+			if (biomes == null) {
+				return world.getUncachedNoiseBiome(quartX, quartY, quartZ);
+			}
+		}
+
+		return biomes.get(quartX & 3, quartY & 3, quartZ & 3);
 	}
 
 	/**
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.REGION_PADDING;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndexToPackedSectionPos;
+
+import java.util.Arrays;
+
+/**
+ * AO level and brightness of every position in a region and its padding, indexed by
+ * region index. Filled in one pass when the region is prepared, so lookups during
+ * bake are array reads with no test for missing values.
+ *
+ * <p>Brightness is in the packed form used by light maps, block light in the low
+ * 16 bits and sky light in the high 16 bits. Neither vanilla nor smoothed light uses
+ * more than 8 bits per channel, so both channels are stored in one short.
+ */
+public final class LightingPlanes {
+	private final byte[] aoLevels = new byte[TOTAL_STATE_COUNT];
+	private final short[] brightness = new short[TOTAL_STATE_COUNT];
+
+	public int aoLevel(int regionIndex) {
+		return aoLevels[regionIndex] & 0xFF;
+	}
+
+	public void setAoLevel(int regionIndex, int aoLevel) {
+		aoLevels[regionIndex] = (byte) aoLevel;
+	}
+
+	/** Sets AO level of region indexes from start (inclusive) to end (exclusive). */
+	public void fillAoLevel(int start, int end, int aoLevel) {
+		Arrays.fill(aoLevels, start, end, (byte) aoLevel);
+	}
+
+	public int brightness(int regionIndex) {
+		final int packed = brightness[regionIndex];
+		return (packed & 0xFF) | ((packed & 0xFF00) << 8);
+	}
+
+	public void setBrightness(int regionIndex, int packedLight) {
+		brightness[regionIndex] = (short) ((packedLight & 0xFF) | ((packedLight >>> 8) & 0xFF00));
+	}
+
+	/**
+	 * Fills AO level and brightness of every position in the region and its padding
+	 * from the given source.
+	 *
+	 * @param uniformAoLevel AO level of every interior position, or -1 if it must be
+	 * looked up for each.
+	 * @param isSmoothed If true, brightness is only looked up for the outer layer of
+	 * padding. Light smoothing sets the rest.
+	 */
+	public void capture(Source source, int originX, int originY, int originZ, int uniformAoLevel, boolean isSmoothed) {
+		final boolean isAoUniform = uniformAoLevel >= 0;
+		int i = 0;
+
+		if (isAoUniform) {
+			fillAoLevel(0, INTERIOR_STATE_COUNT, uniformAoLevel);
+
+			if (isSmoothed) {
+				// interior brightness all comes from smoothing
+				i = INTERIOR_STATE_COUNT;
+			}
+		}
+
+		for (; i < TOTAL_STATE_COUNT; ++i) {
+			final int xyz5 = regionIndexToPackedSectionPos(i);
+			final int rx = xyz5 & 31;
+			final int ry = (xyz5 >> 5) & 31;
+			final int rz = xyz5 >> 10;
+			final int x = rx - REGION_PADDING + originX;
+			final int y = ry - REGION_PADDING + originY;
+			final int z = rz - REGION_PADDING + originZ;
+
+			if (i >= INTERIOR_STATE_COUNT || !isAoUniform) {
+				setAoLevel(i, source.aoLevel(i, x, y, z));
+			}
+
+			if (!isSmoothed || isOuterPadding(rx) || isOuterPadding(ry) || isOuterPadding(rz)) {
+				setBrightness(i, source.brightness(i, x, y, z));
+			}
+		}
+	}
+
+	/** True for a coordinate with padding offset in the outermost layer of padding. */
+	private static boolean isOuterPadding(int paddedCoordinate) {
+		return paddedCoordinate == 0 || paddedCoordinate == 15 + REGION_PADDING * 2;
+	}
+
+	/** World lookups for {@link #capture}. Positions are given as region index and world coordinates. */
+	public interface Source {
+		/** AO level, 0-255. */
+		int aoLevel(int regionIndex, int x, int y, int z);
+
+		/** Packed block and sky light. */
+		int brightness(int regionIndex, int x, int y, int z);
+	}
+}
@@ -23,27 +23,48 @@ package grondag.canvas.terrain.region.input;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.EXTERIOR_STATE_COUNT;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Holder;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.DataLayer;
 import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.PalettedContainerRO;
+import net.minecraft.world.level.lighting.LayerLightEventListener;
+import net.minecraft.world.level.lighting.LevelLightEngine;
 
 import io.vram.frex.api.world.BlockEntityRenderData;
 import io.vram.frex.api.world.RenderRegionBakeListener;
 import io.vram.frex.impl.world.ChunkRenderConditionContext;
 
+import grondag.canvas.mixinterface.PalettedContainerExt;
 import grondag.canvas.perf.ChunkRebuildCounters;
+import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
+import grondag.canvas.terrain.util.BlockStateTable;
 
 /**
  * Serves as a container to capture world state data on the main thread as quickly as possible
  * for later consumption on possibly non-render threads for terrain render region rebuild.
+ * Only references are captured on the main thread. Section content is captured as snapshots
+ * that the main thread copies before changing, and light as layers that the light engine
+ * replaces instead of changing once published. Nothing captured changes after capture.
  *
  * <p>Also serves as a state indicator for rebuild activity.
  */
@@ -58,6 +79,41 @@ public class PackedInputRegion extends AbstractInputRegion {
 	final ObjectArrayList<Object> renderData = new ObjectArrayList<>();
 	final ShortArrayList blockEntityPos = new ShortArrayList();
 
+	/** Block states of the region and adjacent sections by {@link #sectionIndex}, null where no section exists. */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	final PalettedContainer.Data<BlockState>[] sectionStates = new PalettedContainer.Data[27];
+	/** Stored block light of the region and adjacent sections by {@link #sectionIndex}, null if none. */
+	final DataLayer[] blockLight = new DataLayer[27];
+	/** Stored sky light of the region and adjacent sections by {@link #sectionIndex}, null if none. */
+	final DataLayer[] skyLight = new DataLayer[27];
+
+	/**
+	 * For sections without stored sky light, the stored sky light of the nearest section
+	 * above that has it. Only its bottom plane applies. Null if there is none, in which
+	 * case sky light is full.
+	 */
+	final DataLayer[] inheritedSkyLight = new DataLayer[27];
+	boolean hasSkyLight;
+
+	/**
+	 * Biomes of the region and adjacent sections by {@link #sectionIndex}, null where no section exists.
+	 * Client sections replace biome containers instead of changing them, so these are snapshots.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	final PalettedContainerRO<Holder<Biome>>[] sectionBiomes = new PalettedContainerRO[27];
+
+	/** Identity of captured biome containers. */
+	private long biomeHash;
+
+	/**
+	 * State of every block in the main section if it has only one state and there
+	 * are no block entities or bake listeners, otherwise null.
+	 */
+	private @Nullable BlockState uniformState;
+
+	/** Position and identity of captured block entities, independent of order. */
+	private long blockEntityHash;
+
 	public static PackedInputRegion claim(ClientLevel world, BlockPos origin) {
 		final PackedInputRegion result = POOL.poll();
 		return (result == null ? new PackedInputRegion() : result).prepare(world, origin);
@@ -101,13 +157,17 @@ public class PackedInputRegion extends AbstractInputRegion {
 
 		final PackedInputRegion result;
 
-		if (mainChunk.isEmpty() && bakeListenerContext.listeners.isEmpty()) {
+		chunks[1 | (1 << 2)] = mainChunk;
+		final LevelChunkSection mainSection = mainChunk.isEmpty() ? null : getSection(1, 1, 1);
+
+		// Sections with only air render nothing and are handled the same as empty chunks.
+		// Common in the sky and in caves, and don't need block entity or neighbor capture.
+		if ((mainSection == null || mainSection.hasOnlyAir()) && bakeListenerContext.listeners.isEmpty()) {
 			release();
 			result = SignalInputRegion.EMPTY;
 		} else {
 			// WIP: move this to input region?
 			captureBlockEntities(mainChunk);
-			chunks[1 | (1 << 2)] = mainChunk;
 			chunks[0 | (0 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 0);
 			chunks[0 | (1 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 1);
 			chunks[0 | (2 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 2);
@@ -117,6 +177,8 @@ public class PackedInputRegion extends AbstractInputRegion {
 			chunks[2 | (1 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 1);
 			chunks[2 | (2 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 2);
 
+			captureSections();
+			uniformState = blockEntityPos.isEmpty() && bakeListenerContext.listeners.isEmpty() ? singleState(sectionStates[sectionIndex(1, 1, 1)]) : null;
 			result = this;
 		}
 
@@ -127,11 +189,142 @@ public class PackedInputRegion extends AbstractInputRegion {
 		return result;
 	}
 
+	/**
+	 * Takes snapshots of section states and light layers. Neither copies any content,
+	 * which happens later, off the main thread.
+	 */
+	@SuppressWarnings("unchecked")
+	private void captureSections() {
+		final LevelLightEngine lightEngine = world.getLightEngine();
+		final LayerLightEventListener blockListener = lightEngine.getLayerListener(LightLayer.BLOCK);
+		final LayerLightEventListener skyListener = lightEngine.getLayerListener(LightLayer.SKY);
+		final boolean hasSkyLight = world.dimensionType().hasSkyLight();
+		final int sectionBaseY = (originY >> 4) - 1;
+		this.hasSkyLight = hasSkyLight;
+		long biomeHash = 0;
+
+		for (int x = 0; x < 3; ++x) {
+			for (int z = 0; z < 3; ++z) {
+				// top down so that inherited sky light comes from the section above
+				for (int y = 2; y >= 0; --y) {
+					final int i = sectionIndex(x, y, z);
+					final LevelChunkSection section = getSection(x, y, z);
+					sectionStates[i] = section == null ? null : ((PalettedContainerExt<BlockState>) section.getStates()).canvas_snapshot();
+					sectionBiomes[i] = section == null ? null : section.getBiomes();
+					biomeHash = biomeHash * 31 + System.identityHashCode(sectionBiomes[i]);
+
+					final SectionPos sectionPos = SectionPos.of(chunkBaseX + x, sectionBaseY + y, chunkBaseZ + z);
+					blockLight[i] = blockListener.getDataLayerData(sectionPos);
+					final DataLayer sky = skyListener.getDataLayerData(sectionPos);
+					skyLight[i] = sky;
+
+					if (sky != null || !hasSkyLight) {
+						inheritedSkyLight[i] = null;
+					} else if (y == 2) {
+						inheritedSkyLight[i] = findSkyLightAbove(skyListener, sectionPos);
+					} else {
+						final int above = i + sectionIndex(0, 1, 0);
+						inheritedSkyLight[i] = skyLight[above] == null ? inheritedSkyLight[above] : skyLight[above];
+					}
+				}
+			}
+		}
+
+		this.biomeHash = HashCommon.mix(biomeHash);
+	}
+
+	private @Nullable DataLayer findSkyLightAbove(LayerLightEventListener skyListener, SectionPos sectionPos) {
+		final int maxSection = world.getMaxSection();
+
+		for (int y = sectionPos.y() + 1; y < maxSection; ++y) {
+			final DataLayer result = skyListener.getDataLayerData(SectionPos.of(sectionPos.x(), y, sectionPos.z()));
+
+			if (result != null) {
+				return result;
+			}
+		}
+
+		return null;
+	}
+
+	private static @Nullable BlockState singleState(@Nullable PalettedContainer.Data<BlockState> data) {
+		if (data == null) {
+			return null;
+		}
+
+		final Palette<BlockState> palette = data.palette();
+
+		// Every stored id is a valid palette index, so a single entry means every block is that state.
+		return palette.getSize() == 1 ? palette.valueFor(0) : null;
+	}
+
+	/**
+	 * True if the main section is a single opaque state and the adjacent plane of each face
+	 * neighbor is also entirely opaque. Nothing in such a section can be visible, and its
+	 * occlusion result is always {@link RegionOcclusionCalculator#FULL_OCCLUSION_RESULT},
+	 * so world capture, occlusion and block iteration can all be skipped.
+	 *
+	 * <p>Meant to be called off-thread at build time, like {@link InputRegion#prepare(PackedInputRegion)}.
+	 */
+	public boolean isEnclosedUniform() {
+		final BlockState uniformState = this.uniformState;
+
+		final PalettedContainer.Data<BlockState>[] sectionStates = this.sectionStates;
+
+		return uniformState != null && isOpaque(uniformState)
+				&& isPlaneOpaque(sectionStates[sectionIndex(0, 1, 1)], 15 * SX, SY, SZ)
+				&& isPlaneOpaque(sectionStates[sectionIndex(2, 1, 1)], 0, SY, SZ)
+				&& isPlaneOpaque(sectionStates[sectionIndex(1, 1, 0)], 15 * SZ, SX, SY)
+				&& isPlaneOpaque(sectionStates[sectionIndex(1, 1, 2)], 0, SX, SY)
+				&& isPlaneOpaque(sectionStates[sectionIndex(1, 0, 1)], 15 * SY, SX, SZ)
+				&& isPlaneOpaque(sectionStates[sectionIndex(1, 2, 1)], 0, SX, SZ);
+	}
+
+	// Strides of x, y, z within the index space of a section palette container.
+	private static final int SX = 1;
+	private static final int SY = 256;
+	private static final int SZ = 16;
+
+	private static boolean isPlaneOpaque(@Nullable PalettedContainer.Data<BlockState> data, int origin, int iStride, int jStride) {
+		if (data == null) {
+			return false;
+		}
+
+		final Palette<BlockState> palette = data.palette();
+
+		if (palette.getSize() == 1) {
+			return isOpaque(palette.valueFor(0));
+		}
+
+		final BitStorage storage = data.storage();
+
+		for (int i = 0; i < 16; ++i) {
+			for (int j = 0; j < 16; ++j) {
+				if (!isOpaque(palette.valueFor(storage.get(origin + i * iStride + j * jStride)))) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private static final int OPAQUE_FLAGS = BlockStateTable.IS_VISIBLE | BlockStateTable.IS_SOLID_RENDER | BlockStateTable.STATIC_SOLIDITY;
+
+	/**
+	 * Matches the test for closed positions in {@link RegionOcclusionCalculator} but only accepts
+	 * states without dynamic shape so the result does not depend on position.
+	 */
+	private static boolean isOpaque(BlockState blockState) {
+		return (BlockStateTable.get().flags(blockState) & OPAQUE_FLAGS) == OPAQUE_FLAGS;
+	}
+
 	private void captureBlockEntities(LevelChunk mainChunk) {
 		renderDataPos.clear();
 		renderData.clear();
 		blockEntityPos.clear();
 		blockEntities.clear();
+		long blockEntityHash = 0;
 		final int yCheck = (originY >> 4);
 
 		for (final Map.Entry<BlockPos, BlockEntity> entry : mainChunk.getBlockEntities().entrySet()) {
@@ -147,6 +340,7 @@ public class PackedInputRegion extends AbstractInputRegion {
 
 			blockEntityPos.add(key);
 			blockEntities.add(be);
+			blockEntityHash += HashCommon.mix(((long) key << 32) | System.identityHashCode(be));
 
 			final Object rd = BlockEntityRenderData.get(be);
 
@@ -155,6 +349,21 @@ public class PackedInputRegion extends AbstractInputRegion {
 				renderData.add(rd);
 			}
 		}
+
+		this.blockEntityHash = blockEntityHash;
+	}
+
+	/**
+	 * Changes when block entities of the main section are added, removed or replaced,
+	 * even if block states are the same. Build state retains block entity instances.
+	 */
+	public long blockEntityHash() {
+		return blockEntityHash;
+	}
+
+	/** Changes when a chunk in or next to the region receives new biome data. */
+	public long biomeHash() {
+		return biomeHash;
 	}
 
 	public void release() {
@@ -166,6 +375,12 @@ public class PackedInputRegion extends AbstractInputRegion {
 
 		blockEntities.clear();
 		renderData.clear();
+		uniformState = null;
+		Arrays.fill(sectionStates, null);
+		Arrays.fill(blockLight, null);
+		Arrays.fill(skyLight, null);
+		Arrays.fill(inheritedSkyLight, null);
+		Arrays.fill(sectionBiomes, null);
 
 		release(this);
 	}
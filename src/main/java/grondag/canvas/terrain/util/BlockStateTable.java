@@ -0,0 +1,202 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.util;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.block.BlockModelShaper;
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.client.resources.model.SimpleBakedModel;
+import net.minecraft.client.resources.model.WeightedBakedModel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.random.WeightedEntry;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.RenderShape;
+import net.minecraft.world.level.block.state.BlockState;
+
+import grondag.canvas.mixinterface.BlockStateExt;
+import grondag.canvas.mixinterface.WeightedBakedModelExt;
+
+/**
+ * Properties of every block state needed during terrain bake, resolved once at
+ * resource reload so that the bake loops do an array load instead of several
+ * virtual calls per block. Indexed by the block state registry id, which is stored
+ * on each state to avoid a map lookup.
+ *
+ * <p>Solidity and AO level are only cached for states without dynamic shape. For others
+ * {@link #STATIC_SOLIDITY} is not set and callers must test the state at its position.
+ *
+ * <p>Instances are immutable and replaced on reload. Terrain build threads should
+ * retrieve the current instance once per region and use it for the whole build.
+ */
+public final class BlockStateTable {
+	/** Render shape is {@link RenderShape#MODEL}. */
+	public static final int RENDERS_MODEL = 1;
+
+	/** Fluid state is not empty. */
+	public static final int HAS_FLUID = 2;
+
+	/** Render shape is not invisible or has a fluid. Same as the occlusion test for positions that can render. */
+	public static final int IS_VISIBLE = 4;
+
+	/** Is a full opaque cube. Only meaningful if {@link #STATIC_SOLIDITY} is also set. */
+	public static final int IS_SOLID_RENDER = 8;
+
+	/** Offset type is not {@link Block.OffsetType#NONE}. */
+	public static final int HAS_OFFSET = 16;
+
+	/** Solidity does not depend on position because the block does not have dynamic shape. */
+	public static final int STATIC_SOLIDITY = 32;
+
+	/**
+	 * Model is a vanilla model with fixed quads, or a weighted choice of them.
+	 * Such models can use {@link StaticQuadCache} if also not offset.
+	 */
+	public static final int STATIC_MODEL = 64;
+
+	private static volatile BlockStateTable instance = new BlockStateTable(new byte[0], new byte[0], new BakedModel[0]);
+
+	private final byte[] flags;
+	private final byte[] aoLevels;
+	private final BakedModel[] models;
+
+	private BlockStateTable(byte[] flags, byte[] aoLevels, BakedModel[] models) {
+		this.flags = flags;
+		this.aoLevels = aoLevels;
+		this.models = models;
+	}
+
+	public static BlockStateTable get() {
+		return instance;
+	}
+
+	/** Call after models are baked. */
+	public static void reload() {
+		final BlockModelShaper modelShaper = Minecraft.getInstance().getModelManager().getBlockModelShaper();
+		final int size = Block.BLOCK_STATE_REGISTRY.size();
+		final byte[] flags = new byte[size];
+		final byte[] aoLevels = new byte[size];
+		final BakedModel[] models = new BakedModel[size];
+
+		for (final BlockState blockState : Block.BLOCK_STATE_REGISTRY) {
+			final int index = Block.BLOCK_STATE_REGISTRY.getId(blockState);
+			((BlockStateExt) blockState).canvas_setStateIndex(index);
+			final BakedModel model = modelShaper.getBlockModel(blockState);
+			flags[index] = (byte) (computeFlags(blockState) | (isStaticModel(model) ? STATIC_MODEL : 0));
+			aoLevels[index] = (byte) aoLevel(blockState, EmptyBlockGetter.INSTANCE, BlockPos.ZERO);
+			models[index] = model;
+		}
+
+		instance = new BlockStateTable(flags, aoLevels, models);
+	}
+
+	private static int computeFlags(BlockState blockState) {
+		int result = 0;
+
+		final RenderShape renderShape = blockState.getRenderShape();
+		final boolean hasFluid = !blockState.getFluidState().isEmpty();
+
+		if (renderShape == RenderShape.MODEL) {
+			result |= RENDERS_MODEL;
+		}
+
+		if (hasFluid) {
+			result |= HAS_FLUID;
+		}
+
+		if (renderShape != RenderShape.INVISIBLE || hasFluid) {
+			result |= IS_VISIBLE;
+		}
+
+		if (blockState.getOffsetType() != Block.OffsetType.NONE) {
+			result |= HAS_OFFSET;
+		}
+
+		if (!blockState.getBlock().hasDynamicShape()) {
+			result |= STATIC_SOLIDITY;
+
+			if (blockState.isSolidRender(EmptyBlockGetter.INSTANCE, BlockPos.ZERO)) {
+				result |= IS_SOLID_RENDER;
+			}
+		}
+
+		return result;
+	}
+
+	/** Exact classes only, because subclasses in mods may generate quads. */
+	private static boolean isStaticModel(BakedModel model) {
+		if (model.getClass() == WeightedBakedModel.class) {
+			final WeightedBakedModelExt weighted = (WeightedBakedModelExt) model;
+
+			if (weighted.canvas_totalWeight() <= 0) {
+				return false;
+			}
+
+			for (final WeightedEntry.Wrapper<BakedModel> entry : weighted.canvas_entries()) {
+				if (entry.getData().getClass() != SimpleBakedModel.class) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		return model.getClass() == SimpleBakedModel.class;
+	}
+
+	public int flags(BlockState blockState) {
+		final int index = ((BlockStateExt) blockState).canvas_stateIndex();
+		// states not yet indexed are only possible before the first reload
+		return index >= 0 && index < flags.length ? flags[index] : computeFlags(blockState);
+	}
+
+	public BakedModel model(BlockState blockState) {
+		final int index = ((BlockStateExt) blockState).canvas_stateIndex();
+		return index >= 0 && index < models.length ? models[index] : Minecraft.getInstance().getBlockRenderer().getBlockModel(blockState);
+	}
+
+	/** Uses cached solidity when it is position-independent, otherwise tests the state at the given position. */
+	public static boolean isSolidRender(int flags, BlockState blockState, BlockGetter world, BlockPos pos) {
+		return (flags & STATIC_SOLIDITY) == 0 ? blockState.isSolidRender(world, pos) : (flags & IS_SOLID_RENDER) != 0;
+	}
+
+	/**
+	 * AO level of the state at the given position, 0-255. Uses the cached level when it is
+	 * position-independent. Shade brightness depends on the collision shape, which
+	 * only varies by position for blocks with dynamic shape.
+	 */
+	public int aoLevel(int flags, BlockState blockState, BlockGetter world, BlockPos pos) {
+		if ((flags & STATIC_SOLIDITY) != 0) {
+			final int index = ((BlockStateExt) blockState).canvas_stateIndex();
+
+			if (index >= 0 && index < aoLevels.length) {
+				return aoLevels[index] & 0xFF;
+			}
+		}
+
+		return aoLevel(blockState, world, pos);
+	}
+
+	private static int aoLevel(BlockState blockState, BlockGetter world, BlockPos pos) {
+		return blockState.getLightEmission() == 0 ? Math.round(255f * blockState.getShadeBrightness(world, pos)) : 255;
+	}
+}
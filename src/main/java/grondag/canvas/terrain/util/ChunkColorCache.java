@@ -20,187 +20,263 @@
 
 package grondag.canvas.terrain.util;
 
-import java.util.function.Function;
+import it.unimi.dsi.fastutil.HashCommon;
 
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.client.renderer.BiomeColors;
 import net.minecraft.core.BlockPos.MutableBlockPos;
-import net.minecraft.core.Holder;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.ColorResolver;
+import net.minecraft.world.level.FoliageColor;
+import net.minecraft.world.level.GrassColor;
 import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.biome.BiomeManager;
-import net.minecraft.world.level.chunk.ChunkAccess;
 import net.minecraft.world.level.chunk.LevelChunk;
 
 import grondag.canvas.mixinterface.LevelChunkExt;
 
-//FEAT: per-vertex blending (quality)
-public class ChunkColorCache implements BiomeManager.NoiseBiomeSource {
-	private static final Minecraft mc = Minecraft.getInstance();
-	private static int VERSION = 0;
-	private final LevelChunk chunk;
-	private final ClientLevel world;
-	private final int chunkX;
-	private final int chunkZ;
-	private final int version;
-	private final BiomeColorCache grassCache = new BiomeColorCache(BiomeColors.GRASS_COLOR_RESOLVER, c -> c.grassCache);
-	private final BiomeColorCache foliageCache = new BiomeColorCache(BiomeColors.FOLIAGE_COLOR_RESOLVER, c -> c.foliageCache);
-	private final BiomeColorCache waterCache = new BiomeColorCache(BiomeColors.WATER_COLOR_RESOLVER, c -> c.waterCache);
-	private final MutableBlockPos searchPos = new MutableBlockPos();
-
-	public ChunkColorCache(ClientLevel world, LevelChunk chunk) {
-		this.world = world;
-		this.chunk = chunk;
-		version = VERSION;
+//FEAT: per-vertex blending (quality) - planes support it, encoder doesn't use it yet
+/**
+ * Blended grass, foliage and water colors of a chunk column, shared by every
+ * region in the column. Colors are computed for all columns at once, off the main
+ * thread, from the biome snapshot of the region that first needs them. Biomes are
+ * sampled at the height of that region, so like the per-column cache this replaces,
+ * vertical biome changes within a chunk don't affect color.
+ *
+ * <p>Planes include one column of the adjacent chunks on each side. That covers
+ * the padding positions next to the region and makes colors at every block corner
+ * available for per-vertex blending. See {@link #getVertexColor(int, int, ColorResolver, BiomeManager, int)}.
+ *
+ * <p>Colors are discarded for one chunk and its neighbors when the chunk receives new
+ * data, and for all chunks only when the color maps or blend radius change.
+ */
+public class ChunkColorCache {
+	/** Columns outside the chunk on each side included in planes. */
+	private static final int APRON = 1;
+	private static final int PLANE_DIAMETER = 16 + APRON * 2;
+	private static final int PLANE_SIZE = PLANE_DIAMETER * PLANE_DIAMETER;
+
+	/** Bit offsets of color channels in packed channel sums, wide enough for any blend radius. */
+	private static final int GREEN_SHIFT = 21;
+	private static final int RED_SHIFT = 42;
+
+	private static volatile int generation = 0;
+	private static long fingerprint = 0;
+
+	private final int minX;
+	private final int minZ;
+	private final int generationAtCreation;
+	private volatile Planes planes;
+
+	public ChunkColorCache(LevelChunk chunk) {
 		final ChunkPos pos = chunk.getPos();
-		chunkX = pos.x;
-		chunkZ = pos.z;
+		minX = pos.getMinBlockX();
+		minZ = pos.getMinBlockZ();
+		generationAtCreation = generation;
 	}
 
 	public static ChunkColorCache get(LevelChunk chunk) {
 		return ((LevelChunkExt) chunk).canvas_colorCache();
 	}
 
-	public static void invalidate() {
-		VERSION++;
-	}
+	/**
+	 * Call on render reload. Discards colors of all chunks only if
+	 * something that affects them for every biome has changed.
+	 */
+	public static void reload() {
+		final long newFingerprint = computeFingerprint();
 
-	public boolean isInvalid() {
-		return version < VERSION;
+		if (newFingerprint != fingerprint) {
+			fingerprint = newFingerprint;
+			++generation;
+		}
 	}
 
-	public Biome getBiome(int x, int y, int z) {
-		return world.getBiomeManager().getBiome(searchPos.set(x, y, z)).value();
+	/** Blend radius and a sampling of the color maps, which resource packs can replace. */
+	private static long computeFingerprint() {
+		long result = HashCommon.mix(Minecraft.getInstance().options.biomeBlendRadius().get() + 1L);
+
+		for (int t = 0; t <= 32; ++t) {
+			for (int d = 0; d <= 32; ++d) {
+				result = result * 31 + GrassColor.get(t / 32.0, d / 32.0);
+				result = result * 31 + FoliageColor.get(t / 32.0, d / 32.0);
+			}
+		}
+
+		return HashCommon.mix(result);
 	}
 
-	private LevelChunk getChunk(int cx, int cz) {
-		if (cx == chunkX && cz == chunkZ) {
-			return chunk;
-		} else {
-			return world.getChunk(cx, cz);
+	/**
+	 * Discards colors of the chunk at the given position and of its neighbors, which blend with it.
+	 * Call on the main thread when chunk data is received, because biomes may have changed.
+	 */
+	public static void invalidateAround(ClientLevel world, int chunkX, int chunkZ) {
+		for (int x = chunkX - 1; x <= chunkX + 1; ++x) {
+			for (int z = chunkZ - 1; z <= chunkZ + 1; ++z) {
+				final LevelChunk chunk = world.getChunkSource().getChunkNow(x, z);
+
+				if (chunk != null) {
+					((LevelChunkExt) chunk).canvas_clearColorCache();
+				}
+			}
 		}
 	}
 
-	@Override
-	public Holder<Biome> getNoiseBiome(int x, int y, int z) {
-		final ChunkAccess chunk = getChunk(x >> 2, z >> 2);
+	public boolean isInvalid() {
+		return generationAtCreation != generation;
+	}
 
-		if (chunk != null) {
-			return chunk.getNoiseBiome(x, y, z);
+	/**
+	 * Blended color at the given block column. Columns outside the chunk
+	 * and its apron get the color of the nearest column in the apron.
+	 *
+	 * @param biomes Biome source to use if colors aren't yet computed.
+	 * Must cover the chunk and adjacent chunks.
+	 * @param y Height at which biomes are sampled if colors aren't yet computed.
+	 * @return Blended color, or -1 for color resolvers without cached colors.
+	 */
+	public int getColor(int x, int z, ColorResolver colorResolver, BiomeManager biomes, int y) {
+		final int[] plane = plane(colorResolver, biomes, y);
+		return plane == null ? -1 : plane[planeIndex(x - minX, z - minZ)];
+	}
+
+	/**
+	 * Color at the corner of block columns with the smallest coordinates at the given position,
+	 * the average of the four columns that meet there. For per-vertex blending.
+	 * Valid for corners of columns in the chunk. Parameters and result are the same as
+	 * {@link #getColor(int, int, ColorResolver, BiomeManager, int)}.
+	 */
+	public int getVertexColor(int x, int z, ColorResolver colorResolver, BiomeManager biomes, int y) {
+		final int[] plane = plane(colorResolver, biomes, y);
+
+		if (plane == null) {
+			return -1;
 		}
 
-		return world.getUncachedNoiseBiome(x, y, z);
+		final int i = planeIndex(x - minX, z - minZ);
+		final long sum = unpack(plane[i]) + unpack(plane[i - 1]) + unpack(plane[i - PLANE_DIAMETER]) + unpack(plane[i - 1 - PLANE_DIAMETER]);
+		return pack(sum, 4);
 	}
 
-	public int getColor(int x, int y, int z, ColorResolver colorResolver) {
+	private int[] plane(ColorResolver colorResolver, BiomeManager biomes, int y) {
+		Planes planes = this.planes;
+
+		if (planes == null) {
+			planes = new Planes(minX, minZ, y, biomes);
+			// Another thread may compute the same colors concurrently, either result is fine
+			this.planes = planes;
+		}
+
 		if (colorResolver == BiomeColors.GRASS_COLOR_RESOLVER) {
-			return grassCache.getColor(x, y, z);
+			return planes.grass;
 		} else if (colorResolver == BiomeColors.FOLIAGE_COLOR_RESOLVER) {
-			return foliageCache.getColor(x, y, z);
+			return planes.foliage;
 		} else if (colorResolver == BiomeColors.WATER_COLOR_RESOLVER) {
-			return waterCache.getColor(x, y, z);
+			return planes.water;
 		} else {
-			return -1;
+			return null;
 		}
 	}
 
-	private class BiomeColorCache {
-		private static final int BASE_INDEX = 0;
-		private static final int BASE_CONTROL = BASE_INDEX + 256;
-		private static final int BLENDED_INDEX = BASE_CONTROL + 8;
-		private static final int BLENDED_CONTROL = BLENDED_INDEX + 256;
-		private final ColorResolver colorResolver;
-		private final Function<ChunkColorCache, BiomeColorCache> cacheFunc;
-		private final int[] data = new int[512 + 16];
-
-		private BiomeColorCache(ColorResolver colorResolver, Function<ChunkColorCache, BiomeColorCache> cacheFunc) {
-			this.colorResolver = colorResolver;
-			this.cacheFunc = cacheFunc;
-		}
+	private static int planeIndex(int x, int z) {
+		x = Math.max(-APRON, Math.min(15 + APRON, x)) + APRON;
+		z = Math.max(-APRON, Math.min(15 + APRON, z)) + APRON;
+		return x + z * PLANE_DIAMETER;
+	}
 
-		private int getBaseColor(int x, int y, int z) {
-			final int cx = x >> 4;
-			final int cz = z >> 4;
+	/** Separates color channels so that colors can be summed without carry between channels. */
+	private static long unpack(int color) {
+		return (color & 0xFF) | ((long) ((color >> 8) & 0xFF) << GREEN_SHIFT) | ((long) ((color >> 16) & 0xFF) << RED_SHIFT);
+	}
 
-			if (cx == chunkX && cz == chunkZ) {
-				return getLocalBaseColor(x, y, z);
-			} else {
-				return cacheFunc.apply(get(world.getChunk(cx, cz))).getLocalBaseColor(x, y, z);
-			}
-		}
+	/** Color that is the average of the given number of summed colors. */
+	private static int pack(long sum, int count) {
+		final int r = (int) (sum >>> RED_SHIFT) / count;
+		final int g = (int) ((sum >>> GREEN_SHIFT) & 0x1FFFFF) / count;
+		final int b = (int) (sum & 0x1FFFFF) / count;
+		return (r & 255) << 16 | (g & 255) << 8 | b & 255;
+	}
+
+	private static class Planes {
+		private final int[] grass;
+		private final int[] foliage;
+		private final int[] water;
+
+		private Planes(int minX, int minZ, int y, BiomeManager biomes) {
+			final int radius = Minecraft.getInstance().options.biomeBlendRadius().get();
+			final int margin = APRON + radius;
+			final int diameter = PLANE_DIAMETER + radius * 2;
+			final Biome[] biomeGrid = new Biome[diameter * diameter];
+			final MutableBlockPos searchPos = new MutableBlockPos();
+			final int baseX = minX - margin;
+			final int baseZ = minZ - margin;
 
-		private int getLocalBaseColor(int x, int y, int z) {
-			final int index = (x & 0xF) | ((z & 0xF) << 4);
-			final int controlIndex = BASE_CONTROL + (index >> 5);
-			final int controlMask = 1 << (index & 31);
-
-			if ((data[controlIndex] & controlMask) == 0) {
-				final int result = computeLocalBaseColor(x, y, z);
-				data[controlIndex] |= controlMask;
-				data[index] = result;
-				return result;
-			} else {
-				return data[index];
+			for (int z = 0; z < diameter; ++z) {
+				for (int x = 0; x < diameter; ++x) {
+					biomeGrid[x + z * diameter] = biomes.getBiome(searchPos.set(baseX + x, y, baseZ + z)).value();
+				}
 			}
-		}
 
-		private int computeLocalBaseColor(int x, int y, int z) {
-			return colorResolver.getColor(getBiome(x, y, z), x, z);
+			grass = blend(BiomeColors.GRASS_COLOR_RESOLVER, biomeGrid, baseX, baseZ, radius);
+			foliage = blend(BiomeColors.FOLIAGE_COLOR_RESOLVER, biomeGrid, baseX, baseZ, radius);
+			water = blend(BiomeColors.WATER_COLOR_RESOLVER, biomeGrid, baseX, baseZ, radius);
 		}
 
-		private int getColor(int x, int y, int z) {
-			final int cx = x >> 4;
-			final int cz = z >> 4;
+		/**
+		 * Average of each column's color and the colors of columns within blend radius on both axes.
+		 * Sums along one axis and then the other, so cost doesn't grow with the square of the radius.
+		 */
+		private static int[] blend(ColorResolver colorResolver, Biome[] biomeGrid, int baseX, int baseZ, int radius) {
+			final int diameter = PLANE_DIAMETER + radius * 2;
+			final int width = radius * 2 + 1;
+			final long[] colors = new long[diameter * diameter];
 
-			if (cx == chunkX && cz == chunkZ) {
-				return getLocalBlendedColor(x, y, z);
-			} else {
-				return cacheFunc.apply(get(world.getChunk(cx, cz))).getLocalBlendedColor(x, y, z);
+			for (int z = 0; z < diameter; ++z) {
+				for (int x = 0; x < diameter; ++x) {
+					final int i = x + z * diameter;
+					colors[i] = unpack(colorResolver.getColor(biomeGrid[i], baseX + x, baseZ + z));
+				}
 			}
-		}
 
-		private int getLocalBlendedColor(int x, int y, int z) {
-			final int index = (x & 0xF) | ((z & 0xF) << 4);
-			final int controlIndex = BLENDED_CONTROL + (index >> 5);
-			final int controlMask = 1 << (index & 31);
-
-			if ((data[controlIndex] & controlMask) == 0) {
-				final int result = computeLocalBlendedColor(x, y, z);
-				data[controlIndex] |= controlMask;
-				data[index + BLENDED_INDEX] = result;
-				return result;
-			} else {
-				return data[index + BLENDED_INDEX];
+			// sums along x, indexed by plane x and grid z
+			final long[] rowSums = new long[PLANE_DIAMETER * diameter];
+
+			for (int z = 0; z < diameter; ++z) {
+				final int rowStart = z * diameter;
+				long sum = 0;
+
+				for (int x = 0; x < width; ++x) {
+					sum += colors[rowStart + x];
+				}
+
+				rowSums[z * PLANE_DIAMETER] = sum;
+
+				for (int x = 1; x < PLANE_DIAMETER; ++x) {
+					sum += colors[rowStart + x + width - 1] - colors[rowStart + x - 1];
+					rowSums[x + z * PLANE_DIAMETER] = sum;
+				}
 			}
-		}
 
-		private int computeLocalBlendedColor(int xIn, int yIn, int zIn) {
-			final int radius = mc.options.biomeBlendRadius().get();
-
-			if (radius == 0) {
-				return getLocalBaseColor(xIn, yIn, zIn);
-			} else {
-				final int sampleCount = (radius * 2 + 1) * (radius * 2 + 1);
-				int r = 0;
-				int g = 0;
-				int b = 0;
-
-				final int xMax = xIn + radius;
-				final int zMax = zIn + radius;
-
-				for (int x = xIn - radius; x <= xMax; x++) {
-					for (int z = zIn - radius; z <= zMax; z++) {
-						final int color = getBaseColor(x, yIn, z);
-						g += (color >> 8) & 255;
-						r += (color >> 16) & 255;
-						b += color & 255;
-					}
+			final int[] result = new int[PLANE_SIZE];
+			final int count = width * width;
+
+			for (int x = 0; x < PLANE_DIAMETER; ++x) {
+				long sum = 0;
+
+				for (int z = 0; z < width; ++z) {
+					sum += rowSums[x + z * PLANE_DIAMETER];
 				}
 
-				return (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+				result[x] = pack(sum, count);
+
+				for (int z = 1; z < PLANE_DIAMETER; ++z) {
+					sum += rowSums[x + (z + width - 1) * PLANE_DIAMETER] - rowSums[x + (z - 1) * PLANE_DIAMETER];
+					result[x + z * PLANE_DIAMETER] = pack(sum, count);
+				}
 			}
+
+			return result;
 		}
 	}
 }
@@ -20,10 +20,8 @@
 
 package grondag.canvas.terrain.util;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -35,16 +33,11 @@ import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
 /**
  * Simple executor service with ability to submit privileged tasks
  * that run before non-privileged tasks that have not yet started, plus
- * distance-sorted execution.  Privilege is indicated by distance == -1
+ * distance-sorted execution via {@link DistanceRingTaskQueue}.  Privilege is indicated by distance == -1
  * and privileged tasks run in order of submission.
  */
 public class DedicatedTerrainExecutor extends AbstractExecutorService implements TerrainExecutor {
-	private final PriorityBlockingQueue<TerrainExecutorTask> queue = new PriorityBlockingQueue<>(1024, new Comparator<TerrainExecutorTask>() {
-		@Override
-		public int compare(TerrainExecutorTask o1, TerrainExecutorTask o2) {
-			return Integer.compare(o1.priority(), o2.priority());
-		}
-	});
+	private final DistanceRingTaskQueue queue = new DistanceRingTaskQueue();
 
 	private final int poolSize = threadCount();
 
@@ -96,6 +89,11 @@ public class DedicatedTerrainExecutor extends AbstractExecutorService implements
 		return queue.isEmpty();
 	}
 
+	@Override
+	public void invalidatePriorities() {
+		queue.advanceEpoch();
+	}
+
 	private class Worker implements Runnable {
 		private CanvasTerrainRenderContext context = new CanvasTerrainRenderContext();
 
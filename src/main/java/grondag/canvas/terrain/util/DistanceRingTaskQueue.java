@@ -0,0 +1,326 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Blocking queue for terrain tasks that buckets tasks by squared chunk
+ * distance ("ring") using direct addressing, similar to the approach in
+ * {@link grondag.canvas.terrain.occlusion.camera.CameraPotentiallyVisibleRegionSet}.
+ *
+ * <p>Task priority is not stable - it is the live camera distance of the region
+ * and changes when the camera moves to a new region. A heap ordered on a changing
+ * key goes stale, so instead tasks are placed in the bucket for their distance at
+ * the time of enqueue and all buckets are re-sorted in a single linear pass the
+ * first time the queue is accessed after {@link #advanceEpoch()} is called.
+ * Otherwise enqueue is a single append and dequeue finds the nearest non-empty
+ * bucket with a bitmap scan that touches at most a few words.
+ *
+ * <p>Privileged tasks (priority < 0) run before all others, in order of submission.
+ */
+public class DistanceRingTaskQueue {
+	/** Squared distances at or beyond this value share the last bucket. Covers the max loaded radius on all axes. */
+	private static final int BUCKET_COUNT = 4096;
+	private static final int WORD_COUNT = BUCKET_COUNT >> 6;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final ArrayDeque<TerrainExecutorTask> privileged = new ArrayDeque<>();
+
+	@SuppressWarnings("unchecked")
+	private final ArrayDeque<TerrainExecutorTask>[] buckets = new ArrayDeque[BUCKET_COUNT];
+
+	/** One bit per bucket, set when bucket is non-empty. */
+	private final long[] occupied = new long[WORD_COUNT];
+
+	/** Scratch list used during re-bucketing. Only accessed while holding lock. */
+	private final ObjectArrayList<TerrainExecutorTask> rebucketList = new ObjectArrayList<>();
+
+	/** Incremented when task priorities may have changed. Written by any thread. */
+	private volatile int epoch;
+
+	/** Epoch at which the current bucket assignments were made. Only accessed while holding lock. */
+	private int bucketEpoch;
+
+	/** All buckets below this word are known to be empty. Only accessed while holding lock. */
+	private int firstWord = WORD_COUNT;
+
+	private int size;
+	private int rebucketCount;
+
+	/** See {@link #nearestPriority()}. Written only while holding lock. */
+	private volatile int nearestPriority = Integer.MAX_VALUE;
+
+	/**
+	 * Signals that task priorities may have changed because the camera
+	 * moved to a different region. Buckets will be re-sorted lazily on
+	 * the next access, so is cheap to call and safe from any thread.
+	 */
+	public void advanceEpoch() {
+		++epoch;
+	}
+
+	public void add(TerrainExecutorTask task) {
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			insert(task);
+			++size;
+			publishNearestPriority();
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Retrieves and removes the nearest task, waiting if necessary. */
+	public TerrainExecutorTask take() throws InterruptedException {
+		final ReentrantLock lock = this.lock;
+		lock.lockInterruptibly();
+
+		try {
+			TerrainExecutorTask result;
+
+			while ((result = dequeue()) == null) {
+				notEmpty.await();
+			}
+
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Retrieves and removes the nearest task, waiting up to the given time if necessary. */
+	public @Nullable TerrainExecutorTask poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		final ReentrantLock lock = this.lock;
+		lock.lockInterruptibly();
+
+		try {
+			TerrainExecutorTask result;
+
+			while ((result = dequeue()) == null && nanos > 0) {
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Retrieves and removes the nearest task or returns null if empty. */
+	public @Nullable TerrainExecutorTask poll() {
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			privileged.clear();
+
+			for (int w = firstWord; w < WORD_COUNT; ++w) {
+				long bits = occupied[w];
+
+				while (bits != 0) {
+					buckets[(w << 6) + Long.numberOfTrailingZeros(bits)].clear();
+					bits &= bits - 1;
+				}
+
+				occupied[w] = 0;
+			}
+
+			firstWord = WORD_COUNT;
+			size = 0;
+			nearestPriority = Integer.MAX_VALUE;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Priority of the task at the head of the queue as of the last add or removal,
+	 * -1 if a privileged task is waiting, or {@link Integer#MAX_VALUE} if empty.
+	 * Squared distances beyond the last bucket are reported as the last bucket.
+	 *
+	 * <p>Does not lock, so other threads can compare queues without contending
+	 * with the owner. The result may be stale by the time it is used and doesn't
+	 * reflect priority changes until the queue is next accessed after {@link #advanceEpoch()}.
+	 */
+	public int nearestPriority() {
+		return nearestPriority;
+	}
+
+	/** Count of full re-bucket passes since creation. For debug output. */
+	public int rebucketCount() {
+		return rebucketCount;
+	}
+
+	private static int bucketIndex(int priority) {
+		return priority < BUCKET_COUNT ? priority : BUCKET_COUNT - 1;
+	}
+
+	/** Must hold lock. Does not update size. */
+	private void insert(TerrainExecutorTask task) {
+		final int priority = task.priority();
+
+		if (priority < 0) {
+			privileged.addLast(task);
+		} else {
+			final int index = bucketIndex(priority);
+			ArrayDeque<TerrainExecutorTask> bucket = buckets[index];
+
+			// most distances never occur, so buckets are allocated on first use
+			if (bucket == null) {
+				bucket = new ArrayDeque<>();
+				buckets[index] = bucket;
+			}
+
+			bucket.addLast(task);
+			final int word = index >> 6;
+			occupied[word] |= 1L << (index & 63);
+
+			if (word < firstWord) {
+				firstWord = word;
+			}
+		}
+	}
+
+	/** Must hold lock. */
+	private @Nullable TerrainExecutorTask dequeue() {
+		if (size == 0) {
+			return null;
+		}
+
+		--size;
+
+		if (bucketEpoch != epoch) {
+			rebucket();
+		}
+
+		if (!privileged.isEmpty()) {
+			final TerrainExecutorTask result = privileged.pollFirst();
+			publishNearestPriority();
+			return result;
+		}
+
+		final int index = firstOccupiedBucket();
+		final ArrayDeque<TerrainExecutorTask> bucket = buckets[index];
+		final TerrainExecutorTask result = bucket.pollFirst();
+
+		if (bucket.isEmpty()) {
+			occupied[index >> 6] &= ~(1L << (index & 63));
+		}
+
+		publishNearestPriority();
+		return result;
+	}
+
+	/** Must hold lock and have at least one non-privileged task. */
+	private int firstOccupiedBucket() {
+		final long[] occupied = this.occupied;
+		int w = firstWord;
+
+		while (occupied[w] == 0) {
+			++w;
+		}
+
+		firstWord = w;
+		return (w << 6) + Long.numberOfTrailingZeros(occupied[w]);
+	}
+
+	/** Must hold lock. */
+	private void publishNearestPriority() {
+		if (size == 0) {
+			nearestPriority = Integer.MAX_VALUE;
+		} else if (!privileged.isEmpty()) {
+			nearestPriority = -1;
+		} else {
+			nearestPriority = firstOccupiedBucket();
+		}
+	}
+
+	/**
+	 * Moves every non-privileged task to the bucket for its current priority.
+	 * Tasks that stay in the same ring keep their relative order. Must hold lock.
+	 */
+	private void rebucket() {
+		bucketEpoch = epoch;
+		++rebucketCount;
+
+		final ObjectArrayList<TerrainExecutorTask> list = rebucketList;
+
+		for (int w = firstWord; w < WORD_COUNT; ++w) {
+			long bits = occupied[w];
+
+			while (bits != 0) {
+				final ArrayDeque<TerrainExecutorTask> bucket = buckets[(w << 6) + Long.numberOfTrailingZeros(bits)];
+				list.addAll(bucket);
+				bucket.clear();
+				bits &= bits - 1;
+			}
+
+			occupied[w] = 0;
+		}
+
+		firstWord = WORD_COUNT;
+		final int limit = list.size();
+
+		for (int i = 0; i < limit; ++i) {
+			insert(list.get(i));
+		}
+
+		list.clear();
+	}
+}
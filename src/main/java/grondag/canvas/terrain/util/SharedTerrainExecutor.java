@@ -21,11 +21,9 @@
 package grondag.canvas.terrain.util;
 
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,16 +34,11 @@ import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
 /**
  * Simple executor service with ability to submit privileged tasks
  * that run before non-privileged tasks that have not yet started, plus
- * distance-sorted execution.  Privilege is indicated by distance == -1
+ * distance-sorted execution via {@link DistanceRingTaskQueue}.  Privilege is indicated by distance == -1
  * and privileged tasks run in order of submission.
  */
 public class SharedTerrainExecutor extends AbstractExecutorService implements TerrainExecutor {
-	private final PriorityBlockingQueue<TerrainExecutorTask> renderQueue = new PriorityBlockingQueue<>(4096, new Comparator<TerrainExecutorTask>() {
-		@Override
-		public int compare(TerrainExecutorTask o1, TerrainExecutorTask o2) {
-			return Integer.compare(o1.priority(), o2.priority());
-		}
-	});
+	private final DistanceRingTaskQueue renderQueue = new DistanceRingTaskQueue();
 
 	private final LinkedBlockingQueue<Runnable> serverQueue = new LinkedBlockingQueue<>();
 
@@ -123,6 +116,11 @@ public class SharedTerrainExecutor extends AbstractExecutorService implements Te
 		return renderQueue.isEmpty();
 	}
 
+	@Override
+	public void invalidatePriorities() {
+		renderQueue.advanceEpoch();
+	}
+
 	private class RenderWorker implements Runnable {
 		protected CanvasTerrainRenderContext context = new CanvasTerrainRenderContext();
 
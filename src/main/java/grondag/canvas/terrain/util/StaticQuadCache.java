@@ -0,0 +1,368 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.client.resources.model.WeightedBakedModel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.RandomSource;
+import net.minecraft.util.random.WeightedRandom;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+import io.vram.frex.api.model.util.FaceUtil;
+import io.vram.frex.base.renderer.mesh.BaseQuadEmitter;
+
+import grondag.canvas.apiimpl.rendercontext.encoder.TerrainQuadEncoder;
+import grondag.canvas.buffer.format.TerrainEncoder;
+import grondag.canvas.buffer.input.VertexCollector;
+import grondag.canvas.material.state.CanvasRenderMaterial;
+import grondag.canvas.mixinterface.BlockStateExt;
+import grondag.canvas.mixinterface.WeightedBakedModelExt;
+
+/**
+ * Encoded terrain quads of blocks with static models, so that later occurrences of the same
+ * block only encode position, AO and light. See {@link BlockStateTable#STATIC_MODEL}.
+ *
+ * <p>Templates are kept for each block state and model variant, in groups by cull face.
+ * Which groups render depends on neighbors, so the quads of one group are recorded
+ * the first time that group renders and a template fills in as faces are seen.
+ * This covers every face cull combination without a template for each one.
+ *
+ * <p>Templates assume the same state and variant always give the same quads in the same
+ * order, which is true for vanilla models unless quads are tinted. States where that turns
+ * out not to hold, for example because of material maps that depend on position, are
+ * excluded and encode normally from then on. Total size is capped; blocks seen after
+ * the cap is reached encode normally.
+ *
+ * <p>Material indices are assigned for the whole session, so templates are only
+ * discarded on reload, because models change.
+ */
+public final class StaticQuadCache {
+	/** Cull face groups: one for each face and one for quads that aren't culled. */
+	private static final int GROUP_COUNT = FaceUtil.FACE_INDEX_COUNT;
+
+	/** Limit of quads in all templates, about 4MB. */
+	private static final int MAX_QUADS = 1 << 15;
+
+	private static final BlockTemplate[] NONE = new BlockTemplate[0];
+	private static final BlockTemplate[] EXCLUDED = new BlockTemplate[0];
+
+	private static volatile StaticQuadCache instance = new StaticQuadCache(0);
+
+	/** Templates of each state by state index, null if none yet. */
+	private final AtomicReferenceArray<BlockTemplate[]> templates;
+	private int quadCount = 0;
+
+	private StaticQuadCache(int size) {
+		templates = new AtomicReferenceArray<>(size);
+	}
+
+	public static StaticQuadCache get() {
+		return instance;
+	}
+
+	/** Call after {@link BlockStateTable#reload()} on render reload. */
+	public static void reload() {
+		instance = new StaticQuadCache(Block.BLOCK_STATE_REGISTRY.size());
+	}
+
+	/**
+	 * The variant of a static model that renders at the given position.
+	 * Chooses weighted variants the same way vanilla does.
+	 */
+	public static BakedModel variant(BakedModel model, BlockState blockState, BlockPos pos, RandomSource random) {
+		if (model instanceof WeightedBakedModel) {
+			final WeightedBakedModelExt weighted = (WeightedBakedModelExt) model;
+			random.setSeed(blockState.getSeed(pos));
+			return WeightedRandom.getWeightedItem(weighted.canvas_entries(), Math.abs((int) random.nextLong()) % weighted.canvas_totalWeight()).get().getData();
+		}
+
+		return model;
+	}
+
+	/**
+	 * Template for the state and variant, or {@link BlockTemplate#EMPTY} if nothing is recorded yet.
+	 * Null if the state can't use templates.
+	 */
+	private @Nullable BlockTemplate template(BlockState blockState, BakedModel variant) {
+		final int index = ((BlockStateExt) blockState).canvas_stateIndex();
+
+		if (index < 0 || index >= templates.length()) {
+			return null;
+		}
+
+		final BlockTemplate[] forState = templates.get(index);
+
+		if (forState == null) {
+			return BlockTemplate.EMPTY;
+		} else if (forState == EXCLUDED) {
+			return null;
+		}
+
+		for (final BlockTemplate template : forState) {
+			if (template.variant == variant) {
+				return template;
+			}
+		}
+
+		return BlockTemplate.EMPTY;
+	}
+
+	private synchronized void exclude(BlockState blockState) {
+		final int index = ((BlockStateExt) blockState).canvas_stateIndex();
+		final BlockTemplate[] forState = templates.getAndSet(index, EXCLUDED);
+
+		if (forState != null) {
+			for (final BlockTemplate template : forState) {
+				quadCount -= template.materials.length;
+			}
+		}
+	}
+
+	/** Adds recorded groups to the template of the state and variant, unless another thread did already. */
+	private synchronized void publish(BlockState blockState, BakedModel variant, Recorder recorder) {
+		if (quadCount + recorder.quadCount > MAX_QUADS) {
+			return;
+		}
+
+		final int index = ((BlockStateExt) blockState).canvas_stateIndex();
+		BlockTemplate[] forState = templates.get(index);
+
+		if (forState == EXCLUDED) {
+			return;
+		} else if (forState == null) {
+			forState = NONE;
+		}
+
+		int variantIndex = forState.length;
+
+		for (int i = 0; i < forState.length; ++i) {
+			if (forState[i].variant == variant) {
+				variantIndex = i;
+				break;
+			}
+		}
+
+		final BlockTemplate prior = variantIndex == forState.length ? BlockTemplate.EMPTY : forState[variantIndex];
+
+		if ((prior.groups & recorder.groups) != 0) {
+			return;
+		}
+
+		final BlockTemplate template = new BlockTemplate(variant, prior, recorder);
+		quadCount += template.materials.length - prior.materials.length;
+
+		final BlockTemplate[] newForState = new BlockTemplate[Math.max(forState.length, variantIndex + 1)];
+		System.arraycopy(forState, 0, newForState, 0, forState.length);
+		newForState[variantIndex] = template;
+		templates.set(index, newForState);
+	}
+
+	/** Immutable. Quads are ordered by group and then by order of encoding. */
+	private static class BlockTemplate {
+		private static final BlockTemplate EMPTY = new BlockTemplate();
+
+		private final @Nullable BakedModel variant;
+		/** Bit for each group that has been recorded, even if it has no quads. */
+		private final int groups;
+		/** Index of the first quad of each group, followed by the quad count. */
+		private final int[] groupStart = new int[GROUP_COUNT + 1];
+		private final CanvasRenderMaterial[] materials;
+		private final int[] data;
+
+		private BlockTemplate() {
+			variant = null;
+			groups = 0;
+			materials = new CanvasRenderMaterial[0];
+			data = new int[0];
+		}
+
+		private BlockTemplate(BakedModel variant, BlockTemplate prior, Recorder recorder) {
+			this.variant = variant;
+			groups = prior.groups | recorder.groups;
+
+			final int count = prior.materials.length + recorder.quadCount;
+			materials = new CanvasRenderMaterial[count];
+			data = new int[count * TerrainEncoder.TEMPLATE_STRIDE];
+			int quadIndex = 0;
+
+			for (int group = 0; group < GROUP_COUNT; ++group) {
+				groupStart[group] = quadIndex;
+
+				if ((prior.groups & (1 << group)) != 0) {
+					final int start = prior.groupStart[group];
+					final int size = prior.groupStart[group + 1] - start;
+					System.arraycopy(prior.materials, start, materials, quadIndex, size);
+					System.arraycopy(prior.data, start * TerrainEncoder.TEMPLATE_STRIDE, data, quadIndex * TerrainEncoder.TEMPLATE_STRIDE, size * TerrainEncoder.TEMPLATE_STRIDE);
+					quadIndex += size;
+				} else if ((recorder.groups & (1 << group)) != 0) {
+					for (int i = 0; i < recorder.quadCount; ++i) {
+						if (recorder.quadGroups[i] == group) {
+							materials[quadIndex] = recorder.materials[i];
+							System.arraycopy(recorder.data, i * TerrainEncoder.TEMPLATE_STRIDE, data, quadIndex * TerrainEncoder.TEMPLATE_STRIDE, TerrainEncoder.TEMPLATE_STRIDE);
+							++quadIndex;
+						}
+					}
+				}
+			}
+
+			groupStart[GROUP_COUNT] = quadIndex;
+		}
+	}
+
+	/** Quads of groups not yet in the template, recorded while baking one block. */
+	private static class Recorder {
+		private int groups;
+		private int quadCount;
+		private int[] quadGroups = new int[16];
+		private CanvasRenderMaterial[] materials = new CanvasRenderMaterial[16];
+		private int[] data = new int[16 * TerrainEncoder.TEMPLATE_STRIDE];
+
+		private void clear() {
+			groups = 0;
+			quadCount = 0;
+		}
+
+		private void record(TerrainQuadEncoder encoder, int group, CanvasRenderMaterial material, int[] encoded, int encodedIndex) {
+			if (quadCount == materials.length) {
+				final int newSize = quadCount * 2;
+				quadGroups = Arrays.copyOf(quadGroups, newSize);
+				materials = Arrays.copyOf(materials, newSize);
+				data = Arrays.copyOf(data, newSize * TerrainEncoder.TEMPLATE_STRIDE);
+			}
+
+			groups |= 1 << group;
+			quadGroups[quadCount] = group;
+			materials[quadCount] = material;
+			TerrainEncoder.toTemplate(encoder, encoded, encodedIndex, data, quadCount * TerrainEncoder.TEMPLATE_STRIDE);
+			++quadCount;
+		}
+	}
+
+	/**
+	 * Encodes quads of one block at a time using and recording templates.
+	 * One instance for each terrain encoder, not thread-safe.
+	 */
+	public static class BlockEncoder {
+		private final Recorder recorder = new Recorder();
+		/** Quads encoded in the current block for each group. */
+		private final int[] groupCounts = new int[GROUP_COUNT];
+		private StaticQuadCache cache;
+		private BlockState blockState;
+		private BakedModel variant;
+		/** Null when the current block doesn't use templates. */
+		private BlockTemplate template;
+		private boolean failed;
+
+		/**
+		 * Call before the block renders. Quads are then encoded with {@link #encode(TerrainQuadEncoder, CanvasRenderMaterial, VertexCollector)}
+		 * until {@link #end()}. The block must have a static model and no offset.
+		 */
+		public void begin(StaticQuadCache cache, BlockState blockState, BakedModel variant) {
+			this.cache = cache;
+			this.blockState = blockState;
+			this.variant = variant;
+			template = cache.template(blockState, variant);
+			failed = false;
+		}
+
+		/**
+		 * Encodes the quad in the encoder's emitter from the template if it has the quad's group,
+		 * or encodes normally and records it otherwise.
+		 *
+		 * @return False without encoding if the block doesn't use templates, the caller must encode the quad.
+		 */
+		public boolean encode(TerrainQuadEncoder encoder, CanvasRenderMaterial mat, VertexCollector buff) {
+			final BlockTemplate template = this.template;
+
+			if (template == null) {
+				return false;
+			}
+
+			final BaseQuadEmitter quad = encoder.emitter();
+			final int group = quad.cullFaceId();
+			final int ordinal = groupCounts[group]++;
+
+			if (quad.colorIndex() != -1) {
+				// tint depends on position
+				fail();
+				return false;
+			}
+
+			if ((template.groups & (1 << group)) != 0) {
+				final int quadIndex = template.groupStart[group] + ordinal;
+
+				if (quadIndex < template.groupStart[group + 1] && template.materials[quadIndex] == mat
+						&& TerrainEncoder.encodeFromTemplate(encoder, buff, template.data, quadIndex * TerrainEncoder.TEMPLATE_STRIDE)) {
+					return true;
+				}
+
+				fail();
+				return false;
+			}
+
+			final int encodedIndex = TerrainEncoder.encodeQuad(encoder, buff);
+			recorder.record(encoder, group, mat, buff.reservedData(), encodedIndex);
+			return true;
+		}
+
+		private void fail() {
+			template = null;
+			failed = true;
+		}
+
+		/** Call after the block renders. Publishes recorded groups or excludes the state if quads didn't match. */
+		public void end() {
+			final BlockTemplate template = this.template;
+
+			if (template != null) {
+				for (int group = 0; group < GROUP_COUNT; ++group) {
+					final int count = groupCounts[group];
+
+					// a group that rendered must have all its quads
+					if (count != 0 && (template.groups & (1 << group)) != 0 && count != template.groupStart[group + 1] - template.groupStart[group]) {
+						failed = true;
+						break;
+					}
+				}
+			}
+
+			if (failed) {
+				cache.exclude(blockState);
+			} else if (recorder.groups != 0) {
+				cache.publish(blockState, variant, recorder);
+			}
+
+			recorder.clear();
+			Arrays.fill(groupCounts, 0);
+			this.template = null;
+			cache = null;
+			blockState = null;
+			variant = null;
+		}
+	}
+}
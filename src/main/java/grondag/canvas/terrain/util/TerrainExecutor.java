@@ -26,7 +26,8 @@ import java.util.concurrent.ExecutorService;
 import grondag.canvas.config.Configurator;
 
 public interface TerrainExecutor extends ExecutorService {
-	TerrainExecutor INSTANCE = Configurator.useCombinedThreadPool.get() ? new SharedTerrainExecutor() : new DedicatedTerrainExecutor();
+	TerrainExecutor INSTANCE = Configurator.useWorkStealingThreadPool.get() ? new WorkStealingTerrainExecutor()
+			: Configurator.useCombinedThreadPool.get() ? new SharedTerrainExecutor() : new DedicatedTerrainExecutor();
 
 	void execute(TerrainExecutorTask task);
 
@@ -34,5 +35,11 @@ public interface TerrainExecutor extends ExecutorService {
 
 	boolean isEmpty();
 
+	/**
+	 * Call when queued task priorities may have changed because
+	 * the camera moved to a different region.
+	 */
+	void invalidatePriorities();
+
 	void debugReport(List<String> target);
 }
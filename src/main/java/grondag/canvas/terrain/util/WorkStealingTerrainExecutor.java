@@ -0,0 +1,430 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
+import grondag.canvas.config.Configurator;
+
+/**
+ * Executor with a distance-sorted task queue per worker thread instead of
+ * a single queue shared by all workers. Submitted tasks are distributed
+ * to workers, preferring idle workers, and a worker with an empty queue
+ * steals the nearest task found in the queues of other workers.
+ *
+ * <p>Idle workers park and are unparked individually when work arrives,
+ * so submission does not wake every thread.
+ *
+ * <p>Privileged tasks (priority -1) go to a shared queue that all workers
+ * check first, so they still run before any non-privileged task that has
+ * not yet started, in order of submission. Server tasks are accepted and run
+ * when no render task is available, same as {@link SharedTerrainExecutor}.
+ */
+public class WorkStealingTerrainExecutor extends AbstractExecutorService implements TerrainExecutor {
+	private final ConcurrentLinkedQueue<TerrainExecutorTask> privilegedQueue = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Runnable> serverQueue = new ConcurrentLinkedQueue<>();
+	private final Worker[] workers;
+	private final int poolSize;
+
+	private final AtomicInteger nextWorker = new AtomicInteger();
+	private final AtomicInteger renderTaskCount = new AtomicInteger();
+	private final AtomicInteger serverTaskCount = new AtomicInteger();
+	private final AtomicInteger runningTaskCount = new AtomicInteger();
+
+	private int lastRenderTaskCount;
+	private int lastServerTaskCount;
+	private long nextTime;
+	private long lastReportNanos;
+	private String[] report = new String[0];
+	private volatile boolean isShutdown = false;
+
+	WorkStealingTerrainExecutor() {
+		poolSize = threadCount();
+		workers = new Worker[poolSize];
+
+		for (int i = 0; i < poolSize; i++) {
+			workers[i] = new Worker(i);
+		}
+
+		for (int i = 0; i < poolSize; i++) {
+			final Thread thread = new Thread(workers[i], "Canvas Render Thread - " + i);
+			thread.setDaemon(true);
+			workers[i].thread = thread;
+			thread.start();
+		}
+	}
+
+	/**
+	 * Same as {@link DedicatedTerrainExecutor} unless server tasks are also handled,
+	 * in which case we need at least four for the reasons given in {@link SharedTerrainExecutor}.
+	 */
+	private static int threadCount() {
+		final int threadCount = Runtime.getRuntime().availableProcessors() - 1;
+		return Math.max(Configurator.useCombinedThreadPool.get() ? 4 : 1, threadCount);
+	}
+
+	@Override
+	public void execute(TerrainExecutorTask task) {
+		renderTaskCount.incrementAndGet();
+
+		if (task.priority() < 0) {
+			privilegedQueue.add(task);
+			wakeAny();
+		} else {
+			// Give it to an idle worker if there is one so it starts immediately,
+			// otherwise round-robin and let stealing even out the load.
+			Worker target = findParked();
+
+			if (target == null) {
+				target = workers[Math.floorMod(nextWorker.getAndIncrement(), poolSize)];
+			}
+
+			target.queue.add(task);
+
+			if (!target.unparkIfParked()) {
+				// Target is busy but others may be idle and able to steal.
+				wakeAny();
+			}
+		}
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		serverTaskCount.incrementAndGet();
+		serverQueue.add(command);
+		wakeAny();
+	}
+
+	private Worker findParked() {
+		for (final Worker w : workers) {
+			if (w.parked.get()) {
+				return w;
+			}
+		}
+
+		return null;
+	}
+
+	private void wakeAny() {
+		for (final Worker w : workers) {
+			if (w.unparkIfParked()) {
+				return;
+			}
+		}
+	}
+
+	private boolean hasAnyWork() {
+		if (!privilegedQueue.isEmpty() || !serverQueue.isEmpty()) {
+			return true;
+		}
+
+		for (final Worker w : workers) {
+			if (!w.queue.isEmpty()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		privilegedQueue.clear();
+
+		for (final Worker w : workers) {
+			w.queue.clear();
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		if (!privilegedQueue.isEmpty()) {
+			return false;
+		}
+
+		for (final Worker w : workers) {
+			if (!w.queue.isEmpty()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public void invalidatePriorities() {
+		for (final Worker w : workers) {
+			w.queue.advanceEpoch();
+		}
+	}
+
+	private class Worker implements Runnable {
+		private final int index;
+		private final DistanceRingTaskQueue queue = new DistanceRingTaskQueue();
+		private final AtomicBoolean parked = new AtomicBoolean();
+		private final CanvasTerrainRenderContext context = new CanvasTerrainRenderContext();
+		private final boolean preferServer;
+		private Thread thread;
+
+		/** Written only by owning thread, read for debug output. */
+		private volatile long busyNanos;
+		private volatile int stealCount;
+		private long lastBusyNanos;
+		private int lastStealCount;
+
+		Worker(int index) {
+			this.index = index;
+			// Alternate preference so server tasks aren't starved by a steady stream of render tasks
+			preferServer = (index & 1) == 1;
+		}
+
+		boolean unparkIfParked() {
+			if (parked.compareAndSet(true, false)) {
+				LockSupport.unpark(thread);
+				return true;
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					if (!runNext()) {
+						parked.set(true);
+
+						// Work could have arrived after our last check but before the flag was visible
+						if (hasAnyWork()) {
+							parked.set(false);
+						} else {
+							while (parked.get()) {
+								LockSupport.park(this);
+							}
+						}
+					}
+				} catch (final Exception e) {
+					CanvasMod.LOG.error("Unhandled error during rendering. Impact unknown.", e);
+				}
+			}
+		}
+
+		private boolean runNext() {
+			final TerrainExecutorTask privileged = privilegedQueue.poll();
+
+			if (privileged != null) {
+				runRender(privileged);
+				return true;
+			}
+
+			if (preferServer && runServer()) {
+				return true;
+			}
+
+			TerrainExecutorTask task = queue.poll();
+
+			if (task == null) {
+				task = steal();
+			}
+
+			if (task != null) {
+				runRender(task);
+				return true;
+			}
+
+			return !preferServer && runServer();
+		}
+
+		/**
+		 * Takes the nearest task among the queues of other workers.
+		 * Queues are compared by their published head priority without locking,
+		 * so only the chosen victim is locked. The victim could be drained by its
+		 * owner or another thief before the poll, so retry a few times before giving up.
+		 */
+		private TerrainExecutorTask steal() {
+			for (int attempt = 0; attempt < 3; ++attempt) {
+				Worker victim = null;
+				int bestPriority = Integer.MAX_VALUE;
+
+				for (int i = 1; i < poolSize; ++i) {
+					final Worker w = workers[(index + i) % poolSize];
+					final int p = w.queue.nearestPriority();
+
+					if (p < bestPriority) {
+						bestPriority = p;
+						victim = w;
+					}
+				}
+
+				if (victim == null) {
+					return null;
+				}
+
+				final TerrainExecutorTask result = victim.queue.poll();
+
+				if (result != null) {
+					++stealCount;
+					return result;
+				}
+			}
+
+			return null;
+		}
+
+		private void runRender(TerrainExecutorTask task) {
+			final long start = System.nanoTime();
+			runningTaskCount.incrementAndGet();
+
+			try {
+				task.run(context);
+			} finally {
+				runningTaskCount.decrementAndGet();
+				busyNanos += System.nanoTime() - start;
+			}
+		}
+
+		private boolean runServer() {
+			final Runnable runnable = serverQueue.poll();
+
+			if (runnable == null) {
+				return false;
+			}
+
+			final long start = System.nanoTime();
+			runningTaskCount.incrementAndGet();
+
+			try {
+				runnable.run();
+			} catch (final Exception e) {
+				CanvasMod.LOG.error("Unhandled error on server task. Impact unknown.", e);
+			} finally {
+				runningTaskCount.decrementAndGet();
+				busyNanos += System.nanoTime() - start;
+			}
+
+			return true;
+		}
+	}
+
+	@Override
+	public void debugReport(List<String> target) {
+		final long newTime = System.currentTimeMillis();
+
+		if (newTime > nextTime) {
+			nextTime = newTime + 1000;
+
+			final long nanos = System.nanoTime();
+			final long elapsed = Math.max(1, nanos - lastReportNanos);
+			lastReportNanos = nanos;
+
+			final int newRenderCount = renderTaskCount.get();
+			final int newServerCount = serverTaskCount.get();
+			int queued = privilegedQueue.size();
+
+			for (final Worker w : workers) {
+				queued += w.queue.size();
+			}
+
+			final String[] newReport = new String[2 + (poolSize + 3) / 4];
+			newReport[0] = String.format("Render tasks: %d rate: %d", queued, newRenderCount - lastRenderTaskCount);
+			newReport[1] = String.format("Server tasks: %d rate: %d", serverQueue.size(), newServerCount - lastServerTaskCount);
+
+			lastRenderTaskCount = newRenderCount;
+			lastServerTaskCount = newServerCount;
+
+			// Four workers per line: utilization % / steals in last period
+			final StringBuilder sb = new StringBuilder();
+
+			for (int i = 0; i < poolSize; ++i) {
+				final Worker w = workers[i];
+				final long busy = w.busyNanos;
+				final int steals = w.stealCount;
+				final int util = (int) Math.min(100, (busy - w.lastBusyNanos) * 100 / elapsed);
+
+				if ((i & 3) == 0) {
+					sb.setLength(0);
+					sb.append("Workers ");
+				} else {
+					sb.append("  ");
+				}
+
+				sb.append(i).append(": ").append(util).append("% s").append(steals - w.lastStealCount);
+				w.lastBusyNanos = busy;
+				w.lastStealCount = steals;
+
+				if ((i & 3) == 3 || i == poolSize - 1) {
+					newReport[2 + (i >> 2)] = sb.toString();
+				}
+			}
+
+			report = newReport;
+		}
+
+		for (final String s : report) {
+			target.add(s);
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		clear();
+		serverQueue.clear();
+		isShutdown = true;
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		isShutdown = true;
+		return Collections.emptyList();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return isShutdown;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return isShutdown && runningTaskCount.get() == 0;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		while (runningTaskCount.get() > 0) {
+			if (deadline <= System.nanoTime()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,290 @@
+package grondag.canvas;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.junit.jupiter.api.Test;
+
+import grondag.bitraster.PackedBox;
+import grondag.canvas.terrain.occlusion.geometry.AbstractBoxFinder;
+import grondag.canvas.terrain.occlusion.geometry.AreaFinder;
+import grondag.canvas.terrain.occlusion.geometry.BoxFinder;
+import grondag.canvas.terrain.occlusion.geometry.GreedyBoxFinder;
+
+/**
+ * Compares box finder engines for quality and speed on a corpus of sections.
+ *
+ * <p>Set system property canvas.occlusionCorpus to the path of a file saved with
+ * the Capture Occlusion Corpus debug option to measure real-world terrain.
+ * Otherwise uses a synthetic corpus with common kinds of terrain.
+ *
+ * <p>Quality is closed positions covered by boxes per box. Higher is better because
+ * the occluder pays for every box drawn.
+ */
+class BoxFinderCorpusTest {
+	private static final int WORDS = 64;
+
+	@Test
+	void test() throws IOException {
+		final String path = System.getProperty("canvas.occlusionCorpus");
+		final ObjectArrayList<long[]> corpus = path == null ? syntheticCorpus() : loadCorpus(path);
+
+		System.out.println("Corpus: " + (path == null ? "synthetic" : path) + " sections: " + corpus.size());
+
+		measure("BoxFinder", new BoxFinder(new AreaFinder()), corpus);
+
+		for (final int limit : new int[] {16, 32, 64, 128, 4096}) {
+			final GreedyBoxFinder greedy = new GreedyBoxFinder();
+			greedy.setMaxBoxes(limit);
+			measure("Greedy " + limit, greedy, corpus);
+		}
+
+		// without a limit greedy boxes cover every closed position
+		final GreedyBoxFinder greedy = new GreedyBoxFinder();
+		greedy.setMaxBoxes(Integer.MAX_VALUE);
+
+		for (final long[] section : corpus) {
+			greedy.findBoxes(section, 0);
+			assert covered(greedy.boxes, section) == closedCount(section);
+		}
+	}
+
+	private static void measure(String name, AbstractBoxFinder finder, ObjectArrayList<long[]> corpus) {
+		long boxCount = 0;
+		long coveredCount = 0;
+		long closedCount = 0;
+
+		// check results and warm up
+		for (final long[] section : corpus) {
+			finder.findBoxes(section, 0);
+			assertValid(finder.boxes, section, finder instanceof GreedyBoxFinder);
+			boxCount += finder.boxes.size();
+			coveredCount += covered(finder.boxes, section);
+			closedCount += closedCount(section);
+		}
+
+		final int passes = 20;
+		final long start = System.nanoTime();
+
+		for (int i = 0; i < passes; ++i) {
+			for (final long[] section : corpus) {
+				finder.findBoxes(section, 0);
+			}
+		}
+
+		final long nanos = (System.nanoTime() - start) / passes / corpus.size();
+
+		System.out.println(String.format("%-12s %7.2f us/section  boxes/section: %6.2f  covered: %5.1f%%  covered per box: %7.1f",
+				name, nanos / 1000.0, (double) boxCount / corpus.size(), coveredCount * 100.0 / Math.max(1, closedCount),
+				(double) coveredCount / Math.max(1, boxCount)));
+	}
+
+	/** Boxes must be within closed positions and the region. Greedy boxes are also strictly ordered by range. */
+	private static void assertValid(IntArrayList boxes, long[] section, boolean checkOrder) {
+		int lastRange = Integer.MAX_VALUE;
+
+		for (final int box : boxes) {
+			assert !checkOrder || PackedBox.range(box) <= lastRange;
+			lastRange = PackedBox.range(box);
+			assert PackedBox.x1(box) <= 16 && PackedBox.y1(box) <= 16 && PackedBox.z1(box) <= 16;
+
+			for (int x = PackedBox.x0(box); x < PackedBox.x1(box); ++x) {
+				for (int y = PackedBox.y0(box); y < PackedBox.y1(box); ++y) {
+					for (int z = PackedBox.z0(box); z < PackedBox.z1(box); ++z) {
+						assert isSet(section, x, y, z);
+					}
+				}
+			}
+		}
+	}
+
+	private static int covered(IntArrayList boxes, long[] section) {
+		final long[] union = new long[WORDS];
+
+		for (final int box : boxes) {
+			for (int x = PackedBox.x0(box); x < PackedBox.x1(box); ++x) {
+				for (int y = PackedBox.y0(box); y < PackedBox.y1(box); ++y) {
+					for (int z = PackedBox.z0(box); z < PackedBox.z1(box); ++z) {
+						set(union, x, y, z);
+					}
+				}
+			}
+		}
+
+		return closedCount(union);
+	}
+
+	private static int closedCount(long[] section) {
+		int result = 0;
+
+		for (int i = 0; i < WORDS; ++i) {
+			result += Long.bitCount(section[i]);
+		}
+
+		return result;
+	}
+
+	private static boolean isSet(long[] bits, int x, int y, int z) {
+		final int index = x | (y << 4) | (z << 8);
+		return (bits[index >> 6] & (1L << (index & 63))) != 0;
+	}
+
+	private static void set(long[] bits, int x, int y, int z) {
+		final int index = x | (y << 4) | (z << 8);
+		bits[index >> 6] |= 1L << (index & 63);
+	}
+
+	private static void clear(long[] bits, int x, int y, int z) {
+		final int index = x | (y << 4) | (z << 8);
+		bits[index >> 6] &= ~(1L << (index & 63));
+	}
+
+	private static ObjectArrayList<long[]> loadCorpus(String path) throws IOException {
+		final ObjectArrayList<long[]> result = new ObjectArrayList<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+			while (true) {
+				final long[] section = new long[WORDS];
+
+				for (int i = 0; i < WORDS; ++i) {
+					section[i] = in.readLong();
+				}
+
+				result.add(section);
+			}
+		} catch (final EOFException e) {
+			// end of corpus, partial sections are ignored
+		}
+
+		return result;
+	}
+
+	/** Kinds of sections common in generated worlds, in rough proportion. */
+	private static ObjectArrayList<long[]> syntheticCorpus() {
+		final Random rand = new Random(1234);
+		final ObjectArrayList<long[]> result = new ObjectArrayList<>();
+
+		for (int n = 0; n < 200; ++n) {
+			result.add(caves(rand, 1 + rand.nextInt(6)));
+			result.add(surface(rand));
+			result.add(caves(rand, 0));
+			result.add(building(rand));
+			result.add(sparse(rand));
+		}
+
+		return result;
+	}
+
+	/** Solid stone with carved spherical caves and scattered non-occluding blocks like ores behind glass. */
+	private static long[] caves(Random rand, int caveCount) {
+		final long[] bits = new long[WORDS];
+		Arrays.fill(bits, -1L);
+
+		for (int c = 0; c < caveCount; ++c) {
+			final int cx = rand.nextInt(16);
+			final int cy = rand.nextInt(16);
+			final int cz = rand.nextInt(16);
+			final int r = 2 + rand.nextInt(4);
+
+			for (int x = 0; x < 16; ++x) {
+				for (int y = 0; y < 16; ++y) {
+					for (int z = 0; z < 16; ++z) {
+						final int dx = x - cx;
+						final int dy = y - cy;
+						final int dz = z - cz;
+
+						if (dx * dx + dy * dy + dz * dz <= r * r) {
+							clear(bits, x, y, z);
+						}
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < 8; ++i) {
+			clear(bits, rand.nextInt(16), rand.nextInt(16), rand.nextInt(16));
+		}
+
+		return bits;
+	}
+
+	/** Rolling ground surface crossing the section with solid below. */
+	private static long[] surface(Random rand) {
+		final long[] bits = new long[WORDS];
+		final int base = 4 + rand.nextInt(8);
+		final double fx = rand.nextDouble() * 0.5;
+		final double fz = rand.nextDouble() * 0.5;
+
+		for (int x = 0; x < 16; ++x) {
+			for (int z = 0; z < 16; ++z) {
+				final int h = base + (int) Math.round(2 * Math.sin(x * fx) + 2 * Math.cos(z * fz));
+
+				for (int y = 0; y < Math.min(16, h); ++y) {
+					set(bits, x, y, z);
+				}
+			}
+		}
+
+		return bits;
+	}
+
+	/** Hollow walls and floors. */
+	private static long[] building(Random rand) {
+		final long[] bits = new long[WORDS];
+		final int x0 = rand.nextInt(6);
+		final int z0 = rand.nextInt(6);
+		final int x1 = 10 + rand.nextInt(6);
+		final int z1 = 10 + rand.nextInt(6);
+
+		for (int y = 0; y < 16; ++y) {
+			for (int x = x0; x <= x1; ++x) {
+				for (int z = z0; z <= z1; ++z) {
+					if (y == 0 || y == 8 || x == x0 || x == x1 || z == z0 || z == z1) {
+						set(bits, x, y, z);
+					}
+				}
+			}
+
+			// windows
+			if ((y & 3) == 2) {
+				clear(bits, (x0 + x1) >> 1, y, z0);
+				clear(bits, x0, y, (z0 + z1) >> 1);
+			}
+		}
+
+		return bits;
+	}
+
+	/** Mostly open with a few tree trunks and leaf clumps. */
+	private static long[] sparse(Random rand) {
+		final long[] bits = new long[WORDS];
+
+		for (int t = 0; t < 3; ++t) {
+			final int tx = 2 + rand.nextInt(12);
+			final int tz = 2 + rand.nextInt(12);
+
+			for (int y = 0; y < 10; ++y) {
+				set(bits, tx, y, tz);
+			}
+
+			for (int x = tx - 2; x <= tx + 2; ++x) {
+				for (int z = tz - 2; z <= tz + 2; ++z) {
+					for (int y = 8; y < 12; ++y) {
+						if (rand.nextInt(4) != 0) {
+							set(bits, x, y, z);
+						}
+					}
+				}
+			}
+		}
+
+		return bits;
+	}
+}
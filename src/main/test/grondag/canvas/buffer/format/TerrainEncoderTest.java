@@ -0,0 +1,149 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.buffer.format;
+
+import static io.vram.frex.base.renderer.mesh.MeshEncodingHelper.MESH_VERTEX_STRIDE;
+import static io.vram.frex.base.renderer.mesh.MeshEncodingHelper.VERTEX_X;
+import static io.vram.frex.base.renderer.mesh.MeshEncodingHelper.VERTEX_Y;
+import static io.vram.frex.base.renderer.mesh.MeshEncodingHelper.VERTEX_Z;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the translate-only and offset encoder variants give output identical to
+ * the full transform, with an identity transform, integer translations and fractional
+ * offsets. Compares every encoded int, so position, sign bits packed with the sector ID,
+ * normal and tangent, AO, color, texture coordinates, light and material are all covered.
+ *
+ * <p>Quad inputs are random except positions, which include typical model coordinates,
+ * multiples of the fixed-point unit, arbitrary floats and random bit patterns. Translations
+ * cover the block range, negative values and the fixed-point limit.
+ */
+class TerrainEncoderTest {
+	private static final int QUADS = 1_000_000;
+	private static final int SOURCE_INTS = 256;
+	private static final int SOURCE_INDEX = 64;
+	private static final int QUAD_INTS = TerrainEncoder.TERRAIN_MATERIAL.quadStrideInts;
+
+	@Test
+	void test() {
+		final Random rand = new Random(7);
+		final TerrainEncoder.QuadInput input = new TerrainEncoder.QuadInput();
+		final int[] expected = new int[QUAD_INTS];
+		final int[] actual = new int[QUAD_INTS];
+
+		for (int n = 0; n < QUADS; ++n) {
+			randomize(input, rand, n);
+
+			switch (n % 3) {
+				case 0 -> {
+					setTranslation(input, 0, 0, 0);
+					TerrainEncoder.encodeTransformed(input, expected, 0);
+					TerrainEncoder.encodeTranslated(input, actual, 0, 0, 0, 0);
+				}
+				case 1 -> {
+					final int tx = translation(rand, n);
+					final int ty = translation(rand, n);
+					final int tz = translation(rand, n);
+					setTranslation(input, tx, ty, tz);
+					TerrainEncoder.encodeTransformed(input, expected, 0);
+					TerrainEncoder.encodeTranslated(input, actual, 0, tx, ty, tz);
+				}
+				default -> {
+					final float tx = translation(rand, n) + rand.nextFloat() * 0.5f - 0.25f;
+					final float ty = translation(rand, n) + rand.nextFloat() * 0.5f - 0.25f;
+					final float tz = translation(rand, n) + rand.nextFloat() * 0.5f - 0.25f;
+					setTranslation(input, tx, ty, tz);
+					TerrainEncoder.encodeTransformed(input, expected, 0);
+					TerrainEncoder.encodeOffset(input, actual, 0, tx, ty, tz);
+				}
+			}
+
+			assert Arrays.equals(expected, actual) : "quad " + n + " expected " + Arrays.toString(expected) + " actual " + Arrays.toString(actual);
+		}
+	}
+
+	/** Random quad with every source word random except positions. */
+	private static void randomize(TerrainEncoder.QuadInput input, Random rand, int n) {
+		final int[] source = new int[SOURCE_INTS];
+
+		for (int i = 0; i < SOURCE_INTS; ++i) {
+			source[i] = rand.nextInt();
+		}
+
+		for (int i = 0; i < 4; ++i) {
+			final int vertexIndex = SOURCE_INDEX + i * MESH_VERTEX_STRIDE;
+			source[vertexIndex + VERTEX_X] = Float.floatToRawIntBits(coordinate(rand, n + i));
+			source[vertexIndex + VERTEX_Y] = Float.floatToRawIntBits(coordinate(rand, n + i + 1));
+			source[vertexIndex + VERTEX_Z] = Float.floatToRawIntBits(coordinate(rand, n + i + 2));
+		}
+
+		input.source = source;
+		input.sourceIndex = SOURCE_INDEX;
+		input.ao = new int[] {rand.nextInt(256), rand.nextInt(256), rand.nextInt(256), rand.nextInt(256)};
+		input.aoDisabled = rand.nextInt(4) == 0;
+		input.normalFlags = rand.nextInt(16);
+		input.faceNormal = rand.nextInt();
+		input.tangentFlags = rand.nextInt(16);
+		input.faceTangent = rand.nextInt();
+		input.material = rand.nextInt(0x10000) << 16;
+		input.unlit = rand.nextInt(4) == 0;
+		input.sectorId = rand.nextInt(0x2000);
+		input.sectorRelativeRegionOrigin = rand.nextInt(0x1000000);
+	}
+
+	/** Translation-only model matrix and identity normal matrix for the full transform. */
+	private static void setTranslation(TerrainEncoder.QuadInput input, float x, float y, float z) {
+		input.m00 = 1f;
+		input.m01 = 0f;
+		input.m02 = 0f;
+		input.m10 = 0f;
+		input.m11 = 1f;
+		input.m12 = 0f;
+		input.m20 = 0f;
+		input.m21 = 0f;
+		input.m22 = 1f;
+		input.m30 = x;
+		input.m31 = y;
+		input.m32 = z;
+		input.normalMatrix = null;
+	}
+
+	private static int translation(Random rand, int n) {
+		return n % 97 == 0 ? rand.nextInt(513) - 256 : rand.nextInt(40) - 8;
+	}
+
+	private static float coordinate(Random rand, int n) {
+		return switch (n % 5) {
+			case 0 -> rand.nextInt(33) / 16f - 0.5f;
+			case 1 -> (rand.nextInt(8193) - 2048) / 4096f;
+			case 2 -> rand.nextFloat() * 2 - 0.5f;
+			case 3 -> {
+				final float result = Float.intBitsToFloat(rand.nextInt());
+				yield Float.isFinite(result) ? result : 0.3f;
+			}
+			default -> (float) Math.sin(rand.nextDouble() * 7) * 0.5f + 0.5f;
+		};
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that quad sorting gives the same order as a stable sort of
+ * distances, farthest first, for input that is already sorted, nearly
+ * sorted, slightly disordered and random, with and without equal distances.
+ */
+class QuadSorterTest {
+	private static final int ROUNDS = 2000;
+
+	@Test
+	void test() {
+		final Random rand = new Random(11);
+		final QuadSorter sorter = new QuadSorter();
+
+		for (int n = 0; n < ROUNDS; ++n) {
+			final int count = n % 7 == 0 ? rand.nextInt(20000) : rand.nextInt(600);
+			final float[] distances = distances(rand, count, n % 5);
+			long[] keys = sorter.keys(count);
+
+			for (int i = 0; i < count; ++i) {
+				keys[i] = QuadSorter.pack(QuadSorter.farthestFirst(distances[i]), i);
+			}
+
+			final Integer[] expected = new Integer[count];
+
+			for (int i = 0; i < count; ++i) {
+				expected[i] = i;
+			}
+
+			// object sort is stable
+			Arrays.sort(expected, Comparator.comparing((Integer i) -> distances[i]).reversed());
+
+			boolean moved = false;
+
+			for (int i = 0; i < count; ++i) {
+				moved |= expected[i] != i;
+			}
+
+			assert sorter.sort(count) == moved : "round " + n;
+			keys = sorter.keys(count);
+
+			for (int i = 0; i < count; ++i) {
+				assert QuadSorter.quadIndex(keys[i]) == expected[i] : "round " + n + " position " + i;
+			}
+		}
+	}
+
+	private static float[] distances(Random rand, int count, int kind) {
+		final float[] result = new float[count];
+
+		for (int i = 0; i < count; ++i) {
+			// coarse values give many equal distances
+			result[i] = kind == 3 ? rand.nextInt(8) : rand.nextFloat() * 1000;
+		}
+
+		if (kind == 1 || kind == 2 || kind == 4) {
+			final Float[] sorted = new Float[count];
+
+			for (int i = 0; i < count; ++i) {
+				sorted[i] = result[i];
+			}
+
+			Arrays.sort(sorted, Comparator.reverseOrder());
+
+			for (int i = 0; i < count; ++i) {
+				result[i] = sorted[i];
+			}
+
+			// few quads out of order, as after a small camera move, or a few far out of order
+			if (kind != 1) {
+				final float range = kind == 2 ? 5 : 500;
+				final int changes = kind == 2 ? count / 50 : count / 200;
+
+				for (int i = 0; i < changes; ++i) {
+					final int j = rand.nextInt(count);
+					result[j] = Math.max(0, result[j] + (rand.nextFloat() * 2 - 1) * range);
+				}
+			}
+		}
+
+		return result;
+	}
+}
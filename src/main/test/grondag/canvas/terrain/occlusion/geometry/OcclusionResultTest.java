@@ -16,6 +16,9 @@
 
 package grondag.canvas.terrain.occlusion.geometry;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.jupiter.api.Test;
 
 class OcclusionResultTest {
@@ -26,6 +29,8 @@ class OcclusionResultTest {
 	private static final int BIT_E = 16;
 	private static final int BIT_F = 32;
 
+	private static final int WORDS = OcclusionFill.WORDS;
+
 	@Test
 	void test() {
 		long mutualMask = 0L;
@@ -69,4 +74,236 @@ class OcclusionResultTest {
 		openMask = OcclusionResult.openFacesFlag(mutualMask, BIT_C);
 		assert openMask == 0;
 	}
+
+	@Test
+	void fillEnginesMatchRandom() {
+		final Random rand = new Random(42);
+
+		for (int n = 0; n < 2000; ++n) {
+			// vary density across the range where connectivity changes the most
+			final float density = rand.nextFloat() * 0.7f;
+			final long[] closed = new long[WORDS];
+
+			for (int i = 0; i < 4096; ++i) {
+				if (rand.nextFloat() < density) {
+					closed[i >> 6] |= 1L << (i & 63);
+				}
+			}
+
+			assertFillsMatch(closed, rand.nextFloat() * 0.2f, rand);
+		}
+	}
+
+	@Test
+	void fillEnginesMatchAdversarial() {
+		final Random rand = new Random(7);
+		final long[] closed = new long[WORDS];
+
+		// empty and full
+		assertFillsMatch(closed, 0, rand);
+		Arrays.fill(closed, -1L);
+		assertFillsMatch(closed, 0, rand);
+
+		// checkerboard - every open position is isolated
+		Arrays.fill(closed, 0);
+
+		for (int i = 0; i < 4096; ++i) {
+			if (((x(i) + y(i) + z(i)) & 1) == 0) {
+				closed[i >> 6] |= 1L << (i & 63);
+			}
+		}
+
+		assertFillsMatch(closed, 0, rand);
+		assertFillsMatch(invert(closed), 0.5f, rand);
+
+		// single corridor that snakes through every row of every layer
+		assertFillsMatch(serpentine(), 0, rand);
+		assertFillsMatch(serpentine(), 0.9f, rand);
+
+		// corridor that spirals inward on each layer, layers joined at alternate ends
+		assertFillsMatch(spiral(), 0, rand);
+
+		// random mazes
+		for (int n = 0; n < 50; ++n) {
+			assertFillsMatch(maze(rand), rand.nextFloat() * 0.5f, rand);
+		}
+	}
+
+	private static int x(int i) {
+		return i & 15;
+	}
+
+	private static int y(int i) {
+		return (i >> 4) & 15;
+	}
+
+	private static int z(int i) {
+		return (i >> 8) & 15;
+	}
+
+	private static int index(int x, int y, int z) {
+		return x | (y << 4) | (z << 8);
+	}
+
+	private static void open(long[] closed, int x, int y, int z) {
+		final int i = index(x, y, z);
+		closed[i >> 6] &= ~(1L << (i & 63));
+	}
+
+	private static long[] invert(long[] bits) {
+		final long[] result = new long[WORDS];
+
+		for (int i = 0; i < WORDS; ++i) {
+			result[i] = ~bits[i];
+		}
+
+		return result;
+	}
+
+	/** Open positions form one path through every row of every layer with x direction alternating each row. */
+	private static long[] serpentine() {
+		final long[] closed = new long[WORDS];
+		Arrays.fill(closed, -1L);
+
+		for (int z = 0; z < 16; z += 2) {
+			for (int y = 0; y < 16; y += 2) {
+				for (int x = 0; x < 16; ++x) {
+					open(closed, x, y, z);
+				}
+
+				if (y < 14) {
+					open(closed, ((y >> 1) & 1) == 0 ? 15 : 0, y + 1, z);
+				}
+			}
+
+			if (z < 14) {
+				open(closed, 0, 14, z + 1);
+			}
+		}
+
+		return closed;
+	}
+
+	/** Concentric square corridors on each layer with one door between each pair, so open positions form a long winding path. */
+	private static long[] spiral() {
+		final long[] closed = new long[WORDS];
+		Arrays.fill(closed, -1L);
+
+		for (int z = 0; z < 16; z += 2) {
+			for (int r = 0; r < 8; r += 2) {
+				for (int i = r; i < 16 - r; ++i) {
+					open(closed, i, r, z);
+					open(closed, i, 15 - r, z);
+					open(closed, r, i, z);
+					open(closed, 15 - r, i, z);
+				}
+
+				if (r < 6) {
+					open(closed, r + 1, (r & 2) == 0 ? r + 2 : 13 - r, z);
+				}
+			}
+
+			if (z < 14) {
+				open(closed, (z & 2) == 0 ? 0 : 15, (z & 2) == 0 ? 0 : 15, z + 1);
+			}
+		}
+
+		return closed;
+	}
+
+	/** Depth-first maze on odd coordinates, so passages are one position wide with closed walls between. */
+	private static long[] maze(Random rand) {
+		final long[] closed = new long[WORDS];
+		Arrays.fill(closed, -1L);
+
+		final int[][] steps = {{1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+		final boolean[] done = new boolean[4096];
+		final int[] stack = new int[4096];
+		int depth = 0;
+		stack[depth++] = index(1, 1, 1);
+		done[index(1, 1, 1)] = true;
+		open(closed, 1, 1, 1);
+
+		while (depth > 0) {
+			final int cell = stack[depth - 1];
+			final int first = rand.nextInt(6);
+			boolean moved = false;
+
+			for (int k = 0; k < 6 && !moved; ++k) {
+				final int[] step = steps[(first + k) % 6];
+				final int nx = x(cell) + 2 * step[0];
+				final int ny = y(cell) + 2 * step[1];
+				final int nz = z(cell) + 2 * step[2];
+
+				if (nx >= 1 && nx <= 15 && ny >= 1 && ny <= 15 && nz >= 1 && nz <= 15 && !done[index(nx, ny, nz)]) {
+					open(closed, x(cell) + step[0], y(cell) + step[1], z(cell) + step[2]);
+					open(closed, nx, ny, nz);
+					done[index(nx, ny, nz)] = true;
+					stack[depth++] = index(nx, ny, nz);
+					moved = true;
+				}
+			}
+
+			if (!moved) {
+				--depth;
+			}
+		}
+
+		// a few openings to the surface
+		for (int n = 0; n < 3; ++n) {
+			open(closed, 0, 1 + 2 * rand.nextInt(8), 1 + 2 * rand.nextInt(8));
+			open(closed, 1 + 2 * rand.nextInt(8), 1 + 2 * rand.nextInt(8), 0);
+		}
+
+		return closed;
+	}
+
+	/**
+	 * Runs both engines from the same closed bits with randomly covered surface positions,
+	 * per face as done without advanced culling and all at once as done with it.
+	 */
+	private static void assertFillsMatch(long[] closed, float coveredChance, Random rand) {
+		final long[][] faceSeeds = new long[6][WORDS];
+
+		for (int i = 0; i < 4096; ++i) {
+			final int x = x(i);
+			final int y = y(i);
+			final int z = z(i);
+			final long mask = 1L << (i & 63);
+
+			// same face order as calculator
+			if (x == 0 && rand.nextFloat() >= coveredChance) faceSeeds[0][i >> 6] |= mask;
+			if (x == 15 && rand.nextFloat() >= coveredChance) faceSeeds[1][i >> 6] |= mask;
+			if (z == 0 && rand.nextFloat() >= coveredChance) faceSeeds[2][i >> 6] |= mask;
+			if (z == 15 && rand.nextFloat() >= coveredChance) faceSeeds[3][i >> 6] |= mask;
+			if (y == 0 && rand.nextFloat() >= coveredChance) faceSeeds[4][i >> 6] |= mask;
+			if (y == 15 && rand.nextFloat() >= coveredChance) faceSeeds[5][i >> 6] |= mask;
+		}
+
+		final long[] queueBits = new long[WORDS * 2];
+		final long[] wordBits = new long[WORDS * 2];
+		System.arraycopy(closed, 0, queueBits, 0, WORDS);
+		System.arraycopy(closed, 0, wordBits, 0, WORDS);
+		final OcclusionFill queueFill = new QueueOcclusionFill(queueBits, WORDS);
+		final OcclusionFill wordFill = new WordOcclusionFill(wordBits, WORDS);
+
+		for (int face = 0; face < 6; ++face) {
+			assert queueFill.fill(faceSeeds[face], true) == wordFill.fill(faceSeeds[face], true);
+			assert Arrays.equals(queueBits, wordBits);
+		}
+
+		final long[] allSeeds = new long[WORDS];
+
+		for (int face = 0; face < 6; ++face) {
+			for (int i = 0; i < WORDS; ++i) {
+				allSeeds[i] |= faceSeeds[face][i];
+			}
+		}
+
+		Arrays.fill(queueBits, WORDS, WORDS * 2, 0);
+		Arrays.fill(wordBits, WORDS, WORDS * 2, 0);
+		assert queueFill.fill(allSeeds, false) == 0;
+		assert wordFill.fill(allSeeds, false) == 0;
+		assert Arrays.equals(queueBits, wordBits);
+	}
 }
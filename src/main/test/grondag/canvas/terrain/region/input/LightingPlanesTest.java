@@ -0,0 +1,135 @@
+/*
+ * This file is part of Canvas Renderer and is licensed to the project under
+ * terms that are compatible with the GNU Lesser General Public License.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership and licensing.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks packing of lighting planes and that {@link LightingPlanes#capture} stores the
+ * AO level and brightness of every position of a fixture region at its region index,
+ * as the per-position lookups it replaced would return them. Covers smoothed light,
+ * which only reads the outer layer of padding, and uniform interior AO.
+ */
+class LightingPlanesTest {
+	private static final int ORIGIN_X = 32;
+	private static final int ORIGIN_Y = -64;
+	private static final int ORIGIN_Z = -48;
+
+	@Test
+	void test() {
+		final LightingPlanes planes = new LightingPlanes();
+
+		for (int block = 0; block < 256; ++block) {
+			for (int sky = 0; sky < 256; ++sky) {
+				final int packed = block | (sky << 16);
+				planes.setBrightness(block, packed);
+				assert planes.brightness(block) == packed;
+			}
+
+			planes.setAoLevel(block, block);
+			assert planes.aoLevel(block) == block;
+		}
+
+		checkCapture(-1, false);
+		checkCapture(-1, true);
+		checkCapture(51, false);
+		checkCapture(51, true);
+	}
+
+	/** Fixture value of a world position, different for nearly every position. */
+	private static int hash(int x, int y, int z) {
+		int h = x * 73856093 ^ y * 19349663 ^ z * 83492791;
+		h ^= h >>> 16;
+		h *= 0x45D9F3B;
+		return h ^ (h >>> 16);
+	}
+
+	private static int aoLevel(int x, int y, int z) {
+		return hash(x, y, z) & 0xFF;
+	}
+
+	/** Block light in the low and sky light in the high 16 bits, 8 bits each like smoothed light. */
+	private static int brightness(int x, int y, int z) {
+		final int h = hash(x, y, z);
+		return ((h >> 8) & 0xFF) | (((h >> 16) & 0xFF) << 16);
+	}
+
+	private static void checkCapture(int uniformAoLevel, boolean isSmoothed) {
+		final LightingPlanes planes = new LightingPlanes();
+		final boolean[] aoLookups = new boolean[TOTAL_STATE_COUNT];
+		final boolean[] brightnessLookups = new boolean[TOTAL_STATE_COUNT];
+
+		planes.capture(new LightingPlanes.Source() {
+			@Override
+			public int aoLevel(int regionIndex, int x, int y, int z) {
+				assert regionIndex == regionIndex(x - ORIGIN_X, y - ORIGIN_Y, z - ORIGIN_Z);
+				assert !aoLookups[regionIndex];
+				aoLookups[regionIndex] = true;
+				return LightingPlanesTest.aoLevel(x, y, z);
+			}
+
+			@Override
+			public int brightness(int regionIndex, int x, int y, int z) {
+				assert regionIndex == regionIndex(x - ORIGIN_X, y - ORIGIN_Y, z - ORIGIN_Z);
+				assert !brightnessLookups[regionIndex];
+				brightnessLookups[regionIndex] = true;
+				return LightingPlanesTest.brightness(x, y, z);
+			}
+		}, ORIGIN_X, ORIGIN_Y, ORIGIN_Z, uniformAoLevel, isSmoothed);
+
+		int positionCount = 0;
+
+		for (int x = -2; x < 18; ++x) {
+			for (int y = -2; y < 18; ++y) {
+				for (int z = -2; z < 18; ++z) {
+					final int i = regionIndex(x, y, z);
+					final int worldX = x + ORIGIN_X;
+					final int worldY = y + ORIGIN_Y;
+					final int worldZ = z + ORIGIN_Z;
+					final boolean isInterior = (x | y | z) >= 0 && x < 16 && y < 16 && z < 16;
+					final boolean isOuter = x == -2 || y == -2 || z == -2 || x == 17 || y == 17 || z == 17;
+
+					if (isInterior && uniformAoLevel >= 0) {
+						assert !aoLookups[i];
+						assert planes.aoLevel(i) == uniformAoLevel;
+					} else {
+						assert aoLookups[i];
+						assert planes.aoLevel(i) == aoLevel(worldX, worldY, worldZ);
+					}
+
+					if (!isSmoothed || isOuter) {
+						assert brightnessLookups[i];
+						assert planes.brightness(i) == brightness(worldX, worldY, worldZ);
+					} else {
+						assert !brightnessLookups[i];
+					}
+
+					++positionCount;
+				}
+			}
+		}
+
+		assert positionCount == TOTAL_STATE_COUNT;
+	}
+}